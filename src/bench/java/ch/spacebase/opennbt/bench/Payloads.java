@@ -0,0 +1,240 @@
+package ch.spacebase.opennbt.bench;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import ch.spacebase.opennbt.NBTGenerator;
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.tag.ByteArrayTag;
+import ch.spacebase.opennbt.tag.ByteTag;
+import ch.spacebase.opennbt.tag.CompoundTag;
+import ch.spacebase.opennbt.tag.DoubleTag;
+import ch.spacebase.opennbt.tag.FloatTag;
+import ch.spacebase.opennbt.tag.IntArrayTag;
+import ch.spacebase.opennbt.tag.IntTag;
+import ch.spacebase.opennbt.tag.ListTag;
+import ch.spacebase.opennbt.tag.LongTag;
+import ch.spacebase.opennbt.tag.ShortTag;
+import ch.spacebase.opennbt.tag.StringTag;
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * <p>The payloads the benchmarks run against. Every payload is generated
+ * from a fixed seed, so runs on different machines measure the same
+ * data.</p>
+ * 
+ * <ul>
+ * <li><code>small</code>: a player-like compound of a few dozen mixed
+ * primitives, strings and short lists.</li>
+ * <li><code>chunk</code>: a chunk-like compound dominated by large byte and
+ * int arrays.</li>
+ * <li><code>palettedChunk</code>: a chunk from <code>NBTGenerator</code>,
+ * whose sections hold block palettes and large long arrays.</li>
+ * <li><code>wide</code>: a single compound with a thousand string
+ * entries.</li>
+ * <li><code>deep</code>: compounds and lists nested 64 levels deep.</li>
+ * <li><code>player</code>, <code>entities</code> and <code>level</code>:
+ * the matching shapes of <code>NBTGenerator</code>, with its default
+ * sizes.</li>
+ * </ul>
+ */
+final class Payloads {
+
+	/**
+	 * The seed every payload is generated from.
+	 */
+	private static final long SEED = 0x4E4254L;
+
+	/**
+	 * Default private constructor.
+	 */
+	private Payloads() {
+	}
+
+	/**
+	 * Creates a payload.
+	 * @param shape The name of the shape.
+	 * @return The payload.
+	 * @throws IllegalArgumentException if the shape is unknown.
+	 */
+	public static CompoundTag create(String shape) {
+		Random random = new Random(SEED);
+		if(shape.equals("small")) {
+			return small(random);
+		} else if(shape.equals("chunk")) {
+			return chunk(random);
+		} else if(shape.equals("wide")) {
+			return wide(random);
+		} else if(shape.equals("deep")) {
+			return deep(random, 64);
+		} else if(shape.equals("palettedChunk")) {
+			return new NBTGenerator(SEED).chunk(0, 0);
+		} else if(shape.equals("player")) {
+			return new NBTGenerator(SEED).player(0);
+		} else if(shape.equals("entities")) {
+			return new NBTGenerator(SEED).entities(0, 0);
+		} else if(shape.equals("level")) {
+			return new NBTGenerator(SEED).level();
+		}
+
+		throw new IllegalArgumentException("Unknown payload shape: " + shape);
+	}
+
+	/**
+	 * Gets a compression codec by name.
+	 * @param name The name of a constant of <code>CompressionCodecs</code>.
+	 * @return The codec.
+	 * @throws IllegalArgumentException if the name is unknown.
+	 */
+	public static CompressionCodec codec(String name) {
+		if(name.equals("NONE")) {
+			return CompressionCodecs.NONE;
+		} else if(name.equals("GZIP")) {
+			return CompressionCodecs.GZIP;
+		} else if(name.equals("ZLIB")) {
+			return CompressionCodecs.ZLIB;
+		} else if(name.equals("DEFLATE")) {
+			return CompressionCodecs.DEFLATE;
+		}
+
+		throw new IllegalArgumentException("Unknown compression: " + name);
+	}
+
+	private static CompoundTag small(Random random) {
+		Map<String, Tag> map = new HashMap<String, Tag>();
+		for(int i = 0; i < 8; i++) {
+			map.put("Byte" + i, new ByteTag("Byte" + i, (byte) random.nextInt()));
+			map.put("Short" + i, new ShortTag("Short" + i, (short) random.nextInt()));
+			map.put("Int" + i, new IntTag("Int" + i, random.nextInt()));
+			map.put("Long" + i, new LongTag("Long" + i, random.nextLong()));
+			map.put("Float" + i, new FloatTag("Float" + i, random.nextFloat()));
+		}
+
+		map.put("Name", new StringTag("Name", "Player" + random.nextInt(1000)));
+		map.put("Pos", doubles("Pos", random, 3));
+		map.put("Motion", doubles("Motion", random, 3));
+
+		List<CompoundTag> items = new ArrayList<CompoundTag>();
+		for(int i = 0; i < 9; i++) {
+			Map<String, Tag> item = new HashMap<String, Tag>();
+			item.put("id", new ShortTag("id", (short) random.nextInt(400)));
+			item.put("Count", new ByteTag("Count", (byte) (1 + random.nextInt(64))));
+			item.put("Slot", new ByteTag("Slot", (byte) i));
+			items.add(new CompoundTag("", item));
+		}
+
+		map.put("Inventory", new ListTag<CompoundTag>("Inventory", CompoundTag.class, items));
+		return new CompoundTag("", map);
+	}
+
+	private static CompoundTag chunk(Random random) {
+		List<CompoundTag> sections = new ArrayList<CompoundTag>();
+		for(int y = 0; y < 16; y++) {
+			Map<String, Tag> section = new HashMap<String, Tag>();
+			section.put("Y", new ByteTag("Y", (byte) y));
+			section.put("Blocks", bytes("Blocks", random, 4096));
+			section.put("Data", bytes("Data", random, 2048));
+			section.put("BlockLight", bytes("BlockLight", random, 2048));
+			section.put("SkyLight", bytes("SkyLight", random, 2048));
+			sections.add(new CompoundTag("", section));
+		}
+
+		int[] heights = new int[256];
+		for(int i = 0; i < heights.length; i++) {
+			heights[i] = 60 + random.nextInt(16);
+		}
+
+		Map<String, Tag> level = new HashMap<String, Tag>();
+		level.put("xPos", new IntTag("xPos", random.nextInt(64)));
+		level.put("zPos", new IntTag("zPos", random.nextInt(64)));
+		level.put("LastUpdate", new LongTag("LastUpdate", random.nextLong()));
+		level.put("Biomes", bytes("Biomes", random, 256));
+		level.put("HeightMap", new IntArrayTag("HeightMap", heights));
+		level.put("Sections", new ListTag<CompoundTag>("Sections", CompoundTag.class, sections));
+
+		Map<String, Tag> root = new HashMap<String, Tag>();
+		root.put("Level", new CompoundTag("Level", level));
+		return new CompoundTag("", root);
+	}
+
+	private static CompoundTag wide(Random random) {
+		Map<String, Tag> map = new HashMap<String, Tag>();
+		for(int i = 0; i < 1000; i++) {
+			String name = "key" + i;
+			map.put(name, new StringTag(name, Long.toHexString(random.nextLong())));
+		}
+
+		return new CompoundTag("", map);
+	}
+
+	private static CompoundTag deep(Random random, int depth) {
+		Map<String, Tag> map = new HashMap<String, Tag>();
+		map.put("Value", new IntTag("Value", random.nextInt()));
+		if(depth > 0) {
+			List<CompoundTag> children = new ArrayList<CompoundTag>();
+			children.add(deep(random, depth - 1));
+			map.put("Child", new ListTag<CompoundTag>("Child", CompoundTag.class, children));
+		}
+
+		return new CompoundTag("", map);
+	}
+
+	private static ByteArrayTag bytes(String name, Random random, int length) {
+		byte[] bytes = new byte[length];
+		// Mostly zeroes with some noise, so that compression has something
+		// realistic to work with.
+		for(int i = 0; i < length; i += 1 + random.nextInt(8)) {
+			bytes[i] = (byte) random.nextInt();
+		}
+
+		return new ByteArrayTag(name, bytes);
+	}
+
+	private static ListTag<DoubleTag> doubles(String name, Random random, int length) {
+		List<DoubleTag> values = new ArrayList<DoubleTag>();
+		for(int i = 0; i < length; i++) {
+			values.add(new DoubleTag("", random.nextDouble() * 1000));
+		}
+
+		return new ListTag<DoubleTag>(name, DoubleTag.class, values);
+	}
+
+}
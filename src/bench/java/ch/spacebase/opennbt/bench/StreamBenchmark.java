@@ -0,0 +1,112 @@
+package ch.spacebase.opennbt.bench;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.stream.NBTInputStream;
+import ch.spacebase.opennbt.stream.NBTOutputStream;
+import ch.spacebase.opennbt.tag.CompoundTag;
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * Measures <code>NBTInputStream.readTag</code> and
+ * <code>NBTOutputStream.writeTag</code> in memory, for each payload shape
+ * and compression.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamBenchmark {
+
+	@Param({ "small", "chunk", "palettedChunk", "wide", "deep", "player", "entities", "level" })
+	public String shape;
+
+	@Param({ "NONE", "GZIP", "ZLIB" })
+	public String compression;
+
+	private CompressionCodec codec;
+	private CompoundTag tag;
+	private byte[] data;
+	private ByteArrayOutputStream out;
+
+	@Setup
+	public void setup() throws IOException {
+		this.codec = Payloads.codec(this.compression);
+		this.tag = Payloads.create(this.shape);
+		this.out = new ByteArrayOutputStream();
+		NBTOutputStream stream = new NBTOutputStream(this.out, this.codec);
+		stream.writeTag(this.tag);
+		stream.close();
+		this.data = this.out.toByteArray();
+	}
+
+	@Benchmark
+	public Tag readTag() throws IOException {
+		NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(this.data), this.codec);
+		Tag tag = in.readTag();
+		in.close();
+		return tag;
+	}
+
+	@Benchmark
+	public int writeTag() throws IOException {
+		this.out.reset();
+		NBTOutputStream stream = new NBTOutputStream(this.out, this.codec);
+		stream.writeTag(this.tag);
+		stream.close();
+		return this.out.size();
+	}
+
+}
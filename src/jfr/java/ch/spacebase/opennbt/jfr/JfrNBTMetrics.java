@@ -0,0 +1,252 @@
+package ch.spacebase.opennbt.jfr;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import ch.spacebase.opennbt.metrics.Metrics;
+import ch.spacebase.opennbt.metrics.NBTMetrics;
+
+/**
+ * <p>An <code>NBTMetrics</code> which records Java Flight Recorder events
+ * for file loads and saves and for tags read and written, and passes every
+ * measurement on to the metrics installed before it.</p>
+ * 
+ * <p>Once installed with {@link #install()}, the metrics are only put in
+ * place while a recording which records the NBT events is running. At other
+ * times the metrics installed before them are used, so when nothing else is
+ * installed the streams measure nothing and create no events.</p>
+ * 
+ * <p>Events are only built while they are enabled in the running recording,
+ * and each has a <code>minDuration</code> setting, for example:</p>
+ * 
+ * <pre>
+ * &lt;event name="ch.spacebase.opennbt.NBTFileSave"&gt;
+ *   &lt;setting name="enabled"&gt;true&lt;/setting&gt;
+ *   &lt;setting name="minDuration"&gt;20 ms&lt;/setting&gt;
+ * &lt;/event&gt;
+ * </pre>
+ * 
+ * <p>The events are committed once an operation has finished, so their start
+ * time is the time the operation ended and their duration is zero. The time
+ * the operation took is in the <code>elapsed</code> field.</p>
+ */
+public class JfrNBTMetrics implements NBTMetrics {
+
+	/**
+	 * The names of the NBT events.
+	 */
+	private static final String[] EVENTS = { "ch.spacebase.opennbt.NBTDecode", "ch.spacebase.opennbt.NBTEncode", "ch.spacebase.opennbt.NBTFileLoad", "ch.spacebase.opennbt.NBTFileSave" };
+
+	/**
+	 * The metrics measurements are passed on to, or null.
+	 */
+	private final NBTMetrics next;
+
+	/**
+	 * Creates a new <code>JfrNBTMetrics</code>.
+	 * @param next The metrics to pass measurements on to, or null.
+	 */
+	public JfrNBTMetrics(NBTMetrics next) {
+		this.next = next;
+	}
+
+	/**
+	 * Installs a <code>JfrNBTMetrics</code> in front of the metrics which are
+	 * currently installed, for as long as a recording which records the NBT
+	 * events is running. The metrics are put in place and taken out again as
+	 * recordings start and stop.
+	 * @return The metrics.
+	 */
+	public static JfrNBTMetrics install() {
+		final JfrNBTMetrics metrics = new JfrNBTMetrics(Metrics.get());
+		// The listener is told about the recorder straight away if it is
+		// already running, which picks up recordings started before now.
+		FlightRecorder.addListener(new FlightRecorderListener() {
+
+			@Override
+			public void recorderInitialized(FlightRecorder recorder) {
+				metrics.update(recorder);
+			}
+
+			@Override
+			public void recordingStateChanged(Recording recording) {
+				metrics.update(FlightRecorder.getFlightRecorder());
+			}
+
+		});
+
+		return metrics;
+	}
+
+	/**
+	 * Puts these metrics in place if a running recording records the NBT
+	 * events, and takes them out otherwise. Metrics installed by anyone else
+	 * in the meantime are left alone.
+	 * @param recorder The flight recorder.
+	 */
+	private synchronized void update(FlightRecorder recorder) {
+		boolean recorded = false;
+		for(Recording recording : recorder.getRecordings()) {
+			if(recording.getState() == RecordingState.RUNNING && records(recording.getSettings())) {
+				recorded = true;
+				break;
+			}
+		}
+
+		if(recorded && Metrics.get() == this.next) {
+			Metrics.set(this);
+		} else if(!recorded && Metrics.get() == this) {
+			Metrics.set(this.next);
+		}
+	}
+
+	/**
+	 * Checks whether a recording with the given settings records any of the
+	 * NBT events. The events are enabled unless a setting turns them off.
+	 * @param settings The settings of the recording.
+	 * @return Whether an NBT event is recorded.
+	 */
+	private static boolean records(Map<String, String> settings) {
+		for(String event : EVENTS) {
+			if(!"false".equals(settings.get(event + "#enabled"))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public void decoded(int[] tagCounts, long bytes, long compressedBytes, long nanos) {
+		NBTDecodeEvent event = new NBTDecodeEvent();
+		if(event.isEnabled()) {
+			event.elapsed = nanos;
+			if(event.shouldCommit()) {
+				event.bytes = bytes;
+				event.compressedBytes = compressedBytes;
+				event.tags = sum(tagCounts);
+				event.commit();
+			}
+		}
+
+		if(this.next != null) {
+			this.next.decoded(tagCounts, bytes, compressedBytes, nanos);
+		}
+	}
+
+	@Override
+	public void encoded(int[] tagCounts, long bytes, long compressedBytes, long nanos) {
+		NBTEncodeEvent event = new NBTEncodeEvent();
+		// Closing a stream reports only the compressed bytes left in the
+		// compressor, which is not worth an event of its own.
+		if(event.isEnabled() && bytes > 0) {
+			event.elapsed = nanos;
+			if(event.shouldCommit()) {
+				event.bytes = bytes;
+				event.compressedBytes = compressedBytes;
+				event.tags = sum(tagCounts);
+				event.commit();
+			}
+		}
+
+		if(this.next != null) {
+			this.next.encoded(tagCounts, bytes, compressedBytes, nanos);
+		}
+	}
+
+	@Override
+	public void fileLoaded(File file, long bytes, long nanos) {
+		NBTFileLoadEvent event = new NBTFileLoadEvent();
+		if(event.isEnabled()) {
+			event.elapsed = nanos;
+			if(event.shouldCommit()) {
+				event.path = file.getPath();
+				event.bytes = bytes;
+				event.commit();
+			}
+		}
+
+		if(this.next != null) {
+			this.next.fileLoaded(file, bytes, nanos);
+		}
+	}
+
+	@Override
+	public void fileSaved(File file, long bytes, long nanos) {
+		NBTFileSaveEvent event = new NBTFileSaveEvent();
+		if(event.isEnabled()) {
+			event.elapsed = nanos;
+			if(event.shouldCommit()) {
+				event.path = file.getPath();
+				event.bytes = bytes;
+				event.commit();
+			}
+		}
+
+		if(this.next != null) {
+			this.next.fileSaved(file, bytes, nanos);
+		}
+	}
+
+	@Override
+	public void fileFailed(File file, boolean save, IOException e) {
+		if(this.next != null) {
+			this.next.fileFailed(file, save, e);
+		}
+	}
+
+	/**
+	 * Sums per-type tag counts.
+	 * @param tagCounts The counts.
+	 * @return The sum.
+	 */
+	private static long sum(int[] tagCounts) {
+		long sum = 0;
+		for(int count : tagCounts) {
+			sum += count;
+		}
+
+		return sum;
+	}
+
+}
@@ -0,0 +1,143 @@
+package ch.spacebase.opennbt.jfr;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.MetadataDefinition;
+import jdk.jfr.Name;
+import jdk.jfr.SettingControl;
+import jdk.jfr.Timespan;
+
+/**
+ * A setting which only lets events through whose measured duration is at
+ * least a threshold, such as <code>"20 ms"</code>. The events of this
+ * package are reported after the fact, so the built-in threshold, which
+ * looks at the time between <code>begin()</code> and <code>end()</code>,
+ * cannot be used.
+ */
+@MetadataDefinition
+@Name("ch.spacebase.opennbt.MinDuration")
+@Label("Minimum Duration")
+@Description("Record only events which took at least this long")
+@Timespan
+public final class MinDurationSetting extends SettingControl {
+
+	/**
+	 * The threshold in nanoseconds.
+	 */
+	private volatile long threshold = 0;
+
+	/**
+	 * The threshold as it was set.
+	 */
+	private volatile String value = "0 ns";
+
+	@Override
+	public String combine(Set<String> values) {
+		String result = null;
+		long min = Long.MAX_VALUE;
+		for(String value : values) {
+			long nanos = parse(value);
+			if(nanos < min) {
+				min = nanos;
+				result = value;
+			}
+		}
+
+		return result != null ? result : "0 ns";
+	}
+
+	@Override
+	public void setValue(String value) {
+		this.threshold = parse(value);
+		this.value = value;
+	}
+
+	@Override
+	public String getValue() {
+		return this.value;
+	}
+
+	/**
+	 * Checks whether a duration reaches the threshold.
+	 * @param nanos The duration in nanoseconds.
+	 * @return Whether the duration reaches the threshold.
+	 */
+	boolean accept(long nanos) {
+		return nanos >= this.threshold;
+	}
+
+	/**
+	 * Parses a timespan such as <code>"20 ms"</code>.
+	 * @param value The timespan.
+	 * @return The timespan in nanoseconds. Unparseable values count as 0.
+	 */
+	static long parse(String value) {
+		String str = value.trim();
+		int split = 0;
+		while(split < str.length() && Character.isDigit(str.charAt(split))) {
+			split++;
+		}
+
+		if(split == 0) {
+			return 0;
+		}
+
+		long amount = Long.parseLong(str.substring(0, split));
+		String unit = str.substring(split).trim();
+		if(unit.equals("ns") || unit.isEmpty()) {
+			return amount;
+		} else if(unit.equals("us")) {
+			return TimeUnit.MICROSECONDS.toNanos(amount);
+		} else if(unit.equals("ms")) {
+			return TimeUnit.MILLISECONDS.toNanos(amount);
+		} else if(unit.equals("s")) {
+			return TimeUnit.SECONDS.toNanos(amount);
+		} else if(unit.equals("m")) {
+			return TimeUnit.MINUTES.toNanos(amount);
+		} else if(unit.equals("h")) {
+			return TimeUnit.HOURS.toNanos(amount);
+		} else if(unit.equals("d")) {
+			return TimeUnit.DAYS.toNanos(amount);
+		}
+
+		return 0;
+	}
+
+}
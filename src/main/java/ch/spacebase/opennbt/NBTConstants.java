@@ -70,6 +70,31 @@ public final class NBTConstants {
 		TYPE_STRING_ARRAY = 66,
 		TYPE_UNKNOWN = 67;
 	
+	/**
+	 * Gets the size of the payload of a fixed size tag type.
+	 * @param type The tag type.
+	 * @return The size of the payload in bytes, or -1 if the size of the
+	 * payload depends on its contents.
+	 */
+	public static int getPayloadSize(int type) {
+		switch(type) {
+		case TYPE_END:
+			return 0;
+		case TYPE_BYTE:
+			return 1;
+		case TYPE_SHORT:
+			return 2;
+		case TYPE_INT:
+		case TYPE_FLOAT:
+			return 4;
+		case TYPE_LONG:
+		case TYPE_DOUBLE:
+			return 8;
+		default:
+			return -1;
+		}
+	}
+	
 	/**
 	 * Default private constructor.
 	 */
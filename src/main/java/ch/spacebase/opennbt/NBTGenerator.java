@@ -0,0 +1,530 @@
+package ch.spacebase.opennbt;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ch.spacebase.opennbt.tag.CompoundTag;
+import ch.spacebase.opennbt.tag.DoubleTag;
+import ch.spacebase.opennbt.tag.FloatTag;
+import ch.spacebase.opennbt.tag.StringTag;
+
+/**
+ * <p>Generates synthetic <strong>NBT</strong> data shaped like real world,
+ * player and level files, for benchmarks and soak tests.</p>
+ * 
+ * <p>The output depends only on the seed, the size settings and the
+ * arguments of each call. Generating the same chunk twice gives equal tags,
+ * no matter what was generated in between.</p>
+ */
+public final class NBTGenerator {
+
+	/**
+	 * Block names used for chunk palettes.
+	 */
+	private static final String[] BLOCKS = { "minecraft:air", "minecraft:stone", "minecraft:dirt", "minecraft:grass_block", "minecraft:bedrock", "minecraft:water", "minecraft:sand", "minecraft:gravel", "minecraft:coal_ore", "minecraft:iron_ore", "minecraft:oak_log", "minecraft:oak_leaves", "minecraft:deepslate", "minecraft:andesite", "minecraft:diorite", "minecraft:granite" };
+
+	/**
+	 * Item names used for inventories.
+	 */
+	private static final String[] ITEMS = { "minecraft:diamond_sword", "minecraft:bread", "minecraft:torch", "minecraft:cobblestone", "minecraft:oak_planks", "minecraft:iron_pickaxe", "minecraft:arrow", "minecraft:bow", "minecraft:coal", "minecraft:redstone", "minecraft:glass", "minecraft:book" };
+
+	/**
+	 * Entity names used for entity lists.
+	 */
+	private static final String[] ENTITIES = { "minecraft:zombie", "minecraft:skeleton", "minecraft:cow", "minecraft:sheep", "minecraft:item", "minecraft:arrow", "minecraft:villager", "minecraft:chicken" };
+
+	/**
+	 * Words strings are made of.
+	 */
+	private static final String[] WORDS = { "spawn", "mob", "fire", "tick", "drop", "keep", "inventory", "daylight", "cycle", "weather", "random", "speed", "command", "block", "output", "natural", "regeneration", "raid", "limit", "announce" };
+
+	/**
+	 * The seed.
+	 */
+	private final long seed;
+
+	/**
+	 * The number of sections in a chunk.
+	 */
+	private int sections = 16;
+
+	/**
+	 * The largest number of block states in a section's palette.
+	 */
+	private int paletteSize = 16;
+
+	/**
+	 * The number of slots in a player's inventory.
+	 */
+	private int inventorySize = 36;
+
+	/**
+	 * How many containers deep a player's inventory goes.
+	 */
+	private int nestingDepth = 4;
+
+	/**
+	 * The number of entities in an entity list.
+	 */
+	private int entities = 2000;
+
+	/**
+	 * The number of string entries in level data.
+	 */
+	private int strings = 500;
+
+	/**
+	 * The rough length of a generated string.
+	 */
+	private int stringLength = 32;
+
+	/**
+	 * Creates a new <code>NBTGenerator</code>.
+	 * @param seed The seed.
+	 */
+	public NBTGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the number of sections in a chunk. Defaults to 16.
+	 * @param sections The number of sections.
+	 * @return This generator.
+	 */
+	public NBTGenerator setSections(int sections) {
+		this.sections = check("sections", sections, 0);
+		return this;
+	}
+
+	/**
+	 * Sets the largest number of block states in a section's palette, which
+	 * decides how many bits each block takes in the section's
+	 * <code>BlockStates</code> array. Defaults to 16.
+	 * @param paletteSize The largest palette size.
+	 * @return This generator.
+	 */
+	public NBTGenerator setPaletteSize(int paletteSize) {
+		this.paletteSize = check("paletteSize", paletteSize, 1);
+		return this;
+	}
+
+	/**
+	 * Sets the number of slots in a player's inventory. Defaults to 36.
+	 * @param inventorySize The number of slots.
+	 * @return This generator.
+	 */
+	public NBTGenerator setInventorySize(int inventorySize) {
+		this.inventorySize = check("inventorySize", inventorySize, 1);
+		return this;
+	}
+
+	/**
+	 * Sets how many containers deep a player's inventory goes. The first slot
+	 * of each inventory holds a container, which holds the next inventory.
+	 * Defaults to 4.
+	 * @param nestingDepth The depth.
+	 * @return This generator.
+	 */
+	public NBTGenerator setNestingDepth(int nestingDepth) {
+		this.nestingDepth = check("nestingDepth", nestingDepth, 0);
+		return this;
+	}
+
+	/**
+	 * Sets the number of entities in an entity list. Defaults to 2000.
+	 * @param entities The number of entities.
+	 * @return This generator.
+	 */
+	public NBTGenerator setEntities(int entities) {
+		this.entities = check("entities", entities, 0);
+		return this;
+	}
+
+	/**
+	 * Sets the number of string entries in level data. Defaults to 500.
+	 * @param strings The number of entries.
+	 * @return This generator.
+	 */
+	public NBTGenerator setStrings(int strings) {
+		this.strings = check("strings", strings, 0);
+		return this;
+	}
+
+	/**
+	 * Sets the rough length of a generated string. Defaults to 32.
+	 * @param stringLength The length.
+	 * @return This generator.
+	 */
+	public NBTGenerator setStringLength(int stringLength) {
+		this.stringLength = check("stringLength", stringLength, 1);
+		return this;
+	}
+
+	/**
+	 * Generates a chunk: a compound holding a list of sections, each with a
+	 * palette and a large <code>TAG_Long_Array</code> of packed block states,
+	 * along with light data and height maps.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return The chunk.
+	 */
+	public CompoundTag chunk(int x, int z) {
+		Random random = random(1, x, z);
+		List<CompoundTag> sections = new ArrayList<CompoundTag>(this.sections);
+		for(int y = 0; y < this.sections; y++) {
+			sections.add(section(random, y));
+		}
+
+		TagBuilder heightmaps = new TagBuilder("Heightmaps");
+		heightmaps.append("MOTION_BLOCKING", heightmap(random));
+		heightmaps.append("WORLD_SURFACE", heightmap(random));
+		heightmaps.append("OCEAN_FLOOR", heightmap(random));
+
+		TagBuilder level = new TagBuilder("Level");
+		level.append("xPos", x);
+		level.append("zPos", z);
+		level.append("LastUpdate", (long) random.nextInt(1000000));
+		level.append("InhabitedTime", (long) random.nextInt(100000));
+		level.append("Status", "full");
+		level.append("Biomes", ints(random, 1024, 64));
+		level.append("Sections", CompoundTag.class, sections);
+		level.append(heightmaps);
+
+		return new TagBuilder().append("DataVersion", 2586).append(level).toCompoundTag();
+	}
+
+	/**
+	 * Generates a player: a compound with the usual position, health and
+	 * attribute data, and an inventory whose first slot holds a container,
+	 * whose first slot holds another container, and so on.
+	 * @param index The index of the player.
+	 * @return The player.
+	 */
+	public CompoundTag player(int index) {
+		Random random = random(2, index, 0);
+		List<CompoundTag> attributes = new ArrayList<CompoundTag>();
+		attributes.add(new TagBuilder().append("Name", "generic.max_health").append("Base", 20d).toCompoundTag());
+		attributes.add(new TagBuilder().append("Name", "generic.movement_speed").append("Base", 0.1d).toCompoundTag());
+		attributes.add(new TagBuilder().append("Name", "generic.attack_damage").append("Base", 1d).toCompoundTag());
+
+		TagBuilder abilities = new TagBuilder("abilities");
+		abilities.append("flying", (byte) 0);
+		abilities.append("mayfly", (byte) 0);
+		abilities.append("flySpeed", 0.05f);
+		abilities.append("walkSpeed", 0.1f);
+
+		TagBuilder player = new TagBuilder();
+		player.append("DataVersion", 2586);
+		player.append("Pos", DoubleTag.class, doubles(random, 3, 1000));
+		player.append("Motion", DoubleTag.class, doubles(random, 3, 1));
+		player.append("Rotation", FloatTag.class, floats(random, 2, 360));
+		player.append("Health", 1 + random.nextInt(20) + 0f);
+		player.append("foodLevel", random.nextInt(21));
+		player.append("XpTotal", random.nextInt(5000));
+		player.append("UUIDMost", random.nextLong());
+		player.append("UUIDLeast", random.nextLong());
+		player.append("Dimension", "minecraft:overworld");
+		player.append("Attributes", CompoundTag.class, attributes);
+		player.append(abilities);
+		player.append("Inventory", CompoundTag.class, items(random, this.inventorySize, this.nestingDepth));
+		player.append("EnderItems", CompoundTag.class, items(random, 27, 0));
+		return player.toCompoundTag();
+	}
+
+	/**
+	 * Generates an entity list: a compound holding a list of many small
+	 * entity compounds.
+	 * @param x The x coordinate of the chunk the entities are in.
+	 * @param z The z coordinate of the chunk the entities are in.
+	 * @return The entity list.
+	 */
+	public CompoundTag entities(int x, int z) {
+		Random random = random(3, x, z);
+		List<CompoundTag> entities = new ArrayList<CompoundTag>(this.entities);
+		for(int i = 0; i < this.entities; i++) {
+			TagBuilder entity = new TagBuilder();
+			entity.append("id", ENTITIES[random.nextInt(ENTITIES.length)]);
+			entity.append("Pos", DoubleTag.class, doubles(random, 3, 16));
+			entity.append("Motion", DoubleTag.class, doubles(random, 3, 1));
+			entity.append("Rotation", FloatTag.class, floats(random, 2, 360));
+			entity.append("Health", 1 + random.nextInt(20) + 0f);
+			entity.append("Air", (short) 300);
+			entity.append("Fire", (short) -1);
+			entity.append("OnGround", (byte) random.nextInt(2));
+			entity.append("UUIDMost", random.nextLong());
+			entity.append("UUIDLeast", random.nextLong());
+			if(random.nextInt(10) == 0) {
+				entity.append("CustomName", string(random));
+			}
+
+			entities.add(entity.toCompoundTag());
+		}
+
+		return new TagBuilder().append("DataVersion", 2586).append("Position", new int[] { x, z }).append("Entities", CompoundTag.class, entities).toCompoundTag();
+	}
+
+	/**
+	 * Generates level data: a compound dominated by strings, with game rules,
+	 * data pack names and a long generator setting.
+	 * @return The level data.
+	 */
+	public CompoundTag level() {
+		Random random = random(4, 0, 0);
+		TagBuilder rules = new TagBuilder("GameRules");
+		for(int i = 0; i < this.strings; i++) {
+			rules.append(WORDS[random.nextInt(WORDS.length)] + i, random.nextBoolean() ? string(random) : String.valueOf(random.nextInt(1000)));
+		}
+
+		List<StringTag> packs = new ArrayList<StringTag>();
+		for(int i = 0; i < Math.max(1, this.strings / 10); i++) {
+			packs.add(new StringTag("", "file/" + string(random)));
+		}
+
+		TagBuilder data = new TagBuilder("Data");
+		data.append("LevelName", string(random));
+		data.append("version", 19133);
+		data.append("RandomSeed", random.nextLong());
+		data.append("generatorName", "default");
+		data.append("generatorOptions", string(random, this.stringLength * 8));
+		data.append("Time", (long) random.nextInt(Integer.MAX_VALUE));
+		data.append("DayTime", (long) random.nextInt(24000));
+		data.append("SpawnX", random.nextInt(1000));
+		data.append("SpawnY", 64);
+		data.append("SpawnZ", random.nextInt(1000));
+		data.append("raining", (byte) random.nextInt(2));
+		data.append("ServerBrands", StringTag.class, packs.subList(0, 1));
+		data.append("DataPacks", StringTag.class, packs);
+		data.append(rules);
+		return new TagBuilder().append(data).toCompoundTag();
+	}
+
+	/**
+	 * Generates a section of a chunk.
+	 * @param random The random source.
+	 * @param y The y coordinate of the section.
+	 * @return The section.
+	 */
+	private CompoundTag section(Random random, int y) {
+		int states = 1 + random.nextInt(this.paletteSize);
+		List<CompoundTag> palette = new ArrayList<CompoundTag>(states);
+		for(int i = 0; i < states; i++) {
+			TagBuilder state = new TagBuilder().append("Name", BLOCKS[i % BLOCKS.length]);
+			if(i >= BLOCKS.length) {
+				state.append(new TagBuilder("Properties").append("variant", String.valueOf(i / BLOCKS.length)).toCompoundTag());
+			}
+
+			palette.add(state.toCompoundTag());
+		}
+
+		// Blocks are packed into longs the way the game does it, with at least
+		// four bits each and no block spanning two longs. Runs of the same
+		// block keep the data about as compressible as real terrain.
+		int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(states - 1));
+		int perLong = 64 / bits;
+		long[] blockStates = new long[(4096 + perLong - 1) / perLong];
+		int block = 0;
+		for(int i = 0; i < 4096; i++) {
+			if(random.nextInt(10) == 0) {
+				block = random.nextInt(states);
+			}
+
+			blockStates[i / perLong] |= (long) block << ((i % perLong) * bits);
+		}
+
+		TagBuilder section = new TagBuilder();
+		section.append("Y", (byte) y);
+		section.append("Palette", CompoundTag.class, palette);
+		section.append("BlockStates", blockStates);
+		section.append("BlockLight", bytes(random, 2048));
+		section.append("SkyLight", bytes(random, 2048));
+		return section.toCompoundTag();
+	}
+
+	/**
+	 * Generates the items of an inventory.
+	 * @param random The random source.
+	 * @param slots The number of slots.
+	 * @param depth How many containers deep the inventory goes.
+	 * @return The items.
+	 */
+	private List<CompoundTag> items(Random random, int slots, int depth) {
+		List<CompoundTag> items = new ArrayList<CompoundTag>(slots);
+		for(int slot = 0; slot < slots; slot++) {
+			TagBuilder item = new TagBuilder();
+			item.append("Slot", (byte) slot);
+			item.append("Count", (byte) (1 + random.nextInt(64)));
+			if(slot == 0 && depth > 0) {
+				item.append("id", "minecraft:shulker_box");
+				TagBuilder blockEntity = new TagBuilder("BlockEntityTag");
+				blockEntity.append("id", "minecraft:shulker_box");
+				blockEntity.append("Items", CompoundTag.class, items(random, 27, depth - 1));
+				item.append(new TagBuilder("tag").append(blockEntity).toCompoundTag());
+			} else {
+				item.append("id", ITEMS[random.nextInt(ITEMS.length)]);
+				if(random.nextInt(4) == 0) {
+					TagBuilder display = new TagBuilder("display");
+					display.append("Name", string(random));
+					item.append(new TagBuilder("tag").append("Damage", random.nextInt(250)).append(display).toCompoundTag());
+				}
+			}
+
+			items.add(item.toCompoundTag());
+		}
+
+		return items;
+	}
+
+	/**
+	 * Generates a height map, packed with nine bits per column.
+	 * @param random The random source.
+	 * @return The height map.
+	 */
+	private static long[] heightmap(Random random) {
+		long[] heights = new long[37];
+		int height = 64;
+		for(int i = 0; i < 256; i++) {
+			height = Math.max(0, Math.min(255, height + random.nextInt(3) - 1));
+			heights[i / 7] |= (long) height << ((i % 7) * 9);
+		}
+
+		return heights;
+	}
+
+	/**
+	 * Generates a string of roughly the configured length.
+	 * @param random The random source.
+	 * @return The string.
+	 */
+	private String string(Random random) {
+		return string(random, this.stringLength);
+	}
+
+	/**
+	 * Generates a string of words of roughly the given length.
+	 * @param random The random source.
+	 * @param length The length.
+	 * @return The string.
+	 */
+	private static String string(Random random, int length) {
+		StringBuilder builder = new StringBuilder(length + 16);
+		while(builder.length() < length) {
+			if(builder.length() > 0) {
+				builder.append('_');
+			}
+
+			builder.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+
+		builder.setLength(length);
+		return builder.toString();
+	}
+
+	private static byte[] bytes(Random random, int length) {
+		byte[] bytes = new byte[length];
+		byte value = 0;
+		for(int i = 0; i < length; i++) {
+			if(random.nextInt(8) == 0) {
+				value = (byte) random.nextInt(256);
+			}
+
+			bytes[i] = value;
+		}
+
+		return bytes;
+	}
+
+	private static int[] ints(Random random, int length, int bound) {
+		int[] ints = new int[length];
+		for(int i = 0; i < length; i++) {
+			ints[i] = random.nextInt(bound);
+		}
+
+		return ints;
+	}
+
+	private static List<DoubleTag> doubles(Random random, int length, double scale) {
+		List<DoubleTag> doubles = new ArrayList<DoubleTag>(length);
+		for(int i = 0; i < length; i++) {
+			doubles.add(new DoubleTag("", (random.nextDouble() * 2 - 1) * scale));
+		}
+
+		return doubles;
+	}
+
+	private static List<FloatTag> floats(Random random, int length, float scale) {
+		List<FloatTag> floats = new ArrayList<FloatTag>(length);
+		for(int i = 0; i < length; i++) {
+			floats.add(new FloatTag("", random.nextFloat() * scale));
+		}
+
+		return floats;
+	}
+
+	/**
+	 * Creates the random source for one piece of generated data, so that
+	 * each piece depends only on the seed and its own arguments.
+	 * @param kind The kind of data.
+	 * @param a The first argument.
+	 * @param b The second argument.
+	 * @return The random source.
+	 */
+	private Random random(int kind, int a, int b) {
+		long mixed = this.seed;
+		mixed = mixed * 0x9E3779B97F4A7C15L + kind;
+		mixed = mixed * 0x9E3779B97F4A7C15L + a;
+		mixed = mixed * 0x9E3779B97F4A7C15L + b;
+		return new Random(mixed ^ (mixed >>> 31));
+	}
+
+	/**
+	 * Checks a size setting.
+	 * @param name The name of the setting.
+	 * @param value The value.
+	 * @param min The smallest allowed value.
+	 * @return The value.
+	 * @throws IllegalArgumentException if the value is too small.
+	 */
+	private static int check(String name, int value, int min) {
+		if(value < min) {
+			throw new IllegalArgumentException(name + " must be at least " + min + ", got " + value + ".");
+		}
+
+		return value;
+	}
+
+}
@@ -1,15 +1,33 @@
 package ch.spacebase.opennbt;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import ch.spacebase.opennbt.compression.AutoDetectCompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.exception.NBTLimitException;
+import ch.spacebase.opennbt.metrics.Metrics;
+import ch.spacebase.opennbt.metrics.NBTMetrics;
+import ch.spacebase.opennbt.stream.NBTBufferReader;
 import ch.spacebase.opennbt.stream.NBTInputStream;
 import ch.spacebase.opennbt.stream.NBTOutputStream;
+import ch.spacebase.opennbt.stream.NBTReadLimits;
+import ch.spacebase.opennbt.stream.NBTStreamReader;
+import ch.spacebase.opennbt.tag.CompoundTag;
 import ch.spacebase.opennbt.tag.Tag;
 
 /*
@@ -51,13 +69,43 @@ import ch.spacebase.opennbt.tag.Tag;
  */
 public class NBTIOUtils {
 
+	private static final Logger logger = Logger.getLogger("NBTIOUtils");
+
 	public static List<Tag> loadNBT(File file) {
+		return loadNBT(file, CompressionCodecs.AUTO);
+	}
+	
+	public static List<Tag> loadNBT(File file, CompressionCodec codec) {
+		return loadNBT(file, codec, NBTReadLimits.DEFAULT);
+	}
+	
+	/**
+	 * Loads an NBT file, rejecting data which exceeds the given limits.
+	 * Uncompressed files are read onto the heap in one go and parsed from
+	 * there. The file is closed before this returns, so it may be rewritten
+	 * straight away.
+	 * @param file The file to load.
+	 * @param codec The codec the file is compressed with.
+	 * @param limits The limits the data is checked against.
+	 * @return The tags in the file, or null if it could not be read or
+	 * exceeds the limits.
+	 */
+	public static List<Tag> loadNBT(File file, CompressionCodec codec, NBTReadLimits limits) {
+		if(codec == CompressionCodecs.NONE || (codec == CompressionCodecs.AUTO && !isCompressed(file))) {
+			return loadUncompressedNBT(file, false, false, limits);
+		}
+		
+		return loadStreamedNBT(file, codec, limits);
+	}
+	
+	private static List<Tag> loadStreamedNBT(File file, CompressionCodec codec, NBTReadLimits limits) {
+		long start = System.nanoTime();
 		List<Tag> result = new ArrayList<Tag>();
 		
 		NBTInputStream input = null;
 		
 		try {
-			input = new NBTInputStream(new FileInputStream(file));
+			input = new NBTInputStream(new FileInputStream(file), codec, limits);
 		
 			Tag next = null;
 		
@@ -65,48 +113,366 @@ public class NBTIOUtils {
 				result.add(next);
 			}
 		} catch(IOException ioe) {
-			System.out.println("Failed to create NBTInputStream from file " + file.getName() + ".");
+			logger.log(Level.SEVERE, "Failed to create NBTInputStream from file " + file.getName() + ".", ioe);
+			reportFailure(file, false, ioe);
+			return null;
+		} finally {
+			if(input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Failed to close NBTInputStream.", e);
+				}
+			}
+		}
+		
+		reportLoad(file, start);
+		return result;
+	}
+	
+	/**
+	 * Loads an uncompressed NBT file by mapping it into memory and parsing
+	 * the tags straight from the mapping. The mapping is only released when
+	 * it is garbage collected, and until then some platforms, such as
+	 * Windows, do not allow the file to be truncated or deleted. Use
+	 * {@link #loadNBT(File)} to load a file which is about to be rewritten.
+	 * @param file The file to load.
+	 * @return The tags in the file, or null if it could not be read.
+	 */
+	public static List<Tag> loadMappedNBT(File file) {
+		return loadMappedNBT(file, NBTReadLimits.DEFAULT);
+	}
+	
+	/**
+	 * Loads an uncompressed NBT file by mapping it into memory and parsing
+	 * the tags straight from the mapping, rejecting data which exceeds the
+	 * given limits. The mapping lives until it is garbage collected, as
+	 * described for {@link #loadMappedNBT(File)}.
+	 * @param file The file to load.
+	 * @param limits The limits the data is checked against.
+	 * @return The tags in the file, or null if it could not be read or
+	 * exceeds the limits.
+	 */
+	public static List<Tag> loadMappedNBT(File file, NBTReadLimits limits) {
+		return loadUncompressedNBT(file, false, true, limits);
+	}
+	
+	/**
+	 * Loads an NBT file lazily. Compounds and lists keep their raw data and
+	 * only read their children when they are accessed. The whole file is
+	 * read into memory first, decompressing it if needed, so it may be
+	 * rewritten while the tags are still in use. Lazily read tags may be
+	 * accessed from several threads at once. Malformed data found when a tag
+	 * is accessed is reported by an <code>IllegalStateException</code>.
+	 * @param file The file to load.
+	 * @return The tags in the file, or null if it could not be read.
+	 */
+	public static List<Tag> loadLazyNBT(File file) {
+		return loadLazyNBT(file, CompressionCodecs.AUTO);
+	}
+	
+	/**
+	 * Loads an NBT file lazily. Compounds and lists keep their raw data and
+	 * only read their children when they are accessed. The whole file is
+	 * read into memory first, decompressing it if needed, so it may be
+	 * rewritten while the tags are still in use. Lazily read tags may be
+	 * accessed from several threads at once. Malformed data found when a tag
+	 * is accessed is reported by an <code>IllegalStateException</code>.
+	 * @param file The file to load.
+	 * @param codec The codec the file is compressed with.
+	 * @return The tags in the file, or null if it could not be read.
+	 */
+	public static List<Tag> loadLazyNBT(File file, CompressionCodec codec) {
+		return loadLazyNBT(file, codec, NBTReadLimits.DEFAULT);
+	}
+	
+	/**
+	 * Loads an NBT file lazily, rejecting data which exceeds the given
+	 * limits.
+	 * @param file The file to load.
+	 * @param codec The codec the file is compressed with.
+	 * @param limits The limits the data is checked against.
+	 * @return The tags in the file, or null if it could not be read or
+	 * exceeds the limits.
+	 */
+	public static List<Tag> loadLazyNBT(File file, CompressionCodec codec, NBTReadLimits limits) {
+		if(codec == CompressionCodecs.NONE || (codec == CompressionCodecs.AUTO && !isCompressed(file))) {
+			return loadUncompressedNBT(file, true, false, limits);
+		}
+		
+		long start = System.nanoTime();
+		List<Tag> result = new ArrayList<Tag>();
+		
+		InputStream input = null;
+		
+		try {
+			input = codec.decompress(new FileInputStream(file));
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+			while((count = input.read(buffer)) != -1) {
+				bytes.write(buffer, 0, count);
+				if(bytes.size() > limits.getMaxBytes()) {
+					throw new NBTLimitException("NBT data exceeds the limit of " + limits.getMaxBytes() + " bytes", bytes.size());
+				}
+			}
+			
+			NBTBufferReader reader = new NBTBufferReader(ByteBuffer.wrap(bytes.toByteArray()), true, limits);
+			
+			Tag next = null;
+			
+			while((next = reader.readTag()) != null) {
+				result.add(next);
+			}
+		} catch(IOException ioe) {
+			logger.log(Level.SEVERE, "Failed to read NBT file " + file.getName() + ".", ioe);
+			reportFailure(file, false, ioe);
 			return null;
 		} finally {
 			if(input != null) {
 				try {
 					input.close();
 				} catch (IOException e) {
-					System.out.println("Failed to close NBTInputStream.");
-					e.printStackTrace();
+					logger.log(Level.WARNING, "Failed to close NBT file.", e);
 				}
 			}
 		}
 		
+		reportLoad(file, start);
 		return result;
 	}
 	
+	private static List<Tag> loadUncompressedNBT(File file, boolean lazy, boolean map, NBTReadLimits limits) {
+		long start = System.nanoTime();
+		List<Tag> result = new ArrayList<Tag>();
+		
+		RandomAccessFile raf = null;
+		
+		try {
+			raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			if(channel.size() > Integer.MAX_VALUE) {
+				raf.close();
+				raf = null;
+				return loadStreamedNBT(file, CompressionCodecs.NONE, limits);
+			}
+			
+			if(channel.size() > limits.getMaxBytes()) {
+				throw new NBTLimitException("NBT file of " + channel.size() + " bytes exceeds the limit of " + limits.getMaxBytes() + " bytes", -1);
+			}
+			
+			ByteBuffer data;
+			if(!map) {
+				// A mapping outlives the file being closed, which keeps some
+				// platforms from rewriting the file, and lazily read tags
+				// would see it change. Read the file onto the heap instead.
+				data = ByteBuffer.allocate((int) channel.size());
+				while(data.hasRemaining()) {
+					if(channel.read(data) == -1) {
+						throw new EOFException("NBT file " + file.getName() + " was truncated while reading.");
+					}
+				}
+				
+				data.flip();
+			} else {
+				data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			
+			NBTBufferReader reader = new NBTBufferReader(data, lazy, limits);
+			
+			Tag next = null;
+			
+			while((next = reader.readTag()) != null) {
+				result.add(next);
+			}
+		} catch(IOException ioe) {
+			logger.log(Level.SEVERE, "Failed to read NBT file " + file.getName() + ".", ioe);
+			reportFailure(file, false, ioe);
+			return null;
+		} finally {
+			if(raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Failed to close NBT file.", e);
+				}
+			}
+		}
+		
+		reportLoad(file, start);
+		return result;
+	}
+	
+	/**
+	 * Reports a loaded file to the installed metrics.
+	 * @param file The file.
+	 * @param start The value of <code>System.nanoTime()</code> when loading
+	 * started.
+	 */
+	private static void reportLoad(File file, long start) {
+		NBTMetrics metrics = Metrics.get();
+		if(metrics != null) {
+			metrics.fileLoaded(file, file.length(), System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Reports a file which could not be loaded or saved to the installed
+	 * metrics.
+	 * @param file The file.
+	 * @param save Whether the file was being saved.
+	 * @param e The error.
+	 */
+	private static void reportFailure(File file, boolean save, IOException e) {
+		NBTMetrics metrics = Metrics.get();
+		if(metrics != null) {
+			metrics.fileFailed(file, save, e);
+		}
+	}
+	
+	/**
+	 * Checks whether a file starts with a GZIP or zlib header.
+	 * @param file The file to check.
+	 * @return Whether the file is compressed.
+	 */
+	private static boolean isCompressed(File file) {
+		FileInputStream in = null;
+		
+		try {
+			in = new FileInputStream(file);
+			int first = in.read();
+			int second = first != -1 ? in.read() : -1;
+			return AutoDetectCompressionCodec.detect(first, second) != CompressionCodecs.NONE;
+		} catch(IOException e) {
+			// Let the stream path report the failure.
+			return true;
+		} finally {
+			if(in != null) {
+				try {
+					in.close();
+				} catch(IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Loads only the given paths of the root compound of an NBT file,
+	 * skipping everything else in a single pass.
+	 * @param file The file to load.
+	 * @param paths The dot separated paths to load, such as
+	 * <code>"Level.xPos"</code>.
+	 * @return A compound holding only the selected tags, or null if the file
+	 * could not be read.
+	 * @see NBTStreamReader#readSelected(String...)
+	 */
+	public static CompoundTag load(File file, String... paths) {
+		return load(file, CompressionCodecs.AUTO, paths);
+	}
+	
+	/**
+	 * Loads only the given paths of the root compound of an NBT file,
+	 * skipping everything else in a single pass.
+	 * @param file The file to load.
+	 * @param codec The codec the file is compressed with.
+	 * @param paths The dot separated paths to load, such as
+	 * <code>"Level.xPos"</code>.
+	 * @return A compound holding only the selected tags, or null if the file
+	 * could not be read.
+	 * @see NBTStreamReader#readSelected(String...)
+	 */
+	public static CompoundTag load(File file, CompressionCodec codec, String... paths) {
+		return load(file, codec, NBTReadLimits.DEFAULT, paths);
+	}
+	
+	/**
+	 * Loads only the given paths of the root compound of an NBT file,
+	 * skipping everything else in a single pass and rejecting data which
+	 * exceeds the given limits.
+	 * @param file The file to load.
+	 * @param codec The codec the file is compressed with.
+	 * @param limits The limits the data is checked against.
+	 * @param paths The dot separated paths to load, such as
+	 * <code>"Level.xPos"</code>.
+	 * @return A compound holding only the selected tags, or null if the file
+	 * could not be read or exceeds the limits.
+	 * @see NBTStreamReader#readSelected(String...)
+	 */
+	public static CompoundTag load(File file, CompressionCodec codec, NBTReadLimits limits, String... paths) {
+		long start = System.nanoTime();
+		NBTStreamReader reader = null;
+		
+		try {
+			reader = new NBTStreamReader(new FileInputStream(file), codec, limits);
+			if(reader.next() != NBTConstants.TYPE_COMPOUND) {
+				logger.severe("NBT file " + file.getName() + " does not start with a compound.");
+				return null;
+			}
+			
+			CompoundTag result = reader.readSelected(paths);
+			reportLoad(file, start);
+			return result;
+		} catch(IOException ioe) {
+			logger.log(Level.SEVERE, "Failed to create NBTStreamReader from file " + file.getName() + ".", ioe);
+			reportFailure(file, false, ioe);
+			return null;
+		} finally {
+			if(reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "Failed to close NBTStreamReader.", e);
+				}
+			}
+		}
+	}
+	
 	public static void writeNBT(File file, List<Tag> tags) {
+		writeNBT(file, tags, CompressionCodecs.GZIP);
+	}
+	
+	public static void writeNBT(File file, List<Tag> tags, CompressionCodec codec) {
+		long start = System.nanoTime();
 		NBTOutputStream output = null;
 		
 		try {
-			output = new NBTOutputStream(new FileOutputStream(file));
+			output = new NBTOutputStream(new FileOutputStream(file), codec);
 			
 			for(Tag tag : tags) {
 				output.writeTag(tag);
 			}
+			
+			// Compressors write their last block on close, so a failure there
+			// leaves the file corrupt and counts as a failed save.
+			NBTOutputStream written = output;
+			output = null;
+			written.close();
 		} catch(IOException ioe) {
-			System.out.println("Failed to create NBTOutputStream from file " + file.getName() + ".");
+			logger.log(Level.SEVERE, "Failed to write NBT to file " + file.getName() + ".", ioe);
+			reportFailure(file, true, ioe);
 			return;
 		} finally {
 			if(output != null) {
 				try {
 					output.close();
 				} catch (IOException e) {
-					System.out.println("Failed to close NBTOutputStream.");
-					e.printStackTrace();
+					logger.log(Level.WARNING, "Failed to close NBTOutputStream.", e);
 				}
 			}
 		}
+		
+		NBTMetrics metrics = Metrics.get();
+		if(metrics != null) {
+			metrics.fileSaved(file, file.length(), System.nanoTime() - start);
+		}
 	}
 	
 	public static Tag[] loadNBTArray(File file) {
-		List<Tag> tags = loadNBT(file);
+		return loadNBTArray(file, CompressionCodecs.AUTO);
+	}
+	
+	public static Tag[] loadNBTArray(File file, CompressionCodec codec) {
+		List<Tag> tags = loadNBT(file, codec);
 		
 		if(tags != null) {
 			return tags.toArray(new Tag[tags.size()]);
@@ -119,4 +485,8 @@ public class NBTIOUtils {
 		writeNBT(file, Arrays.asList(tags));
 	}
 	
+	public static void writeNBTArray(File file, Tag[] tags, CompressionCodec codec) {
+		writeNBT(file, Arrays.asList(tags), codec);
+	}
+	
 }
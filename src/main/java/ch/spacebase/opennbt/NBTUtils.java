@@ -6,26 +6,10 @@ import java.util.Map.Entry;
 import java.util.logging.Logger;
 
 import ch.spacebase.opennbt.exception.InvalidNBTException;
-import ch.spacebase.opennbt.tag.ByteArrayTag;
-import ch.spacebase.opennbt.tag.ByteTag;
 import ch.spacebase.opennbt.tag.CompoundTag;
-import ch.spacebase.opennbt.tag.DoubleTag;
-import ch.spacebase.opennbt.tag.EndTag;
-import ch.spacebase.opennbt.tag.FloatTag;
-import ch.spacebase.opennbt.tag.IntArrayTag;
-import ch.spacebase.opennbt.tag.IntTag;
-import ch.spacebase.opennbt.tag.ListTag;
-import ch.spacebase.opennbt.tag.LongTag;
-import ch.spacebase.opennbt.tag.ShortTag;
-import ch.spacebase.opennbt.tag.StringTag;
 import ch.spacebase.opennbt.tag.Tag;
-import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
-import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
-import ch.spacebase.opennbt.tag.custom.LongArrayTag;
-import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
-import ch.spacebase.opennbt.tag.custom.ObjectTag;
-import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
-import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.TagCloner;
+import ch.spacebase.opennbt.tag.TagType;
 import ch.spacebase.opennbt.tag.custom.UnknownTag;
 
 /*
@@ -75,143 +59,43 @@ public final class NBTUtils {
 	 * @return The type name.
 	 */
 	public static String getTypeName(Class<? extends Tag> clazz) {
-		if(clazz.equals(ByteArrayTag.class)) {
-			return "TAG_Byte_Array";
-		} else if(clazz.equals(ByteTag.class)) {
-			return "TAG_Byte";
-		} else if(clazz.equals(CompoundTag.class)) {
-			return "TAG_Compound";
-		} else if(clazz.equals(DoubleTag.class)) {
-			return "TAG_Double";
-		} else if(clazz.equals(EndTag.class)) {
-			return "TAG_End";
-		} else if(clazz.equals(FloatTag.class)) {
-			return "TAG_Float";
-		} else if(clazz.equals(IntTag.class)) {
-			return "TAG_Int";
-		} else if(clazz.equals(ListTag.class)) {
-			return "TAG_List";
-		} else if(clazz.equals(LongTag.class)) {
-			return "TAG_Long";
-		} else if(clazz.equals(ShortTag.class)) {
-			return "TAG_Short";
-		} else if(clazz.equals(StringTag.class)) {
-			return "TAG_String";
-		} else if (clazz.equals(IntArrayTag.class)) {
-			return "TAG_Int_Array";
-		} else if (clazz.equals(DoubleArrayTag.class)) {
-			return "TAG_Double_Array";
-		} else if (clazz.equals(FloatArrayTag.class)) {
-			return "TAG_Float_Array";
-		} else if (clazz.equals(LongArrayTag.class)) {
-			return "TAG_Long_Array";
-		} else if (clazz.equals(ObjectArrayTag.class)) {
-			return "TAG_Object_Array";
-		} else if (clazz.equals(ObjectTag.class)) {
-			return "TAG_Object";
-		} else if (clazz.equals(ShortArrayTag.class)) {
-			return "TAG_Short_Array";
-		} else if (clazz.equals(StringArrayTag.class)) {
-			return "TAG_String_Array";
-		} else if (clazz.equals(UnknownTag.class)) {
-			return "TAG_Unknown";
-		} else {
+		TagType type = TagType.get(clazz);
+		if(type == null) {
 			logger.warning("Unknown tag class (" + clazz.getName() + ") found.");
 			return "TAG_Unknown";
 		}
+
+		return type.getName();
 	}
 	
 	/**
 	 * Gets the type code of a tag class.
 	 * @param clazz The tag class.
 	 * @return The type code.
-	 * @throws IllegalArgumentException if the tag class is invalid.
 	 */
 	public static int getTypeCode(Class<? extends Tag> clazz) {
-		if(clazz.equals(ByteArrayTag.class)) {
-			return NBTConstants.TYPE_BYTE_ARRAY;
-		} else if(clazz.equals(ByteTag.class)) {
-			return NBTConstants.TYPE_BYTE;
-		} else if(clazz.equals(CompoundTag.class)) {
-			return NBTConstants.TYPE_COMPOUND;
-		} else if(clazz.equals(DoubleTag.class)) {
-			return NBTConstants.TYPE_DOUBLE;
-		} else if(clazz.equals(EndTag.class)) {
-			return NBTConstants.TYPE_END;
-		} else if(clazz.equals(FloatTag.class)) {
-			return NBTConstants.TYPE_FLOAT;
-		} else if(clazz.equals(IntTag.class)) {
-			return NBTConstants.TYPE_INT;
-		} else if(clazz.equals(ListTag.class)) {
-			return NBTConstants.TYPE_LIST;
-		} else if(clazz.equals(LongTag.class)) {
-			return NBTConstants.TYPE_LONG;
-		} else if(clazz.equals(ShortTag.class)) {
-			return NBTConstants.TYPE_SHORT;
-		} else if(clazz.equals(StringTag.class)) {
-			return NBTConstants.TYPE_STRING;
-		} else if(clazz.equals(IntArrayTag.class)) {
-			return NBTConstants.TYPE_INT_ARRAY;
-		} else if(clazz.equals(DoubleArrayTag.class)) {
-			return NBTConstants.TYPE_DOUBLE_ARRAY;
-		} else if(clazz.equals(FloatArrayTag.class)) {
-			return NBTConstants.TYPE_FLOAT_ARRAY;
-		} else if(clazz.equals(LongArrayTag.class)) {
-			return NBTConstants.TYPE_LONG_ARRAY;
-		} else if(clazz.equals(ObjectArrayTag.class)) {
-			return NBTConstants.TYPE_OBJECT_ARRAY;
-		} else if(clazz.equals(ObjectTag.class)) {
-			return NBTConstants.TYPE_OBJECT;
-		} else if(clazz.equals(ShortArrayTag.class)) {
-			return NBTConstants.TYPE_SHORT_ARRAY;
-		} else if(clazz.equals(StringArrayTag.class)) {
-			return NBTConstants.TYPE_STRING_ARRAY;
-		} else if(clazz.equals(UnknownTag.class)) {
-			return NBTConstants.TYPE_UNKNOWN;
-		} else {
+		TagType type = TagType.get(clazz);
+		if(type == null) {
 			logger.warning("Unknown tag class (" + clazz.getName() + ") found.");
 			return NBTConstants.TYPE_UNKNOWN;
 		}
+
+		return type.getId();
 	}
 	
 	/**
 	 * Gets the class of a type of tag.
 	 * @param type The type.
 	 * @return The class.
-	 * @throws IllegalArgumentException if the tag type is invalid.
 	 */
 	public static Class<? extends Tag> getTypeClass(int type) {
-		switch(type) {
-		case NBTConstants.TYPE_END:
-			return EndTag.class;
-		case NBTConstants.TYPE_BYTE:
-			return ByteTag.class;
-		case NBTConstants.TYPE_SHORT:
-			return ShortTag.class;
-		case NBTConstants.TYPE_INT:
-			return IntTag.class;
-		case NBTConstants.TYPE_LONG:
-			return LongTag.class;
-		case NBTConstants.TYPE_FLOAT:
-			return FloatTag.class;
-		case NBTConstants.TYPE_DOUBLE:
-			return DoubleTag.class;
-		case NBTConstants.TYPE_BYTE_ARRAY:
-			return ByteArrayTag.class;
-		case NBTConstants.TYPE_STRING:
-			return StringTag.class;
-		case NBTConstants.TYPE_LIST:
-			return ListTag.class;
-		case NBTConstants.TYPE_COMPOUND:
-			return CompoundTag.class;
-		case NBTConstants.TYPE_INT_ARRAY:
-			return IntArrayTag.class;
-		case NBTConstants.TYPE_UNKNOWN:
-			return UnknownTag.class;
-		default:
+		TagType tagType = TagType.get(type);
+		if(tagType == null) {
 			logger.warning("Unknown tag type (" + type + ") found.");
 			return UnknownTag.class;
 		}
+
+		return tagType.getTagClass();
 	}
 	
 	/**
@@ -223,7 +107,7 @@ public final class NBTUtils {
 		Map<String, Tag> newMap = new HashMap<String, Tag>();
 		
 		for(Entry<String, Tag> entry : map.entrySet()) {
-			newMap.put(entry.getKey(), entry.getValue().clone());
+			newMap.put(entry.getKey(), TagCloner.copy(entry.getValue()));
 		}
 		
 		return newMap;
@@ -8,6 +8,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
 import ch.spacebase.opennbt.stream.NBTOutputStream;
 import ch.spacebase.opennbt.tag.*;
 import ch.spacebase.opennbt.tag.custom.*;
@@ -139,6 +141,10 @@ public class TagBuilder {
 	}
 	
 	public NBTOutputStream toOutputStream(String file) {
+		return this.toOutputStream(file, CompressionCodecs.GZIP);
+	}
+	
+	public NBTOutputStream toOutputStream(String file, CompressionCodec codec) {
 		File nbt = new File(file);
 		
 		try {
@@ -147,7 +153,7 @@ public class TagBuilder {
 				nbt.createNewFile();
 			}
 		
-			NBTOutputStream out = new NBTOutputStream(new FileOutputStream(nbt));
+			NBTOutputStream out = new NBTOutputStream(new FileOutputStream(nbt), codec);
 			for(Tag tag : this.tags) {
 				out.writeTag(tag);
 			}
@@ -0,0 +1,117 @@
+package ch.spacebase.opennbt.compression;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+
+/**
+ * A codec which works out how its input is compressed from the first bytes
+ * of the stream. GZIP and zlib streams are recognised by their headers, and
+ * anything else is read as uncompressed NBT.
+ */
+public class AutoDetectCompressionCodec implements CompressionCodec {
+
+	/**
+	 * The codec used when writing.
+	 */
+	private final CompressionCodec output;
+
+	/**
+	 * Creates a codec which writes GZIP compressed data.
+	 */
+	public AutoDetectCompressionCodec() {
+		this(CompressionCodecs.GZIP);
+	}
+
+	/**
+	 * Creates a codec.
+	 * @param output The codec to compress written data with.
+	 */
+	public AutoDetectCompressionCodec(CompressionCodec output) {
+		this.output = output;
+	}
+
+	@Override
+	public String getName() {
+		return "auto";
+	}
+
+	@Override
+	public InputStream decompress(InputStream in) throws IOException {
+		PushbackInputStream pushback = new PushbackInputStream(in, 2);
+		int first = pushback.read();
+		int second = first != -1 ? pushback.read() : -1;
+		if(second != -1) {
+			pushback.unread(second);
+		}
+
+		if(first != -1) {
+			pushback.unread(first);
+		}
+
+		return detect(first, second).decompress(pushback);
+	}
+
+	@Override
+	public OutputStream compress(OutputStream out) throws IOException {
+		return this.output.compress(out);
+	}
+
+	/**
+	 * Works out which codec a stream is compressed with from its first two
+	 * bytes.
+	 * @param first The first byte of the stream, or -1 if it is empty.
+	 * @param second The second byte of the stream, or -1 if there is none.
+	 * @return The codec to read the stream with.
+	 */
+	public static CompressionCodec detect(int first, int second) {
+		if(first == 0x1F && second == 0x8B) {
+			return CompressionCodecs.GZIP;
+		}
+
+		// Zlib header: deflate method, a window of at most 32K and a check
+		// value making the first two bytes a multiple of 31. 0x08 is skipped
+		// as it is also the TAG_String type byte of uncompressed data.
+		if(first != 0x08 && second != -1 && (first & 0x0F) == 8 && (first >> 4) <= 7 && ((first << 8) | second) % 31 == 0) {
+			return CompressionCodecs.ZLIB;
+		}
+
+		return CompressionCodecs.NONE;
+	}
+
+}
@@ -0,0 +1,147 @@
+package ch.spacebase.opennbt.compression;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The built in compression codecs, and a registry which allows codecs to be
+ * looked up by name.
+ */
+public final class CompressionCodecs {
+
+	/**
+	 * No compression.
+	 */
+	public static final CompressionCodec NONE = new NoCompressionCodec();
+
+	/**
+	 * GZIP compression at the default level. This is the format used by
+	 * NBT files on disk.
+	 */
+	public static final CompressionCodec GZIP = new GZipCompressionCodec();
+
+	/**
+	 * Zlib compression at the default level.
+	 */
+	public static final CompressionCodec ZLIB = new ZlibCompressionCodec();
+
+	/**
+	 * Raw deflate compression at the default level.
+	 */
+	public static final CompressionCodec DEFLATE = new ZlibCompressionCodec(-1, true);
+
+	/**
+	 * Detects GZIP, zlib or uncompressed data when reading, and writes GZIP.
+	 */
+	public static final CompressionCodec AUTO = new AutoDetectCompressionCodec();
+
+	/**
+	 * The registered codecs, by name.
+	 */
+	private static final Map<String, CompressionCodec> codecs = new ConcurrentHashMap<String, CompressionCodec>();
+
+	static {
+		register(NONE);
+		register(GZIP);
+		register(ZLIB);
+		register(DEFLATE);
+		register(AUTO);
+	}
+
+	/**
+	 * Registers a codec under its name, replacing any codec previously
+	 * registered under the same name.
+	 * @param codec The codec to register.
+	 */
+	public static void register(CompressionCodec codec) {
+		codecs.put(codec.getName().toLowerCase(), codec);
+	}
+
+	/**
+	 * Gets the codec registered under the given name.
+	 * @param name The name of the codec.
+	 * @return The codec, or null if no codec is registered under the name.
+	 */
+	public static CompressionCodec get(String name) {
+		return codecs.get(name.toLowerCase());
+	}
+
+	/**
+	 * Gets all of the registered codecs.
+	 * @return The registered codecs.
+	 */
+	public static Collection<CompressionCodec> getCodecs() {
+		return Collections.unmodifiableCollection(codecs.values());
+	}
+
+	/**
+	 * Gets a GZIP codec with the given compression level.
+	 * @param level The compression level, from 0 to 9, or -1 for the default.
+	 * @return The codec.
+	 */
+	public static CompressionCodec gzip(int level) {
+		return new GZipCompressionCodec(level);
+	}
+
+	/**
+	 * Gets a zlib codec with the given compression level.
+	 * @param level The compression level, from 0 to 9, or -1 for the default.
+	 * @return The codec.
+	 */
+	public static CompressionCodec zlib(int level) {
+		return new ZlibCompressionCodec(level, false);
+	}
+
+	/**
+	 * Gets a raw deflate codec with the given compression level.
+	 * @param level The compression level, from 0 to 9, or -1 for the default.
+	 * @return The codec.
+	 */
+	public static CompressionCodec deflate(int level) {
+		return new ZlibCompressionCodec(level, true);
+	}
+
+	/**
+	 * Default private constructor.
+	 */
+	private CompressionCodecs() {
+
+	}
+
+}
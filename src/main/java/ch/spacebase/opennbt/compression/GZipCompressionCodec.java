@@ -0,0 +1,110 @@
+package ch.spacebase.opennbt.compression;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A codec which stores NBT data in the GZIP format.
+ */
+public class GZipCompressionCodec implements CompressionCodec {
+
+	/**
+	 * The size of the buffers placed around the compressor.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The deflate level used when compressing.
+	 */
+	private final int level;
+
+	/**
+	 * Creates a codec using the default compression level.
+	 */
+	public GZipCompressionCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a codec using the given compression level.
+	 * @param level The compression level, from 0 to 9, or -1 for the default.
+	 * @throws IllegalArgumentException if the level is invalid.
+	 */
+	public GZipCompressionCodec(int level) {
+		if(level < -1 || level > 9) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+
+		this.level = level;
+	}
+
+	/**
+	 * Gets the compression level of this codec.
+	 * @return The compression level.
+	 */
+	public int getLevel() {
+		return this.level;
+	}
+
+	@Override
+	public String getName() {
+		return "gzip";
+	}
+
+	@Override
+	public InputStream decompress(InputStream in) throws IOException {
+		return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+	}
+
+	@Override
+	public OutputStream compress(OutputStream out) throws IOException {
+		GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE) {
+			{
+				this.def.setLevel(level);
+			}
+		};
+
+		return new BufferedOutputStream(gzip, BUFFER_SIZE);
+	}
+
+}
@@ -0,0 +1,145 @@
+package ch.spacebase.opennbt.compression;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A codec which stores NBT data as a zlib stream, or as a raw deflate
+ * stream without the zlib header and checksum.
+ */
+public class ZlibCompressionCodec implements CompressionCodec {
+
+	/**
+	 * The size of the buffers placed around the compressor.
+	 */
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * The deflate level used when compressing.
+	 */
+	private final int level;
+
+	/**
+	 * Whether the zlib header and checksum are omitted.
+	 */
+	private final boolean raw;
+
+	/**
+	 * Creates a zlib codec using the default compression level.
+	 */
+	public ZlibCompressionCodec() {
+		this(Deflater.DEFAULT_COMPRESSION, false);
+	}
+
+	/**
+	 * Creates a codec.
+	 * @param level The compression level, from 0 to 9, or -1 for the default.
+	 * @param raw Whether to write a raw deflate stream instead of a zlib stream.
+	 * @throws IllegalArgumentException if the level is invalid.
+	 */
+	public ZlibCompressionCodec(int level, boolean raw) {
+		if(level < -1 || level > 9) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+
+		this.level = level;
+		this.raw = raw;
+	}
+
+	/**
+	 * Gets the compression level of this codec.
+	 * @return The compression level.
+	 */
+	public int getLevel() {
+		return this.level;
+	}
+
+	/**
+	 * Gets whether this codec reads and writes raw deflate streams.
+	 * @return Whether this codec is raw.
+	 */
+	public boolean isRaw() {
+		return this.raw;
+	}
+
+	@Override
+	public String getName() {
+		return this.raw ? "deflate" : "zlib";
+	}
+
+	@Override
+	public InputStream decompress(InputStream in) throws IOException {
+		final Inflater inflater = new Inflater(this.raw);
+		InflaterInputStream inflate = new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					inflater.end();
+				}
+			}
+		};
+
+		return new BufferedInputStream(inflate, BUFFER_SIZE);
+	}
+
+	@Override
+	public OutputStream compress(OutputStream out) throws IOException {
+		final Deflater deflater = new Deflater(this.level, this.raw);
+		DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					deflater.end();
+				}
+			}
+		};
+
+		return new BufferedOutputStream(deflate, BUFFER_SIZE);
+	}
+
+}
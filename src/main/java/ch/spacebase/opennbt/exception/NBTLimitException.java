@@ -0,0 +1,70 @@
+package ch.spacebase.opennbt.exception;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+/**
+ * Thrown when data being read exceeds the
+ * {@link ch.spacebase.opennbt.stream.NBTReadLimits} of its reader.
+ */
+public class NBTLimitException extends InvalidNBTException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of bytes read when the limit was exceeded.
+	 */
+	private final long position;
+
+	/**
+	 * Creates a new <code>NBTLimitException</code>.
+	 * @param message The description of the exceeded limit, without a
+	 * trailing period.
+	 * @param position The number of bytes read when the limit was exceeded,
+	 * or -1 if it is not known.
+	 */
+	public NBTLimitException(String message, long position) {
+		super(position >= 0 ? message + " at byte " + position + "." : message + ".");
+		this.position = position;
+	}
+
+	/**
+	 * Gets the number of bytes read when the limit was exceeded.
+	 * @return The position, or -1 if it is not known.
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+
+}
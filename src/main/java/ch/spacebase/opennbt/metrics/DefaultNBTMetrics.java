@@ -0,0 +1,501 @@
+package ch.spacebase.opennbt.metrics;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import ch.spacebase.opennbt.tag.TagType;
+
+/**
+ * <p>An in-process <code>NBTMetrics</code> which keeps running totals,
+ * per-type tag counts and file latency histograms, and logs file loads and
+ * saves slower than a threshold. The totals can be read directly or over JMX
+ * once {@link #register()} has been called.</p>
+ * 
+ * <p>{@link #install()} sets up the usual case in one call.</p>
+ */
+public class DefaultNBTMetrics implements NBTMetrics, NBTMetricsMBean {
+
+	private static final Logger logger = Logger.getLogger("DefaultNBTMetrics");
+
+	/**
+	 * The name the metrics are registered under.
+	 */
+	public static final String OBJECT_NAME = "ch.spacebase.opennbt:type=NBTMetrics";
+
+	/**
+	 * The number of recent slow files kept.
+	 */
+	private static final int RECENT_SLOW_FILES = 16;
+
+	/**
+	 * The number of uncompressed bytes read.
+	 */
+	private final AtomicLong bytesDecoded = new AtomicLong();
+
+	/**
+	 * The number of compressed bytes read.
+	 */
+	private final AtomicLong compressedBytesDecoded = new AtomicLong();
+
+	/**
+	 * The number of uncompressed bytes written.
+	 */
+	private final AtomicLong bytesEncoded = new AtomicLong();
+
+	/**
+	 * The number of compressed bytes written.
+	 */
+	private final AtomicLong compressedBytesEncoded = new AtomicLong();
+
+	/**
+	 * The time spent reading tags in nanoseconds.
+	 */
+	private final AtomicLong decodeNanos = new AtomicLong();
+
+	/**
+	 * The time spent writing tags in nanoseconds.
+	 */
+	private final AtomicLong encodeNanos = new AtomicLong();
+
+	/**
+	 * The number of tags read of each type.
+	 */
+	private final AtomicLongArray tagsDecoded = new AtomicLongArray(256);
+
+	/**
+	 * The number of tags written of each type.
+	 */
+	private final AtomicLongArray tagsEncoded = new AtomicLongArray(256);
+
+	/**
+	 * The number of files loaded.
+	 */
+	private final AtomicLong filesLoaded = new AtomicLong();
+
+	/**
+	 * The number of files saved.
+	 */
+	private final AtomicLong filesSaved = new AtomicLong();
+
+	/**
+	 * The number of files which could not be loaded.
+	 */
+	private final AtomicLong loadFailures = new AtomicLong();
+
+	/**
+	 * The number of files which could not be saved.
+	 */
+	private final AtomicLong saveFailures = new AtomicLong();
+
+	/**
+	 * The file load times.
+	 */
+	private final LatencyHistogram loadLatency = new LatencyHistogram();
+
+	/**
+	 * The file save times.
+	 */
+	private final LatencyHistogram saveLatency = new LatencyHistogram();
+
+	/**
+	 * The number of slow file loads and saves.
+	 */
+	private final AtomicLong slowFiles = new AtomicLong();
+
+	/**
+	 * The most recent slow files, newest first.
+	 */
+	private final LinkedList<String> recentSlowFiles = new LinkedList<String>();
+
+	/**
+	 * The time in nanoseconds after which a file is reported as slow.
+	 */
+	private volatile long slowFileThreshold = TimeUnit.MILLISECONDS.toNanos(250);
+
+	/**
+	 * Creates new metrics, installs them and registers them with the platform
+	 * MBean server.
+	 * @return The metrics.
+	 * @throws JMException if the metrics could not be registered.
+	 */
+	public static DefaultNBTMetrics install() throws JMException {
+		DefaultNBTMetrics metrics = new DefaultNBTMetrics();
+		metrics.register();
+		Metrics.set(metrics);
+		return metrics;
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server under
+	 * {@link #OBJECT_NAME}, replacing any metrics registered before.
+	 * @throws JMException if the metrics could not be registered.
+	 */
+	public void register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+
+		server.registerMBean(new StandardMBean(this, NBTMetricsMBean.class), name);
+	}
+
+	/**
+	 * Removes the metrics registered under {@link #OBJECT_NAME} from the
+	 * platform MBean server.
+	 * @throws JMException if the metrics could not be removed.
+	 */
+	public void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if(server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	@Override
+	public void decoded(int[] tagCounts, long bytes, long compressedBytes, long nanos) {
+		add(this.tagsDecoded, tagCounts);
+		this.bytesDecoded.addAndGet(bytes);
+		this.compressedBytesDecoded.addAndGet(compressedBytes);
+		this.decodeNanos.addAndGet(nanos);
+	}
+
+	@Override
+	public void encoded(int[] tagCounts, long bytes, long compressedBytes, long nanos) {
+		add(this.tagsEncoded, tagCounts);
+		this.bytesEncoded.addAndGet(bytes);
+		this.compressedBytesEncoded.addAndGet(compressedBytes);
+		this.encodeNanos.addAndGet(nanos);
+	}
+
+	@Override
+	public void fileLoaded(File file, long bytes, long nanos) {
+		this.filesLoaded.incrementAndGet();
+		this.loadLatency.record(nanos);
+		checkSlow(file, "load", bytes, nanos);
+	}
+
+	@Override
+	public void fileSaved(File file, long bytes, long nanos) {
+		this.filesSaved.incrementAndGet();
+		this.saveLatency.record(nanos);
+		checkSlow(file, "save", bytes, nanos);
+	}
+
+	@Override
+	public void fileFailed(File file, boolean save, IOException e) {
+		(save ? this.saveFailures : this.loadFailures).incrementAndGet();
+	}
+
+	/**
+	 * Adds per-type tag counts to a set of totals.
+	 * @param totals The totals.
+	 * @param counts The counts.
+	 */
+	private static void add(AtomicLongArray totals, int[] counts) {
+		for(int type = 0; type < counts.length; type++) {
+			if(counts[type] != 0) {
+				totals.addAndGet(type, counts[type]);
+			}
+		}
+	}
+
+	/**
+	 * Reports a file load or save if it was slow.
+	 * @param file The file.
+	 * @param operation The operation.
+	 * @param bytes The size of the file.
+	 * @param nanos The time taken in nanoseconds.
+	 */
+	private void checkSlow(File file, String operation, long bytes, long nanos) {
+		if(nanos < this.slowFileThreshold) {
+			return;
+		}
+
+		String event = file.getPath() + " (" + operation + ", " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms, " + bytes + " bytes)";
+		this.slowFiles.incrementAndGet();
+		synchronized(this.recentSlowFiles) {
+			this.recentSlowFiles.addFirst(event);
+			if(this.recentSlowFiles.size() > RECENT_SLOW_FILES) {
+				this.recentSlowFiles.removeLast();
+			}
+		}
+
+		logger.warning("Slow NBT file " + event + ".");
+	}
+
+	/**
+	 * Formats per-type tag counts.
+	 * @param totals The counts.
+	 * @return The counts of each type which has been seen.
+	 */
+	private static String[] byType(AtomicLongArray totals) {
+		List<String> result = new ArrayList<String>();
+		for(int type = 0; type < totals.length(); type++) {
+			long count = totals.get(type);
+			if(count != 0) {
+				TagType tagType = TagType.get(type);
+				result.add((tagType != null ? tagType.getName() : "Type " + type) + "=" + count);
+			}
+		}
+
+		return result.toArray(new String[result.size()]);
+	}
+
+	/**
+	 * Sums per-type tag counts.
+	 * @param totals The counts.
+	 * @return The sum.
+	 */
+	private static long sum(AtomicLongArray totals) {
+		long sum = 0;
+		for(int type = 0; type < totals.length(); type++) {
+			sum += totals.get(type);
+		}
+
+		return sum;
+	}
+
+	@Override
+	public long getBytesDecoded() {
+		return this.bytesDecoded.get();
+	}
+
+	@Override
+	public long getCompressedBytesDecoded() {
+		return this.compressedBytesDecoded.get();
+	}
+
+	@Override
+	public long getBytesEncoded() {
+		return this.bytesEncoded.get();
+	}
+
+	@Override
+	public long getCompressedBytesEncoded() {
+		return this.compressedBytesEncoded.get();
+	}
+
+	@Override
+	public long getTagsDecoded() {
+		return sum(this.tagsDecoded);
+	}
+
+	@Override
+	public long getTagsEncoded() {
+		return sum(this.tagsEncoded);
+	}
+
+	@Override
+	public String[] getTagsDecodedByType() {
+		return byType(this.tagsDecoded);
+	}
+
+	@Override
+	public String[] getTagsEncodedByType() {
+		return byType(this.tagsEncoded);
+	}
+
+	/**
+	 * Gets the number of tags read of a type.
+	 * @param type The type id.
+	 * @return The number of tags.
+	 */
+	public long getTagsDecoded(int type) {
+		return this.tagsDecoded.get(type);
+	}
+
+	/**
+	 * Gets the number of tags written of a type.
+	 * @param type The type id.
+	 * @return The number of tags.
+	 */
+	public long getTagsEncoded(int type) {
+		return this.tagsEncoded.get(type);
+	}
+
+	@Override
+	public long getDecodeTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.decodeNanos.get());
+	}
+
+	@Override
+	public long getEncodeTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.encodeNanos.get());
+	}
+
+	@Override
+	public long getFilesLoaded() {
+		return this.filesLoaded.get();
+	}
+
+	@Override
+	public long getFilesSaved() {
+		return this.filesSaved.get();
+	}
+
+	@Override
+	public long getLoadFailures() {
+		return this.loadFailures.get();
+	}
+
+	@Override
+	public long getSaveFailures() {
+		return this.saveFailures.get();
+	}
+
+	@Override
+	public String[] getLoadLatencyHistogram() {
+		return this.loadLatency.toStrings();
+	}
+
+	@Override
+	public String[] getSaveLatencyHistogram() {
+		return this.saveLatency.toStrings();
+	}
+
+	@Override
+	public long getSlowFiles() {
+		return this.slowFiles.get();
+	}
+
+	@Override
+	public String[] getRecentSlowFiles() {
+		synchronized(this.recentSlowFiles) {
+			return this.recentSlowFiles.toArray(new String[this.recentSlowFiles.size()]);
+		}
+	}
+
+	@Override
+	public long getSlowFileThresholdMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(this.slowFileThreshold);
+	}
+
+	@Override
+	public void setSlowFileThresholdMillis(long millis) {
+		this.slowFileThreshold = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	@Override
+	public void reset() {
+		AtomicLong[] counters = new AtomicLong[] { this.bytesDecoded, this.compressedBytesDecoded, this.bytesEncoded, this.compressedBytesEncoded, this.decodeNanos, this.encodeNanos, this.filesLoaded, this.filesSaved, this.loadFailures, this.saveFailures, this.slowFiles };
+		for(AtomicLong counter : counters) {
+			counter.set(0);
+		}
+
+		for(int type = 0; type < 256; type++) {
+			this.tagsDecoded.set(type, 0);
+			this.tagsEncoded.set(type, 0);
+		}
+
+		this.loadLatency.reset();
+		this.saveLatency.reset();
+		synchronized(this.recentSlowFiles) {
+			this.recentSlowFiles.clear();
+		}
+	}
+
+	/**
+	 * A histogram of latencies with fixed millisecond buckets.
+	 */
+	private static class LatencyHistogram {
+
+		/**
+		 * The exclusive upper bound of each bucket but the last, in
+		 * milliseconds.
+		 */
+		private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+		/**
+		 * The count of each bucket.
+		 */
+		private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+
+		/**
+		 * Records a latency.
+		 * @param nanos The latency in nanoseconds.
+		 */
+		public void record(long nanos) {
+			long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+			int bucket = 0;
+			while(bucket < BOUNDS.length && millis >= BOUNDS[bucket]) {
+				bucket++;
+			}
+
+			this.counts.incrementAndGet(bucket);
+		}
+
+		/**
+		 * Clears the histogram.
+		 */
+		public void reset() {
+			for(int bucket = 0; bucket < this.counts.length(); bucket++) {
+				this.counts.set(bucket, 0);
+			}
+		}
+
+		/**
+		 * Formats the histogram.
+		 * @return A <code>bucket=count</code> entry for each bucket.
+		 */
+		public String[] toStrings() {
+			String[] result = new String[this.counts.length()];
+			for(int bucket = 0; bucket < BOUNDS.length; bucket++) {
+				result[bucket] = "<" + BOUNDS[bucket] + "ms=" + this.counts.get(bucket);
+			}
+
+			result[BOUNDS.length] = ">=" + BOUNDS[BOUNDS.length - 1] + "ms=" + this.counts.get(BOUNDS.length);
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+package ch.spacebase.opennbt.metrics;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <p>Receives measurements from the NBT streams and from
+ * <code>NBTIOUtils</code>. An implementation is installed with
+ * {@link Metrics#set(NBTMetrics)}.</p>
+ * 
+ * <p>Methods are called on the threads doing the I/O, so implementations
+ * must be thread safe and should return quickly.</p>
+ */
+public interface NBTMetrics {
+
+	/**
+	 * Called after a tag has been read by an <code>NBTInputStream</code>.
+	 * Compressed byte counts are approximate, as decompressors read ahead.
+	 * @param tagCounts The number of tags of each type read, indexed by type
+	 * id. The array is reused and must not be kept.
+	 * @param bytes The number of uncompressed bytes read.
+	 * @param compressedBytes The number of compressed bytes read.
+	 * @param nanos The time taken in nanoseconds.
+	 */
+	public void decoded(int[] tagCounts, long bytes, long compressedBytes, long nanos);
+
+	/**
+	 * Called after a tag has been written by an <code>NBTOutputStream</code>.
+	 * Compressed byte counts are approximate, as compressors buffer their
+	 * output.
+	 * @param tagCounts The number of tags of each type written, indexed by
+	 * type id. The array is reused and must not be kept.
+	 * @param bytes The number of uncompressed bytes written.
+	 * @param compressedBytes The number of compressed bytes written.
+	 * @param nanos The time taken in nanoseconds.
+	 */
+	public void encoded(int[] tagCounts, long bytes, long compressedBytes, long nanos);
+
+	/**
+	 * Called after a file has been loaded.
+	 * @param file The file.
+	 * @param bytes The size of the file.
+	 * @param nanos The time taken in nanoseconds.
+	 */
+	public void fileLoaded(File file, long bytes, long nanos);
+
+	/**
+	 * Called after a file has been saved.
+	 * @param file The file.
+	 * @param bytes The size of the file.
+	 * @param nanos The time taken in nanoseconds.
+	 */
+	public void fileSaved(File file, long bytes, long nanos);
+
+	/**
+	 * Called when a file could not be loaded or saved.
+	 * @param file The file.
+	 * @param save Whether the file was being saved.
+	 * @param e The error.
+	 */
+	public void fileFailed(File file, boolean save, IOException e);
+
+}
@@ -0,0 +1,173 @@
+package ch.spacebase.opennbt.metrics;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+/**
+ * The management interface of <code>DefaultNBTMetrics</code>. Times are in
+ * milliseconds.
+ */
+public interface NBTMetricsMBean {
+
+	/**
+	 * Gets the number of uncompressed bytes read.
+	 * @return The number of bytes.
+	 */
+	public long getBytesDecoded();
+
+	/**
+	 * Gets the number of compressed bytes read.
+	 * @return The number of bytes.
+	 */
+	public long getCompressedBytesDecoded();
+
+	/**
+	 * Gets the number of uncompressed bytes written.
+	 * @return The number of bytes.
+	 */
+	public long getBytesEncoded();
+
+	/**
+	 * Gets the number of compressed bytes written.
+	 * @return The number of bytes.
+	 */
+	public long getCompressedBytesEncoded();
+
+	/**
+	 * Gets the number of tags read.
+	 * @return The number of tags.
+	 */
+	public long getTagsDecoded();
+
+	/**
+	 * Gets the number of tags written.
+	 * @return The number of tags.
+	 */
+	public long getTagsEncoded();
+
+	/**
+	 * Gets the number of tags read of each type which has been seen, as
+	 * <code>name=count</code> entries.
+	 * @return The counts.
+	 */
+	public String[] getTagsDecodedByType();
+
+	/**
+	 * Gets the number of tags written of each type which has been seen, as
+	 * <code>name=count</code> entries.
+	 * @return The counts.
+	 */
+	public String[] getTagsEncodedByType();
+
+	/**
+	 * Gets the total time spent reading tags.
+	 * @return The time.
+	 */
+	public long getDecodeTimeMillis();
+
+	/**
+	 * Gets the total time spent writing tags.
+	 * @return The time.
+	 */
+	public long getEncodeTimeMillis();
+
+	/**
+	 * Gets the number of files loaded.
+	 * @return The number of files.
+	 */
+	public long getFilesLoaded();
+
+	/**
+	 * Gets the number of files saved.
+	 * @return The number of files.
+	 */
+	public long getFilesSaved();
+
+	/**
+	 * Gets the number of files which could not be loaded.
+	 * @return The number of files.
+	 */
+	public long getLoadFailures();
+
+	/**
+	 * Gets the number of files which could not be saved.
+	 * @return The number of files.
+	 */
+	public long getSaveFailures();
+
+	/**
+	 * Gets the histogram of file load times, as <code>bucket=count</code>
+	 * entries.
+	 * @return The histogram.
+	 */
+	public String[] getLoadLatencyHistogram();
+
+	/**
+	 * Gets the histogram of file save times, as <code>bucket=count</code>
+	 * entries.
+	 * @return The histogram.
+	 */
+	public String[] getSaveLatencyHistogram();
+
+	/**
+	 * Gets the number of file loads and saves which took longer than the
+	 * slow file threshold.
+	 * @return The number of slow files.
+	 */
+	public long getSlowFiles();
+
+	/**
+	 * Gets the most recent slow file loads and saves, newest first.
+	 * @return The slow files.
+	 */
+	public String[] getRecentSlowFiles();
+
+	/**
+	 * Gets the time after which a file load or save is reported as slow.
+	 * @return The threshold.
+	 */
+	public long getSlowFileThresholdMillis();
+
+	/**
+	 * Sets the time after which a file load or save is reported as slow.
+	 * @param millis The threshold.
+	 */
+	public void setSlowFileThresholdMillis(long millis);
+
+	/**
+	 * Resets every counter.
+	 */
+	public void reset();
+
+}
@@ -0,0 +1,672 @@
+package ch.spacebase.opennbt.object;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.utils.IntObjectMap;
+
+/**
+ * <p>
+ * The registry of codecs used for the values of <code>TAG_Object</code> and
+ * <code>TAG_Object_Array</code> tags. Each value is written as the unsigned
+ * short id of its codec followed by the bytes the codec writes, with id 0
+ * standing for <code>null</code>. Codecs are found by the exact class of the
+ * value. Codecs for strings, boxed primitives, byte arrays and UUIDs are
+ * registered under ids 1 to 11. The elements of a
+ * <code>TAG_Object_Array</code> follow the id {@link #ENCODED_ARRAY_ID}, or
+ * form a single Java serialization stream.
+ * </p>
+ * 
+ * <p>
+ * Older files hold Java serialization streams, which start with the bytes
+ * <code>0xACED</code>. That id is therefore reserved. Such data is only read,
+ * and values without a codec are only written that way, once Java
+ * serialization has been enabled with
+ * {@link #setJavaSerializationEnabled(boolean)}. Even then, only classes
+ * which have been allowed with {@link #allowJavaSerialization(String)} are
+ * loaded.
+ * </p>
+ */
+public final class ObjectCodecs {
+
+	/**
+	 * The id written for <code>null</code> values.
+	 */
+	public static final int NULL_ID = 0;
+
+	/**
+	 * The id reserved for Java serialization streams, which begin with it.
+	 */
+	public static final int JAVA_SERIALIZATION_ID = 0xACED;
+
+	/**
+	 * The id written before the elements of a <code>TAG_Object_Array</code>
+	 * whose elements are written with their codecs.
+	 */
+	public static final int ENCODED_ARRAY_ID = 0xC0DE;
+
+	/**
+	 * Codecs by id. Replaced as a whole when a codec is registered.
+	 */
+	private static volatile IntObjectMap<ObjectCodec<?>> byId = new IntObjectMap<ObjectCodec<?>>();
+
+	/**
+	 * Ids by the class of their values.
+	 */
+	private static final ConcurrentMap<Class<?>, Integer> idsByClass = new ConcurrentHashMap<Class<?>, Integer>();
+
+	/**
+	 * Class names and package prefixes allowed in Java serialization streams.
+	 */
+	private static final Set<String> allowed = new CopyOnWriteArraySet<String>();
+
+	/**
+	 * Whether Java serialization may be used.
+	 */
+	private static volatile boolean javaSerialization = false;
+
+	static {
+		register(1, new ObjectCodec<String>() {
+			public Class<String> getType() {
+				return String.class;
+			}
+
+			public void write(DataOutput out, String value) throws IOException {
+				byte[] bytes = value.getBytes(NBTConstants.CHARSET);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+
+			public String read(DataInput in) throws IOException {
+				return new String(readBytes(in, in.readInt()), NBTConstants.CHARSET);
+			}
+		});
+
+		register(2, new ObjectCodec<Boolean>() {
+			public Class<Boolean> getType() {
+				return Boolean.class;
+			}
+
+			public void write(DataOutput out, Boolean value) throws IOException {
+				out.writeBoolean(value);
+			}
+
+			public Boolean read(DataInput in) throws IOException {
+				return in.readBoolean();
+			}
+		});
+
+		register(3, new ObjectCodec<Byte>() {
+			public Class<Byte> getType() {
+				return Byte.class;
+			}
+
+			public void write(DataOutput out, Byte value) throws IOException {
+				out.writeByte(value);
+			}
+
+			public Byte read(DataInput in) throws IOException {
+				return in.readByte();
+			}
+		});
+
+		register(4, new ObjectCodec<Short>() {
+			public Class<Short> getType() {
+				return Short.class;
+			}
+
+			public void write(DataOutput out, Short value) throws IOException {
+				out.writeShort(value);
+			}
+
+			public Short read(DataInput in) throws IOException {
+				return in.readShort();
+			}
+		});
+
+		register(5, new ObjectCodec<Integer>() {
+			public Class<Integer> getType() {
+				return Integer.class;
+			}
+
+			public void write(DataOutput out, Integer value) throws IOException {
+				out.writeInt(value);
+			}
+
+			public Integer read(DataInput in) throws IOException {
+				return in.readInt();
+			}
+		});
+
+		register(6, new ObjectCodec<Long>() {
+			public Class<Long> getType() {
+				return Long.class;
+			}
+
+			public void write(DataOutput out, Long value) throws IOException {
+				out.writeLong(value);
+			}
+
+			public Long read(DataInput in) throws IOException {
+				return in.readLong();
+			}
+		});
+
+		register(7, new ObjectCodec<Float>() {
+			public Class<Float> getType() {
+				return Float.class;
+			}
+
+			public void write(DataOutput out, Float value) throws IOException {
+				out.writeFloat(value);
+			}
+
+			public Float read(DataInput in) throws IOException {
+				return in.readFloat();
+			}
+		});
+
+		register(8, new ObjectCodec<Double>() {
+			public Class<Double> getType() {
+				return Double.class;
+			}
+
+			public void write(DataOutput out, Double value) throws IOException {
+				out.writeDouble(value);
+			}
+
+			public Double read(DataInput in) throws IOException {
+				return in.readDouble();
+			}
+		});
+
+		register(9, new ObjectCodec<Character>() {
+			public Class<Character> getType() {
+				return Character.class;
+			}
+
+			public void write(DataOutput out, Character value) throws IOException {
+				out.writeChar(value);
+			}
+
+			public Character read(DataInput in) throws IOException {
+				return in.readChar();
+			}
+		});
+
+		register(10, new ObjectCodec<byte[]>() {
+			public Class<byte[]> getType() {
+				return byte[].class;
+			}
+
+			public void write(DataOutput out, byte[] value) throws IOException {
+				out.writeInt(value.length);
+				out.write(value);
+			}
+
+			public byte[] read(DataInput in) throws IOException {
+				return readBytes(in, in.readInt());
+			}
+		});
+
+		register(11, new ObjectCodec<UUID>() {
+			public Class<UUID> getType() {
+				return UUID.class;
+			}
+
+			public void write(DataOutput out, UUID value) throws IOException {
+				out.writeLong(value.getMostSignificantBits());
+				out.writeLong(value.getLeastSignificantBits());
+			}
+
+			public UUID read(DataInput in) throws IOException {
+				return new UUID(in.readLong(), in.readLong());
+			}
+		});
+
+		allowed.add("java.lang.Boolean");
+		allowed.add("java.lang.Byte");
+		allowed.add("java.lang.Character");
+		allowed.add("java.lang.Double");
+		allowed.add("java.lang.Float");
+		allowed.add("java.lang.Integer");
+		allowed.add("java.lang.Long");
+		allowed.add("java.lang.Number");
+		allowed.add("java.lang.Short");
+		allowed.add("java.lang.String");
+	}
+
+	/**
+	 * Default private constructor.
+	 */
+	private ObjectCodecs() {
+	}
+
+	/**
+	 * Registers a codec.
+	 * @param id The id of the codec, from 1 to 65535 but not 0xACED.
+	 * @param codec The codec.
+	 * @throws IllegalArgumentException if the id is invalid or taken, or a codec
+	 * is already registered for the class.
+	 */
+	public static synchronized void register(int id, ObjectCodec<?> codec) {
+		if(id <= NULL_ID || id > 0xFFFF || id == JAVA_SERIALIZATION_ID) {
+			throw new IllegalArgumentException("Invalid codec id: " + id);
+		}
+
+		if(byId.containsKey(id)) {
+			throw new IllegalArgumentException("Codec id " + id + " is already registered.");
+		}
+
+		if(idsByClass.containsKey(codec.getType())) {
+			throw new IllegalArgumentException("A codec for " + codec.getType().getName() + " is already registered.");
+		}
+
+		IntObjectMap<ObjectCodec<?>> codecs = new IntObjectMap<ObjectCodec<?>>(byId.size() + 1);
+		for(int key : byId.keys()) {
+			codecs.put(key, byId.get(key));
+		}
+
+		codecs.put(id, codec);
+		byId = codecs;
+		idsByClass.put(codec.getType(), id);
+	}
+
+	/**
+	 * Gets the codec registered under an id.
+	 * @param id The id.
+	 * @return The codec, or <code>null</code> if none is registered.
+	 */
+	public static ObjectCodec<?> getCodec(int id) {
+		return byId.get(id);
+	}
+
+	/**
+	 * Gets the codec for a class.
+	 * @param clazz The class.
+	 * @return The codec, or <code>null</code> if none is registered.
+	 */
+	public static ObjectCodec<?> getCodec(Class<?> clazz) {
+		Integer id = idsByClass.get(clazz);
+		return id != null ? byId.get(id) : null;
+	}
+
+	/**
+	 * Enables or disables Java serialization of values which have no codec.
+	 * It is disabled by default.
+	 * @param enabled Whether Java serialization may be used.
+	 */
+	public static void setJavaSerializationEnabled(boolean enabled) {
+		javaSerialization = enabled;
+	}
+
+	/**
+	 * Checks whether Java serialization may be used.
+	 * @return Whether Java serialization may be used.
+	 */
+	public static boolean isJavaSerializationEnabled() {
+		return javaSerialization;
+	}
+
+	/**
+	 * Allows classes to be read and written with Java serialization.
+	 * @param name A class name, or a package name ending in a dot to allow
+	 * every class in the package and its subpackages.
+	 */
+	public static void allowJavaSerialization(String name) {
+		allowed.add(name);
+	}
+
+	/**
+	 * Checks whether a class may be read and written with Java serialization.
+	 * Arrays are allowed if their element type is.
+	 * @param name The binary name of the class.
+	 * @return Whether the class is allowed.
+	 */
+	public static boolean isJavaSerializationAllowed(String name) {
+		if(name.startsWith("[")) {
+			int dims = 0;
+			while(dims < name.length() && name.charAt(dims) == '[') {
+				dims++;
+			}
+
+			if(dims == name.length()) {
+				return false;
+			} else if(name.charAt(dims) != 'L') {
+				// Arrays of primitives.
+				return name.length() == dims + 1;
+			} else if(name.length() < dims + 3 || !name.endsWith(";")) {
+				return false;
+			}
+
+			name = name.substring(dims + 1, name.length() - 1);
+		}
+
+		if(allowed.contains(name)) {
+			return true;
+		}
+
+		for(String entry : allowed) {
+			if(entry.endsWith(".") && name.startsWith(entry)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Writes the value of a <code>TAG_Object</code>.
+	 * @param out The stream to write to.
+	 * @param value The value.
+	 * @throws IOException if an I/O error occurs or the value cannot be written.
+	 */
+	public static void writeObject(OutputStream out, Object value) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		if(!writeEncoded(data, value)) {
+			writeSerialized(out, new Object[] { value });
+		}
+	}
+
+	/**
+	 * Reads the value of a <code>TAG_Object</code>.
+	 * @param in The stream to read from.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs or the value cannot be read.
+	 */
+	public static Object readObject(InputStream in) throws IOException {
+		DataInputStream data = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+		int id = data.readUnsignedShort();
+		if(id == JAVA_SERIALIZATION_ID) {
+			return readSerialized(data, 1)[0];
+		}
+
+		return readEncoded(data, id);
+	}
+
+	/**
+	 * Writes the elements of a <code>TAG_Object_Array</code>, without its
+	 * length. The elements are preceded by {@link #ENCODED_ARRAY_ID}, even if
+	 * there are none. If any element has no codec, the whole array is written
+	 * with Java serialization instead.
+	 * @param out The stream to write to.
+	 * @param values The elements.
+	 * @throws IOException if an I/O error occurs or an element cannot be written.
+	 */
+	public static void writeObjectArray(OutputStream out, Object[] values) throws IOException {
+		for(Object value : values) {
+			if(value != null && getCodec(value.getClass()) == null) {
+				writeSerialized(out, values);
+				return;
+			}
+		}
+
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeShort(ENCODED_ARRAY_ID);
+		for(Object value : values) {
+			writeEncoded(data, value);
+		}
+	}
+
+	/**
+	 * Reads the elements of a <code>TAG_Object_Array</code>.
+	 * @param in The stream to read from.
+	 * @param length The number of elements.
+	 * @return The elements.
+	 * @throws IOException if an I/O error occurs or an element cannot be read.
+	 */
+	public static Object[] readObjectArray(InputStream in, int length) throws IOException {
+		if(length < 0) {
+			throw new IOException("Negative array length: " + length);
+		}
+
+		DataInputStream data = in instanceof DataInputStream ? (DataInputStream) in : new DataInputStream(in);
+		int id = data.readUnsignedShort();
+		if(id == JAVA_SERIALIZATION_ID) {
+			if(length == 0) {
+				// Older versions wrote an empty serialization stream for empty
+				// arrays, which holds nothing but its version after the magic.
+				int version = data.readUnsignedShort();
+				if(version != 5) {
+					throw new IOException("Unsupported Java serialization version: " + version);
+				}
+
+				return new Object[0];
+			}
+
+			return readSerialized(data, length);
+		} else if(id != ENCODED_ARRAY_ID) {
+			throw new IOException("Unknown TAG_Object_Array encoding: " + id);
+		}
+
+		Object[] values = new Object[length];
+		for(int i = 0; i < length; i++) {
+			values[i] = readEncoded(data, data.readUnsignedShort());
+		}
+
+		return values;
+	}
+
+	/**
+	 * Reads a number of bytes. Large arrays grow as the data arrives, so a
+	 * corrupt length cannot allocate more memory than the data backs.
+	 * @param in The input to read from.
+	 * @param length The number of bytes.
+	 * @return The bytes.
+	 * @throws IOException if an I/O error occurs or the length is negative.
+	 */
+	private static byte[] readBytes(DataInput in, int length) throws IOException {
+		if(length < 0) {
+			throw new IOException("Negative length: " + length);
+		}
+
+		byte[] bytes = new byte[Math.min(length, 8192)];
+		int read = 0;
+		while(true) {
+			in.readFully(bytes, read, bytes.length - read);
+			read = bytes.length;
+			if(read == length) {
+				return bytes;
+			}
+
+			byte[] grown = new byte[(int) Math.min(length, read * 2L)];
+			System.arraycopy(bytes, 0, grown, 0, read);
+			bytes = grown;
+		}
+	}
+
+	/**
+	 * Writes a value with its codec.
+	 * @param out The output to write to.
+	 * @param value The value.
+	 * @return Whether the value had a codec and was written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@SuppressWarnings("unchecked")
+	private static boolean writeEncoded(DataOutputStream out, Object value) throws IOException {
+		if(value == null) {
+			out.writeShort(NULL_ID);
+			return true;
+		}
+
+		Integer id = idsByClass.get(value.getClass());
+		if(id == null) {
+			return false;
+		}
+
+		out.writeShort(id);
+		((ObjectCodec<Object>) byId.get(id)).write(out, value);
+		return true;
+	}
+
+	/**
+	 * Reads a value with the codec of the given id.
+	 * @param in The input to read from.
+	 * @param id The id of the codec.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs or no codec has the id.
+	 */
+	private static Object readEncoded(DataInputStream in, int id) throws IOException {
+		if(id == NULL_ID) {
+			return null;
+		}
+
+		ObjectCodec<?> codec = byId.get(id);
+		if(codec == null) {
+			throw new IOException("No object codec registered with id " + id + ".");
+		}
+
+		return codec.read(in);
+	}
+
+	/**
+	 * Writes values as one Java serialization stream.
+	 * @param out The stream to write to.
+	 * @param values The values.
+	 * @throws IOException if Java serialization is disabled, a class is not
+	 * allowed or an I/O error occurs.
+	 */
+	private static void writeSerialized(OutputStream out, Object[] values) throws IOException {
+		if(!javaSerialization) {
+			throw new IOException("No object codec for " + firstUnencoded(values) + " and Java serialization is disabled.");
+		}
+
+		for(Object value : values) {
+			if(value != null && !isJavaSerializationAllowed(value.getClass().getName())) {
+				throw new InvalidClassException(value.getClass().getName(), "Class is not allowed for Java serialization.");
+			}
+		}
+
+		ObjectOutputStream str = new ObjectOutputStream(out);
+		for(Object value : values) {
+			str.writeObject(value);
+		}
+
+		str.flush();
+	}
+
+	/**
+	 * Reads values from a Java serialization stream whose first two bytes have
+	 * already been read.
+	 * @param in The stream to read from.
+	 * @param count The number of values.
+	 * @return The values.
+	 * @throws IOException if Java serialization is disabled, a class is not
+	 * allowed or cannot be found, or an I/O error occurs.
+	 */
+	private static Object[] readSerialized(InputStream in, int count) throws IOException {
+		if(!javaSerialization) {
+			throw new IOException("Found a Java serialized object but Java serialization is disabled.");
+		}
+
+		byte[] magic = new byte[] { (byte) (JAVA_SERIALIZATION_ID >>> 8), (byte) JAVA_SERIALIZATION_ID };
+		ObjectInputStream str = new AllowlistObjectInputStream(new SequenceInputStream(new ByteArrayInputStream(magic), in));
+		Object[] values = new Object[count];
+		for(int i = 0; i < count; i++) {
+			try {
+				values[i] = str.readObject();
+			} catch(ClassNotFoundException e) {
+				throw new IOException("Class not found while reading ObjectTag: " + e.getMessage());
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Gets the name of the class of the first value without a codec.
+	 * @param values The values.
+	 * @return The class name.
+	 */
+	private static String firstUnencoded(Object[] values) {
+		for(Object value : values) {
+			if(value != null && getCodec(value.getClass()) == null) {
+				return value.getClass().getName();
+			}
+		}
+
+		return "null";
+	}
+
+	/**
+	 * An object input stream which only loads allowed classes.
+	 */
+	private static class AllowlistObjectInputStream extends ObjectInputStream {
+
+		/**
+		 * Creates a new <code>AllowlistObjectInputStream</code>.
+		 * @param in The stream to read from.
+		 * @throws IOException if an I/O error occurs.
+		 */
+		public AllowlistObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			if(!isJavaSerializationAllowed(desc.getName())) {
+				throw new InvalidClassException(desc.getName(), "Class is not allowed for Java serialization.");
+			}
+
+			return super.resolveClass(desc);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("Proxy classes are not allowed for Java serialization.");
+		}
+
+	}
+
+}
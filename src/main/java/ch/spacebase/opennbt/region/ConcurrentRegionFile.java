@@ -0,0 +1,442 @@
+package ch.spacebase.opennbt.region;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * <p>
+ * A region file in the Anvil (<code>.mca</code>) format which may be read and
+ * written by many threads at once. The file layout is the same as
+ * {@link RegionFile}.
+ * </p>
+ * 
+ * <p>
+ * Chunks are guarded by a fixed set of read/write locks picked by chunk
+ * index, so threads working on different chunks rarely wait for each other
+ * and any number of threads may read the same chunk. Data is read and written
+ * with positional <code>FileChannel</code> calls, which do not share a file
+ * pointer. Compression happens before any lock is taken, and only the choice
+ * of sectors for a chunk is serialised across the whole region.
+ * </p>
+ * 
+ * <p>
+ * Interrupting a thread blocked in a read or write closes the channel, after
+ * which every call on this region fails.
+ * </p>
+ */
+public class ConcurrentRegionFile implements Closeable {
+
+	/**
+	 * The default number of lock stripes.
+	 */
+	public static final int DEFAULT_STRIPES = 64;
+
+	/**
+	 * The file.
+	 */
+	private final File file;
+
+	/**
+	 * The open file.
+	 */
+	private final RandomAccessFile raf;
+
+	/**
+	 * The channel of the open file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The location of each chunk.
+	 */
+	private final AtomicIntegerArray locations = new AtomicIntegerArray(RegionFile.CHUNK_COUNT);
+
+	/**
+	 * The last modification time of each chunk, in seconds.
+	 */
+	private final AtomicIntegerArray timestamps = new AtomicIntegerArray(RegionFile.CHUNK_COUNT);
+
+	/**
+	 * The locks guarding the chunks, picked by chunk index.
+	 */
+	private final ReadWriteLock[] locks;
+
+	/**
+	 * The sectors in use, including the header. Guarded by itself.
+	 */
+	private final BitSet used = new BitSet();
+
+	/**
+	 * The number of sectors in the file. Guarded by <code>used</code>.
+	 */
+	private int sectorCount;
+
+	/**
+	 * Opens a region file with the default number of lock stripes, creating
+	 * it if it does not exist.
+	 * @param file The file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public ConcurrentRegionFile(File file) throws IOException {
+		this(file, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Opens a region file, creating it if it does not exist.
+	 * @param file The file.
+	 * @param stripes The number of lock stripes, rounded up to a power of two.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public ConcurrentRegionFile(File file, int stripes) throws IOException {
+		if(stripes <= 0 || stripes > RegionFile.CHUNK_COUNT) {
+			throw new IllegalArgumentException("Invalid number of stripes: " + stripes);
+		}
+
+		int size = Integer.highestOneBit(stripes);
+		if(size < stripes) {
+			size <<= 1;
+		}
+
+		this.locks = new ReadWriteLock[size];
+		for(int i = 0; i < size; i++) {
+			this.locks[i] = new ReentrantReadWriteLock();
+		}
+
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		try {
+			int[] locations = new int[RegionFile.CHUNK_COUNT];
+			int[] timestamps = new int[RegionFile.CHUNK_COUNT];
+			this.sectorCount = RegionFile.readHeader(this.raf, file, locations, timestamps, this.used);
+			for(int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+				this.locations.set(index, locations[index]);
+				this.timestamps.set(index, timestamps[index]);
+			}
+		} catch(IOException e) {
+			this.raf.close();
+			throw e;
+		}
+
+		this.channel = this.raf.getChannel();
+	}
+
+	/**
+	 * Gets the file of this region.
+	 * @return The file.
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Gets the number of sectors in the file.
+	 * @return The number of sectors.
+	 */
+	public int getSectorCount() {
+		synchronized(this.used) {
+			return this.sectorCount;
+		}
+	}
+
+	/**
+	 * Gets the number of sectors holding chunks or the header.
+	 * @return The number of sectors in use.
+	 */
+	public int getUsedSectorCount() {
+		synchronized(this.used) {
+			return this.used.cardinality();
+		}
+	}
+
+	/**
+	 * Checks whether a chunk is present.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return Whether the chunk is present.
+	 */
+	public boolean hasChunk(int x, int z) {
+		return this.locations.get(RegionFile.getIndex(x, z)) != 0;
+	}
+
+	/**
+	 * Gets the last time a chunk was written.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return The time in seconds since the epoch, or 0 if unknown.
+	 */
+	public int getTimestamp(int x, int z) {
+		return this.timestamps.get(RegionFile.getIndex(x, z));
+	}
+
+	/**
+	 * Reads a chunk.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return The root tag of the chunk, or <code>null</code> if it is not present.
+	 * @throws IOException if an I/O error occurs or the chunk is malformed.
+	 */
+	public Tag readChunk(int x, int z) throws IOException {
+		int index = RegionFile.getIndex(x, z);
+		int compression;
+		byte[] data;
+		ReadWriteLock lock = lock(index);
+		lock.readLock().lock();
+		try {
+			int location = this.locations.get(index);
+			if(location == 0) {
+				return null;
+			}
+
+			long position = (long) (location >>> 8) * RegionFile.SECTOR_BYTES;
+			ByteBuffer header = ByteBuffer.allocate(RegionFile.CHUNK_HEADER_BYTES);
+			readFully(header, position);
+			int length = header.getInt(0);
+			if(length <= 0 || length > (location & 0xFF) * RegionFile.SECTOR_BYTES - 4) {
+				throw new IOException("Invalid length " + length + " for chunk " + x + ", " + z + ".");
+			}
+
+			compression = header.get(4) & 0xFF;
+			data = new byte[length - 1];
+			readFully(ByteBuffer.wrap(data), position + RegionFile.CHUNK_HEADER_BYTES);
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		return RegionFile.decodeChunk(data, compression);
+	}
+
+	/**
+	 * Writes a chunk with zlib compression.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @param tag The root tag of the chunk.
+	 * @throws IOException if an I/O error occurs or the chunk is too large.
+	 */
+	public void writeChunk(int x, int z, Tag tag) throws IOException {
+		writeChunk(x, z, tag, RegionFile.COMPRESSION_ZLIB);
+	}
+
+	/**
+	 * Writes a chunk. The chunk is compressed before any lock is taken.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @param tag The root tag of the chunk.
+	 * @param compression The compression type.
+	 * @throws IOException if an I/O error occurs or the chunk is too large.
+	 */
+	public void writeChunk(int x, int z, Tag tag, int compression) throws IOException {
+		RegionFile.SectorBuffer buffer = RegionFile.encodeChunk(x, z, tag, compression);
+		int sectors = buffer.size() / RegionFile.SECTOR_BYTES;
+		int index = RegionFile.getIndex(x, z);
+		ReadWriteLock lock = lock(index);
+		lock.writeLock().lock();
+		try {
+			int location = this.locations.get(index);
+			int oldStart = location >>> 8;
+			int oldCount = location & 0xFF;
+			int start;
+			synchronized(this.used) {
+				if(location != 0 && oldCount >= sectors) {
+					start = oldStart;
+					this.used.clear(oldStart + sectors, oldStart + oldCount);
+				} else {
+					start = RegionFile.allocate(this.used, this.sectorCount, sectors);
+				}
+
+				this.used.set(start, start + sectors);
+				this.sectorCount = Math.max(this.sectorCount, start + sectors);
+			}
+
+			writeFully(ByteBuffer.wrap(buffer.buffer(), 0, buffer.size()), (long) start * RegionFile.SECTOR_BYTES);
+			setHeader(index, (start << 8) | sectors, (int) (System.currentTimeMillis() / 1000L));
+			if(location != 0 && start != oldStart) {
+				// The old sectors are only given up once the header no longer points to them.
+				synchronized(this.used) {
+					this.used.clear(oldStart, oldStart + oldCount);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a chunk, freeing its sectors.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void deleteChunk(int x, int z) throws IOException {
+		int index = RegionFile.getIndex(x, z);
+		ReadWriteLock lock = lock(index);
+		lock.writeLock().lock();
+		try {
+			int location = this.locations.get(index);
+			if(location == 0) {
+				return;
+			}
+
+			setHeader(index, 0, 0);
+			synchronized(this.used) {
+				this.used.clear(location >>> 8, (location >>> 8) + (location & 0xFF));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Compacts the file in place, writing its chunks back to back in spatial
+	 * order and truncating the free sectors at the end. Every chunk lock is
+	 * held while this runs, so all other reads and writes wait for it.
+	 * @return The number of bytes reclaimed.
+	 * @throws IOException if an I/O error occurs.
+	 * @see RegionFile#compact()
+	 */
+	public long compact() throws IOException {
+		for(ReadWriteLock lock : this.locks) {
+			lock.writeLock().lock();
+		}
+
+		try {
+			int[] locations = new int[RegionFile.CHUNK_COUNT];
+			for(int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+				locations[index] = this.locations.get(index);
+			}
+
+			long before = this.channel.size();
+			int sectors;
+			synchronized(this.used) {
+				sectors = RegionCompactor.compact(this.raf, this.file, locations);
+				this.used.clear();
+				this.used.set(0, sectors);
+				this.sectorCount = sectors;
+			}
+
+			for(int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+				this.locations.set(index, locations[index]);
+			}
+
+			return before - (long) sectors * RegionFile.SECTOR_BYTES;
+		} finally {
+			for(ReadWriteLock lock : this.locks) {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Flushes changes to the underlying storage device.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void flush() throws IOException {
+		this.channel.force(true);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.raf.close();
+	}
+
+	/**
+	 * Gets the lock guarding a chunk.
+	 * @param index The index of the chunk.
+	 * @return The lock.
+	 */
+	private ReadWriteLock lock(int index) {
+		return this.locks[index & (this.locks.length - 1)];
+	}
+
+	/**
+	 * Sets the location and timestamp of a chunk and writes them to the header.
+	 * @param index The index of the chunk.
+	 * @param location The location.
+	 * @param timestamp The timestamp.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void setHeader(int index, int location, int timestamp) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4);
+		buf.putInt(0, location);
+		writeFully(buf, index * 4);
+		buf.clear();
+		buf.putInt(0, timestamp);
+		writeFully(buf, RegionFile.SECTOR_BYTES + index * 4);
+		this.locations.set(index, location);
+		this.timestamps.set(index, timestamp);
+	}
+
+	/**
+	 * Fills a buffer from the file.
+	 * @param buf The buffer.
+	 * @param position The position in the file to read from.
+	 * @throws IOException if an I/O error occurs or the end of the file is reached.
+	 */
+	private void readFully(ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) {
+			int read = this.channel.read(buf, position);
+			if(read < 0) {
+				throw new EOFException("Unexpected end of region file " + this.file + ".");
+			}
+
+			position += read;
+		}
+	}
+
+	/**
+	 * Writes a buffer to the file.
+	 * @param buf The buffer.
+	 * @param position The position in the file to write to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void writeFully(ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) {
+			position += this.channel.write(buf, position);
+		}
+	}
+
+}
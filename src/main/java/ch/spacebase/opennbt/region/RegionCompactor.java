@@ -0,0 +1,281 @@
+package ch.spacebase.opennbt.region;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.logging.Logger;
+
+/**
+ * Compacts region files by rewriting their chunks back to back, dropping the
+ * free sectors left by chunks which were removed, moved or shrunk. Chunks are
+ * laid out along a Z-order curve, so chunks close together in the world are
+ * close together in the file. The compressed chunk data is copied as is.
+ * <p>
+ * Files which are not open may be compacted with {@link #compact(File)}, which
+ * writes a new file beside the old one and replaces it. Open regions may be
+ * compacted in place with <code>RegionFile.compact()</code> or
+ * <code>ConcurrentRegionFile.compact()</code>. The class may also be run from
+ * the command line with the files or directories to compact as arguments.
+ */
+public final class RegionCompactor {
+
+	/**
+	 * The logger used by this class.
+	 */
+	private static final Logger logger = Logger.getLogger("RegionCompactor");
+
+	/**
+	 * Chunk indexes in the order they are written.
+	 */
+	private static final int[] ORDER = new int[RegionFile.CHUNK_COUNT];
+
+	static {
+		for(int i = 0; i < ORDER.length; i++) {
+			int x = 0;
+			int z = 0;
+			for(int bit = 0; bit < 5; bit++) {
+				x |= ((i >>> (2 * bit)) & 1) << bit;
+				z |= ((i >>> (2 * bit + 1)) & 1) << bit;
+			}
+
+			ORDER[i] = RegionFile.getIndex(x, z);
+		}
+	}
+
+	/**
+	 * Default private constructor.
+	 */
+	private RegionCompactor() {
+	}
+
+	/**
+	 * Compacts the region files or directories of region files given.
+	 * @param args The files or directories to compact.
+	 */
+	public static void main(String[] args) {
+		if(args.length == 0) {
+			System.out.println("Usage: java " + RegionCompactor.class.getName() + " <region file or directory>...");
+			System.exit(1);
+		}
+
+		long total = 0;
+		boolean failed = false;
+		for(String arg : args) {
+			File file = new File(arg);
+			File[] files = file.isDirectory() ? file.listFiles() : new File[] { file };
+			if(files == null) {
+				System.out.println("Unable to list " + file + ".");
+				failed = true;
+				continue;
+			}
+
+			for(File region : files) {
+				if(region.isDirectory() || (file.isDirectory() && !region.getName().endsWith(".mca"))) {
+					continue;
+				}
+
+				try {
+					long reclaimed = compact(region);
+					total += reclaimed;
+					System.out.println(region + ": " + reclaimed + " bytes reclaimed.");
+				} catch(IOException e) {
+					System.out.println(region + ": " + e.getMessage());
+					failed = true;
+				}
+			}
+		}
+
+		System.out.println(total + " bytes reclaimed in total.");
+		if(failed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compacts a region file which is not open elsewhere. The old file is
+	 * only read, and the chunks are copied one at a time to a new file which
+	 * is synced to disk and then replaces the old one, so the old file is
+	 * left whole if anything fails. Files too short to hold a header have no
+	 * chunks and are left as they are.
+	 * @param file The region file.
+	 * @return The number of bytes reclaimed.
+	 * @throws IOException if the file does not exist or an I/O error occurs.
+	 */
+	public static long compact(File file) throws IOException {
+		if(!file.isFile()) {
+			throw new FileNotFoundException("Region file " + file + " does not exist.");
+		}
+
+		if(file.length() < RegionFile.HEADER_SECTORS * RegionFile.SECTOR_BYTES) {
+			return 0;
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		int[] locations = new int[RegionFile.CHUNK_COUNT];
+		int[] timestamps = new int[RegionFile.CHUNK_COUNT];
+		long before;
+		long after;
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			RegionFile.readTables(in, file, locations, timestamps, new BitSet());
+			before = in.length();
+			RandomAccessFile out = new RandomAccessFile(temp, "rw");
+			try {
+				out.setLength(0);
+				out.write(new byte[RegionFile.HEADER_SECTORS * RegionFile.SECTOR_BYTES]);
+				int next = RegionFile.HEADER_SECTORS;
+				for(int index : ORDER) {
+					if(locations[index] == 0) {
+						continue;
+					}
+
+					byte[] data = readSectors(in, file, locations[index]);
+					int sectors = data.length / RegionFile.SECTOR_BYTES;
+					out.write(data);
+					locations[index] = (next << 8) | sectors;
+					next += sectors;
+				}
+
+				writeHeader(out, locations, timestamps);
+				after = out.length();
+				// Make sure the new file is on disk before it replaces the old
+				// one, or a crash could leave a region file full of zeros.
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+		} catch(IOException e) {
+			temp.delete();
+			throw e;
+		} finally {
+			in.close();
+		}
+
+		if(!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+			throw new IOException("Unable to replace " + file + " with " + temp + ".");
+		}
+
+		return before - after;
+	}
+
+	/**
+	 * Compacts an open region file in place. Every live chunk is read into
+	 * memory before anything is written.
+	 * @param raf The open file.
+	 * @param file The file, for log messages.
+	 * @param locations The chunk locations, which are updated.
+	 * @return The number of sectors in the compacted file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static int compact(RandomAccessFile raf, File file, int[] locations) throws IOException {
+		byte[][] chunks = new byte[RegionFile.CHUNK_COUNT][];
+		for(int index = 0; index < RegionFile.CHUNK_COUNT; index++) {
+			if(locations[index] != 0) {
+				chunks[index] = readSectors(raf, file, locations[index]);
+			}
+		}
+
+		int next = RegionFile.HEADER_SECTORS;
+		raf.seek((long) next * RegionFile.SECTOR_BYTES);
+		for(int index : ORDER) {
+			if(chunks[index] == null) {
+				continue;
+			}
+
+			int sectors = chunks[index].length / RegionFile.SECTOR_BYTES;
+			raf.write(chunks[index]);
+			locations[index] = (next << 8) | sectors;
+			next += sectors;
+		}
+
+		byte[] table = new byte[RegionFile.SECTOR_BYTES];
+		ByteBuffer.wrap(table).asIntBuffer().put(locations);
+		raf.seek(0);
+		raf.write(table);
+		raf.setLength((long) next * RegionFile.SECTOR_BYTES);
+		return next;
+	}
+
+	/**
+	 * Reads the sectors of a chunk, leaving out trailing sectors it does not
+	 * use. A chunk with an invalid length is kept whole, and the missing part
+	 * of a truncated last sector is filled with zeros.
+	 * @param raf The open file.
+	 * @param file The file, for log messages.
+	 * @param location The location of the chunk.
+	 * @return The sectors of the chunk.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private static byte[] readSectors(RandomAccessFile raf, File file, int location) throws IOException {
+		long position = (long) (location >>> 8) * RegionFile.SECTOR_BYTES;
+		int count = location & 0xFF;
+		long available = raf.length() - position;
+		raf.seek(position);
+		int length = available >= 4 ? raf.readInt() + 4 : 0;
+		if(length <= 4 || length > count * RegionFile.SECTOR_BYTES) {
+			logger.warning("Keeping chunk with invalid length " + (length - 4) + " at sector " + (location >>> 8) + " of " + file + " unchanged.");
+			length = count * RegionFile.SECTOR_BYTES;
+		}
+
+		int sectors = (length + RegionFile.SECTOR_BYTES - 1) / RegionFile.SECTOR_BYTES;
+		byte[] data = new byte[sectors * RegionFile.SECTOR_BYTES];
+		raf.seek(position);
+		raf.readFully(data, 0, (int) Math.min(length, available));
+		return data;
+	}
+
+	/**
+	 * Writes the location and timestamp tables.
+	 * @param raf The open file.
+	 * @param locations The chunk locations.
+	 * @param timestamps The chunk timestamps.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private static void writeHeader(RandomAccessFile raf, int[] locations, int[] timestamps) throws IOException {
+		byte[] header = new byte[RegionFile.HEADER_SECTORS * RegionFile.SECTOR_BYTES];
+		ByteBuffer buf = ByteBuffer.wrap(header);
+		buf.asIntBuffer().put(locations);
+		buf.position(RegionFile.SECTOR_BYTES);
+		buf.asIntBuffer().put(timestamps);
+		raf.seek(0);
+		raf.write(header);
+	}
+
+}
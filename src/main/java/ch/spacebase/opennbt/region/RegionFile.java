@@ -0,0 +1,609 @@
+package ch.spacebase.opennbt.region;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.logging.Logger;
+
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.stream.NBTInputStream;
+import ch.spacebase.opennbt.stream.NBTOutputStream;
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * <p>
+ * A region file in the Anvil (<code>.mca</code>) format, holding up to 32x32
+ * chunks. The file starts with a table of chunk locations and a table of
+ * timestamps, each one sector long, followed by the chunks themselves in
+ * 4 KiB sectors.
+ * </p>
+ * 
+ * <p>
+ * Each location is a big endian int holding the first sector of the chunk in
+ * its upper three bytes and the number of sectors in its lowest byte. A chunk
+ * starts with its length and a byte giving its compression, followed by the
+ * compressed NBT data.
+ * </p>
+ * 
+ * <p>
+ * Chunks are addressed by chunk coordinates, of which only the lowest five
+ * bits are used. Sectors freed by removed or moved chunks are reused by later
+ * writes. All methods are synchronized on the region file.
+ * </p>
+ */
+public class RegionFile implements Closeable {
+
+	/**
+	 * The logger used by this class.
+	 */
+	private static final Logger logger = Logger.getLogger("RegionFile");
+
+	/**
+	 * The size of a sector in bytes.
+	 */
+	public static final int SECTOR_BYTES = 4096;
+
+	/**
+	 * The number of chunks along each side of a region.
+	 */
+	public static final int REGION_SIZE = 32;
+
+	/**
+	 * The number of chunks in a region.
+	 */
+	public static final int CHUNK_COUNT = REGION_SIZE * REGION_SIZE;
+
+	/**
+	 * The number of sectors taken by the location and timestamp tables.
+	 */
+	public static final int HEADER_SECTORS = 2;
+
+	/**
+	 * The largest number of sectors a chunk may take.
+	 */
+	public static final int MAX_CHUNK_SECTORS = 255;
+
+	/**
+	 * Compression type of GZIP compressed chunks.
+	 */
+	public static final int COMPRESSION_GZIP = 1;
+
+	/**
+	 * Compression type of zlib compressed chunks.
+	 */
+	public static final int COMPRESSION_ZLIB = 2;
+
+	/**
+	 * Compression type of uncompressed chunks.
+	 */
+	public static final int COMPRESSION_NONE = 3;
+
+	/**
+	 * The size of the length and compression type before each chunk.
+	 */
+	static final int CHUNK_HEADER_BYTES = 5;
+
+	/**
+	 * The file.
+	 */
+	private final File file;
+
+	/**
+	 * The open file.
+	 */
+	private final RandomAccessFile raf;
+
+	/**
+	 * The location of each chunk.
+	 */
+	private final int[] locations = new int[CHUNK_COUNT];
+
+	/**
+	 * The last modification time of each chunk, in seconds.
+	 */
+	private final int[] timestamps = new int[CHUNK_COUNT];
+
+	/**
+	 * The sectors in use, including the header.
+	 */
+	private final BitSet used = new BitSet();
+
+	/**
+	 * The number of sectors in the file.
+	 */
+	private int sectorCount;
+
+	/**
+	 * Opens a region file, creating it if it does not exist.
+	 * @param file The file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public RegionFile(File file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		try {
+			this.sectorCount = readHeader(this.raf, file, this.locations, this.timestamps, this.used);
+		} catch(IOException e) {
+			this.raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the name of the region file holding a chunk.
+	 * @param chunkX The x coordinate of the chunk.
+	 * @param chunkZ The z coordinate of the chunk.
+	 * @return The file name.
+	 */
+	public static String getFileName(int chunkX, int chunkZ) {
+		return "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca";
+	}
+
+	/**
+	 * Gets the index of a chunk in the header tables.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return The index of the chunk.
+	 */
+	public static int getIndex(int x, int z) {
+		return (x & (REGION_SIZE - 1)) | ((z & (REGION_SIZE - 1)) << 5);
+	}
+
+	/**
+	 * Gets the codec used for a chunk compression type.
+	 * @param compression The compression type.
+	 * @return The codec.
+	 * @throws IOException if the compression type is unknown.
+	 */
+	public static CompressionCodec getCodec(int compression) throws IOException {
+		switch(compression) {
+		case COMPRESSION_GZIP:
+			return CompressionCodecs.GZIP;
+		case COMPRESSION_ZLIB:
+			return CompressionCodecs.ZLIB;
+		case COMPRESSION_NONE:
+			return CompressionCodecs.NONE;
+		default:
+			throw new IOException("Unknown chunk compression type: " + compression);
+		}
+	}
+
+	/**
+	 * Gets the file of this region.
+	 * @return The file.
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Gets the number of sectors in the file.
+	 * @return The number of sectors.
+	 */
+	public synchronized int getSectorCount() {
+		return this.sectorCount;
+	}
+
+	/**
+	 * Gets the number of sectors holding chunks or the header.
+	 * @return The number of sectors in use.
+	 */
+	public synchronized int getUsedSectorCount() {
+		return this.used.cardinality();
+	}
+
+	/**
+	 * Checks whether a chunk is present.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return Whether the chunk is present.
+	 */
+	public synchronized boolean hasChunk(int x, int z) {
+		return this.locations[getIndex(x, z)] != 0;
+	}
+
+	/**
+	 * Gets the last time a chunk was written.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return The time in seconds since the epoch, or 0 if unknown.
+	 */
+	public synchronized int getTimestamp(int x, int z) {
+		return this.timestamps[getIndex(x, z)];
+	}
+
+	/**
+	 * Reads a chunk.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @return The root tag of the chunk, or <code>null</code> if it is not present.
+	 * @throws IOException if an I/O error occurs or the chunk is malformed.
+	 */
+	public Tag readChunk(int x, int z) throws IOException {
+		int compression;
+		byte[] data;
+		synchronized(this) {
+			int location = this.locations[getIndex(x, z)];
+			if(location == 0) {
+				return null;
+			}
+
+			int count = location & 0xFF;
+			this.raf.seek((long) (location >>> 8) * SECTOR_BYTES);
+			int length = this.raf.readInt();
+			if(length <= 0 || length > count * SECTOR_BYTES - 4) {
+				throw new IOException("Invalid length " + length + " for chunk " + x + ", " + z + ".");
+			}
+
+			compression = this.raf.readUnsignedByte();
+			data = new byte[length - 1];
+			this.raf.readFully(data);
+		}
+
+		return decodeChunk(data, compression);
+	}
+
+	/**
+	 * Writes a chunk with zlib compression.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @param tag The root tag of the chunk.
+	 * @throws IOException if an I/O error occurs or the chunk is too large.
+	 */
+	public void writeChunk(int x, int z, Tag tag) throws IOException {
+		writeChunk(x, z, tag, COMPRESSION_ZLIB);
+	}
+
+	/**
+	 * Writes a chunk.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @param tag The root tag of the chunk.
+	 * @param compression The compression type.
+	 * @throws IOException if an I/O error occurs or the chunk is too large.
+	 */
+	public void writeChunk(int x, int z, Tag tag, int compression) throws IOException {
+		SectorBuffer buffer = encodeChunk(x, z, tag, compression);
+		writeSectors(getIndex(x, z), buffer.buffer(), buffer.size() / SECTOR_BYTES);
+	}
+
+	/**
+	 * Removes a chunk, freeing its sectors.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public synchronized void deleteChunk(int x, int z) throws IOException {
+		int index = getIndex(x, z);
+		int location = this.locations[index];
+		if(location == 0) {
+			return;
+		}
+
+		this.used.clear(location >>> 8, (location >>> 8) + (location & 0xFF));
+		setLocation(index, 0);
+		setTimestamp(index, 0);
+	}
+
+	/**
+	 * Compacts the file in place, writing its chunks back to back in spatial
+	 * order and truncating the free sectors at the end. Every live chunk is
+	 * held in memory while this runs, and the file may be left damaged if it
+	 * is interrupted; {@link RegionCompactor#compact(File)} is safer for files
+	 * which are not in use.
+	 * @return The number of bytes reclaimed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public synchronized long compact() throws IOException {
+		long before = this.raf.length();
+		this.sectorCount = RegionCompactor.compact(this.raf, this.file, this.locations);
+		this.used.clear();
+		this.used.set(0, this.sectorCount);
+		return before - this.raf.length();
+	}
+
+	/**
+	 * Flushes changes to the underlying storage device.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public synchronized void flush() throws IOException {
+		this.raf.getFD().sync();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.raf.close();
+	}
+
+	/**
+	 * Writes a chunk's sectors, reusing its current sectors if it still fits
+	 * and otherwise moving it to the first free run that is large enough.
+	 * @param index The index of the chunk.
+	 * @param data The padded chunk data.
+	 * @param sectors The number of sectors to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private synchronized void writeSectors(int index, byte[] data, int sectors) throws IOException {
+		int location = this.locations[index];
+		int oldStart = location >>> 8;
+		int oldCount = location & 0xFF;
+		int start;
+		if(location != 0 && oldCount >= sectors) {
+			start = oldStart;
+			this.used.clear(oldStart + sectors, oldStart + oldCount);
+		} else {
+			if(location != 0) {
+				this.used.clear(oldStart, oldStart + oldCount);
+			}
+
+			start = allocate(this.used, this.sectorCount, sectors);
+		}
+
+		this.raf.seek((long) start * SECTOR_BYTES);
+		this.raf.write(data, 0, sectors * SECTOR_BYTES);
+		this.used.set(start, start + sectors);
+		this.sectorCount = Math.max(this.sectorCount, start + sectors);
+		setLocation(index, (start << 8) | sectors);
+		setTimestamp(index, (int) (System.currentTimeMillis() / 1000L));
+	}
+
+	/**
+	 * Finds the first run of free sectors large enough for a chunk. A free
+	 * run at the end of the file may be extended past it.
+	 * @param used The sectors in use.
+	 * @param sectorCount The number of sectors in the file.
+	 * @param sectors The number of sectors needed.
+	 * @return The first sector of the run.
+	 */
+	static int allocate(BitSet used, int sectorCount, int sectors) {
+		int start = used.nextClearBit(HEADER_SECTORS);
+		while(start < sectorCount) {
+			int end = used.nextSetBit(start);
+			if(end < 0 || end - start >= sectors) {
+				break;
+			}
+
+			start = used.nextClearBit(end);
+		}
+
+		return start;
+	}
+
+	/**
+	 * Sets the location of a chunk and writes it to the header.
+	 * @param index The index of the chunk.
+	 * @param location The location.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void setLocation(int index, int location) throws IOException {
+		this.locations[index] = location;
+		this.raf.seek(index * 4);
+		this.raf.writeInt(location);
+	}
+
+	/**
+	 * Sets the timestamp of a chunk and writes it to the header.
+	 * @param index The index of the chunk.
+	 * @param timestamp The timestamp.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void setTimestamp(int index, int timestamp) throws IOException {
+		this.timestamps[index] = timestamp;
+		this.raf.seek(SECTOR_BYTES + index * 4);
+		this.raf.writeInt(timestamp);
+	}
+
+	/**
+	 * Compresses a chunk into a buffer of whole sectors, starting with its
+	 * length and compression type.
+	 * @param x The x coordinate of the chunk.
+	 * @param z The z coordinate of the chunk.
+	 * @param tag The root tag of the chunk.
+	 * @param compression The compression type.
+	 * @return The padded chunk data.
+	 * @throws IOException if an I/O error occurs or the chunk is too large.
+	 */
+	static SectorBuffer encodeChunk(int x, int z, Tag tag, int compression) throws IOException {
+		SectorBuffer buffer = new SectorBuffer();
+		buffer.write(new byte[CHUNK_HEADER_BYTES]);
+		NBTOutputStream out = new NBTOutputStream(buffer, getCodec(compression));
+		try {
+			out.writeTag(tag);
+		} finally {
+			out.close();
+		}
+
+		int length = buffer.size() - 4;
+		buffer.setHeader(length, compression);
+		int sectors = (buffer.size() + SECTOR_BYTES - 1) / SECTOR_BYTES;
+		if(sectors > MAX_CHUNK_SECTORS) {
+			throw new IOException("Chunk " + x + ", " + z + " is too large: " + buffer.size() + " bytes.");
+		}
+
+		buffer.pad(sectors * SECTOR_BYTES);
+		return buffer;
+	}
+
+	/**
+	 * Decompresses and reads a chunk.
+	 * @param data The compressed chunk, without its length and compression type.
+	 * @param compression The compression type.
+	 * @return The root tag of the chunk.
+	 * @throws IOException if an I/O error occurs or the chunk is malformed.
+	 */
+	static Tag decodeChunk(byte[] data, int compression) throws IOException {
+		NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(data), getCodec(compression));
+		try {
+			return in.readTag();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the header of a region file, writing an empty one if the file is
+	 * new, and marks the sectors in use.
+	 * @param raf The open file.
+	 * @param file The file, for log messages.
+	 * @param locations The array to read chunk locations into.
+	 * @param timestamps The array to read chunk timestamps into.
+	 * @param used The set to mark the sectors in use in.
+	 * @return The number of sectors in the file.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static int readHeader(RandomAccessFile raf, File file, int[] locations, int[] timestamps, BitSet used) throws IOException {
+		long length = raf.length();
+		if(length < HEADER_SECTORS * SECTOR_BYTES) {
+			raf.seek(0);
+			raf.write(new byte[HEADER_SECTORS * SECTOR_BYTES]);
+		} else if(length % SECTOR_BYTES != 0) {
+			// Pad a truncated last sector so every chunk can be read in full.
+			raf.setLength(length + SECTOR_BYTES - length % SECTOR_BYTES);
+		}
+
+		return readTables(raf, file, locations, timestamps, used);
+	}
+
+	/**
+	 * Reads the header of a region file without changing the file, and marks
+	 * the sectors in use. A truncated last sector is counted as a whole one.
+	 * @param raf The open file.
+	 * @param file The file, for log messages.
+	 * @param locations The array to read chunk locations into.
+	 * @param timestamps The array to read chunk timestamps into.
+	 * @param used The set to mark the sectors in use in.
+	 * @return The number of sectors in the file.
+	 * @throws IOException if an I/O error occurs or the file is too short to
+	 * hold a header.
+	 */
+	static int readTables(RandomAccessFile raf, File file, int[] locations, int[] timestamps, BitSet used) throws IOException {
+		long length = raf.length();
+		if(length < HEADER_SECTORS * SECTOR_BYTES) {
+			throw new IOException("Region file " + file + " is too short to hold a header.");
+		}
+
+		if(length % SECTOR_BYTES != 0) {
+			length += SECTOR_BYTES - length % SECTOR_BYTES;
+		}
+
+		if(length / SECTOR_BYTES > Integer.MAX_VALUE >>> 8) {
+			throw new IOException("Region file is too large: " + length + " bytes.");
+		}
+
+		int sectorCount = (int) (length / SECTOR_BYTES);
+		byte[] header = new byte[HEADER_SECTORS * SECTOR_BYTES];
+		raf.seek(0);
+		raf.readFully(header);
+		ByteBuffer buf = ByteBuffer.wrap(header);
+		buf.asIntBuffer().get(locations);
+		buf.position(SECTOR_BYTES);
+		buf.asIntBuffer().get(timestamps);
+
+		used.set(0, HEADER_SECTORS);
+		for(int index = 0; index < CHUNK_COUNT; index++) {
+			int location = locations[index];
+			if(location == 0) {
+				continue;
+			}
+
+			int start = location >>> 8;
+			int count = location & 0xFF;
+			if(start < HEADER_SECTORS || count == 0 || start + count > sectorCount) {
+				logger.warning("Ignoring chunk " + index + " with invalid location in " + file + ".");
+				locations[index] = 0;
+				continue;
+			}
+
+			used.set(start, start + count);
+		}
+
+		return sectorCount;
+	}
+
+	/**
+	 * A byte array output stream which gives access to its buffer, so a chunk
+	 * can be written without copying it.
+	 */
+	static class SectorBuffer extends ByteArrayOutputStream {
+
+		/**
+		 * Creates a new <code>SectorBuffer</code>.
+		 */
+		public SectorBuffer() {
+			super(SECTOR_BYTES);
+		}
+
+		/**
+		 * Fills in the length and compression type at the start of the buffer.
+		 * @param length The length of the chunk.
+		 * @param compression The compression type.
+		 */
+		public void setHeader(int length, int compression) {
+			this.buf[0] = (byte) (length >>> 24);
+			this.buf[1] = (byte) (length >>> 16);
+			this.buf[2] = (byte) (length >>> 8);
+			this.buf[3] = (byte) length;
+			this.buf[4] = (byte) compression;
+		}
+
+		/**
+		 * Pads the buffer with zeros to the given size.
+		 * @param size The size.
+		 */
+		public void pad(int size) {
+			while(this.count < size) {
+				write(0);
+			}
+		}
+
+		/**
+		 * Gets the buffer.
+		 * @return The buffer.
+		 */
+		public byte[] buffer() {
+			return this.buf;
+		}
+
+	}
+
+}
@@ -0,0 +1,792 @@
+package ch.spacebase.opennbt.snbt;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import ch.spacebase.opennbt.exception.InvalidNBTException;
+import ch.spacebase.opennbt.exception.NBTLimitException;
+import ch.spacebase.opennbt.object.ObjectCodecs;
+import ch.spacebase.opennbt.stream.NBTReadLimits;
+import ch.spacebase.opennbt.tag.ByteArrayTag;
+import ch.spacebase.opennbt.tag.ByteTag;
+import ch.spacebase.opennbt.tag.CompoundTag;
+import ch.spacebase.opennbt.tag.DoubleTag;
+import ch.spacebase.opennbt.tag.EndTag;
+import ch.spacebase.opennbt.tag.FloatTag;
+import ch.spacebase.opennbt.tag.IntArrayTag;
+import ch.spacebase.opennbt.tag.IntTag;
+import ch.spacebase.opennbt.tag.ListTag;
+import ch.spacebase.opennbt.tag.LongTag;
+import ch.spacebase.opennbt.tag.ShortTag;
+import ch.spacebase.opennbt.tag.StringTag;
+import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+
+/**
+ * <p>Reads tags from <strong>SNBT</strong>, the text form of NBT, in the
+ * format written by <code>SNBTWriter</code>. Tags are built as the text is
+ * read, in a single pass.</p>
+ * 
+ * <p>Besides the values <code>SNBTWriter</code> writes, numbers without a
+ * suffix are read as ints, or as doubles if they have a decimal point or an
+ * exponent, <code>true</code> and <code>false</code> are read as bytes, and
+ * other unquoted words are read as strings. Strings may be quoted with
+ * single or double quotes. Compounds keep the order of their keys.</p>
+ * 
+ * <p>The limits given are applied to the text: the maximum number of bytes
+ * applies to characters read, and the maximum string length to characters
+ * in a string.</p>
+ */
+public final class SNBTReader implements Closeable {
+
+	/**
+	 * An integer without a suffix.
+	 */
+	private static final Pattern INTEGER = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)");
+
+	/**
+	 * An integer with a byte, short or long suffix.
+	 */
+	private static final Pattern SUFFIXED_INTEGER = Pattern.compile("[-+]?(?:0|[1-9][0-9]*)[bsl]", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * A decimal number which can only be a double without its suffix.
+	 */
+	private static final Pattern DECIMAL = Pattern.compile("[-+]?(?:[0-9]+[.]|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?|[-+]?[0-9]+e[-+]?[0-9]+", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * A number with a float or double suffix.
+	 */
+	private static final Pattern SUFFIXED_DECIMAL = Pattern.compile("(?:[-+]?(?:[0-9]+[.]?|[0-9]*[.][0-9]+)(?:e[-+]?[0-9]+)?|[-+]?NaN|[-+]?Infinity)[fd]", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * The input.
+	 */
+	private final Reader in;
+
+	/**
+	 * The limits the input is checked against.
+	 */
+	private final NBTReadLimits limits;
+
+	/**
+	 * The buffered input.
+	 */
+	private final char[] buffer = new char[4096];
+
+	/**
+	 * The position of the next character in the buffer.
+	 */
+	private int pos = 0;
+
+	/**
+	 * The number of characters in the buffer.
+	 */
+	private int limit = 0;
+
+	/**
+	 * The number of characters read before the buffer.
+	 */
+	private long consumed = 0;
+
+	/**
+	 * The line of the next character.
+	 */
+	private int line = 1;
+
+	/**
+	 * The column of the next character.
+	 */
+	private int column = 1;
+
+	/**
+	 * Creates a new <code>SNBTReader</code>.
+	 * @param in The input.
+	 */
+	public SNBTReader(Reader in) {
+		this(in, NBTReadLimits.DEFAULT);
+	}
+
+	/**
+	 * Creates a new <code>SNBTReader</code> which rejects input exceeding the
+	 * given limits.
+	 * @param in The input.
+	 * @param limits The limits the input is checked against.
+	 */
+	public SNBTReader(Reader in, NBTReadLimits limits) {
+		this.in = in;
+		this.limits = limits;
+	}
+
+	/**
+	 * Parses a single tag from a string.
+	 * @param snbt The SNBT.
+	 * @return The tag, with an empty name.
+	 * @throws IOException if the SNBT is invalid, or is anything other than
+	 * a single value.
+	 */
+	public static Tag parse(String snbt) throws IOException {
+		SNBTReader reader = new SNBTReader(new StringReader(snbt));
+		Tag tag = reader.readTag();
+		if(tag == null) {
+			throw reader.error("Expected a value");
+		}
+
+		reader.skipWhitespace();
+		if(reader.peek() != -1) {
+			throw reader.error("Unexpected text after the value");
+		}
+
+		return tag;
+	}
+
+	/**
+	 * Reads the next tag. Tags in the input may be separated by whitespace.
+	 * @return The tag, with an empty name, or null if the end of the input
+	 * has been reached.
+	 * @throws IOException if an I/O error occurs, or the SNBT is invalid.
+	 */
+	public Tag readTag() throws IOException {
+		skipWhitespace();
+		if(peek() == -1) {
+			return null;
+		}
+
+		return readValue("", 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+	/**
+	 * Gets whether a character may be part of an unquoted string.
+	 * @param c The character.
+	 * @return Whether the character may be unquoted.
+	 */
+	static boolean isUnquotedChar(int c) {
+		return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_' || c == '-' || c == '.' || c == '+';
+	}
+
+	/**
+	 * Reads a value.
+	 * @param name The name of the tag.
+	 * @param depth The depth of the tag.
+	 * @return The tag.
+	 * @throws IOException if an I/O error occurs, or the SNBT is invalid.
+	 */
+	private Tag readValue(String name, int depth) throws IOException {
+		skipWhitespace();
+		int c = peek();
+		if(c == '{') {
+			return readCompound(name, depth);
+		} else if(c == '[') {
+			return readArrayOrList(name, depth);
+		} else if(c == '"' || c == '\'') {
+			return new StringTag(name, readQuoted());
+		}
+
+		return toScalar(name, readUnquoted());
+	}
+
+	private CompoundTag readCompound(String name, int depth) throws IOException {
+		checkDepth(depth + 1);
+		expect('{');
+		Map<String, Tag> map = new LinkedHashMap<String, Tag>();
+		skipWhitespace();
+		if(peek() == '}') {
+			next();
+			return new CompoundTag(name, map);
+		}
+
+		while(true) {
+			skipWhitespace();
+			int c = peek();
+			String key = c == '"' || c == '\'' ? readQuoted() : readUnquoted();
+			skipWhitespace();
+			expect(':');
+			map.put(key, readValue(key, depth + 1));
+			skipWhitespace();
+			if(peek() == ',') {
+				next();
+			} else {
+				expect('}');
+				return new CompoundTag(name, map);
+			}
+		}
+	}
+
+	private Tag readArrayOrList(String name, int depth) throws IOException {
+		checkDepth(depth + 1);
+		expect('[');
+		skipWhitespace();
+		int c = peek();
+		if(c == ']') {
+			next();
+			return createList(name, EndTag.class, new ArrayList<Tag>());
+		}
+
+		Tag first;
+		if((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+			// Either the type prefix of an array or an unquoted string at the
+			// start of a list, which can only be told apart by what follows.
+			String word = readUnquoted();
+			skipWhitespace();
+			if(peek() == ';') {
+				next();
+				return readArray(name, word);
+			}
+
+			first = toScalar("", word);
+		} else {
+			first = readValue("", depth + 1);
+		}
+
+		List<Tag> list = new ArrayList<Tag>();
+		Class<? extends Tag> type = first.getClass();
+		list.add(first);
+		while(true) {
+			skipWhitespace();
+			if(peek() != ',') {
+				expect(']');
+				return createList(name, type, list);
+			}
+
+			next();
+			Tag tag = readValue("", depth + 1);
+			if(tag.getClass() != type) {
+				throw error("Mixed types within a list");
+			}
+
+			checkArrayLength(list.size() + 1);
+			list.add(tag);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Tag createList(String name, Class<? extends Tag> type, List<Tag> list) {
+		return new ListTag(name, type, list);
+	}
+
+	/**
+	 * Reads the elements of an array after its type prefix.
+	 * @param name The name of the tag.
+	 * @param prefix The type prefix.
+	 * @return The tag.
+	 * @throws IOException if an I/O error occurs, or the SNBT is invalid.
+	 */
+	private Tag readArray(String name, String prefix) throws IOException {
+		char type = prefix.length() == 1 ? prefix.charAt(0) : 0;
+		if(type == 'B' || type == 'S' || type == 'I' || type == 'L') {
+			long[] values = new long[16];
+			int length = 0;
+			while(nextElement(length)) {
+				if(length == values.length) {
+					values = grow(values);
+				}
+
+				values[length++] = toIntegral(readUnquoted(), type);
+			}
+
+			switch(type) {
+			case 'B':
+				byte[] bytes = new byte[length];
+				for(int i = 0; i < length; i++) {
+					bytes[i] = (byte) values[i];
+				}
+
+				return new ByteArrayTag(name, bytes);
+			case 'S':
+				short[] shorts = new short[length];
+				for(int i = 0; i < length; i++) {
+					shorts[i] = (short) values[i];
+				}
+
+				return new ShortArrayTag(name, shorts);
+			case 'I':
+				int[] ints = new int[length];
+				for(int i = 0; i < length; i++) {
+					ints[i] = (int) values[i];
+				}
+
+				return new IntArrayTag(name, ints);
+			default:
+				long[] longs = new long[length];
+				System.arraycopy(values, 0, longs, 0, length);
+				return new LongArrayTag(name, longs);
+			}
+		} else if(type == 'F' || type == 'D') {
+			double[] values = new double[16];
+			int length = 0;
+			while(nextElement(length)) {
+				if(length == values.length) {
+					double[] grown = new double[values.length * 2];
+					System.arraycopy(values, 0, grown, 0, length);
+					values = grown;
+				}
+
+				values[length++] = toDecimal(readUnquoted(), type);
+			}
+
+			if(type == 'F') {
+				float[] floats = new float[length];
+				for(int i = 0; i < length; i++) {
+					floats[i] = (float) values[i];
+				}
+
+				return new FloatArrayTag(name, floats);
+			}
+
+			double[] doubles = new double[length];
+			System.arraycopy(values, 0, doubles, 0, length);
+			return new DoubleArrayTag(name, doubles);
+		} else if(type == 'T' || type == 'O' || prefix.equals("OA")) {
+			List<String> values = new ArrayList<String>();
+			while(nextElement(values.size())) {
+				int c = peek();
+				if(c != '"' && c != '\'') {
+					throw error("Expected a quoted string");
+				}
+
+				values.add(readQuoted());
+			}
+
+			if(type == 'T') {
+				return new StringArrayTag(name, values.toArray(new String[values.size()]));
+			} else if(type == 'O') {
+				if(values.size() != 1) {
+					throw error("An object must have exactly one value");
+				}
+
+				return new ObjectTag(name, toObject(values.get(0)));
+			}
+
+			Object[] objects = new Object[values.size()];
+			for(int i = 0; i < objects.length; i++) {
+				objects[i] = toObject(values.get(i));
+			}
+
+			return new ObjectArrayTag(name, objects);
+		}
+
+		throw error("Unknown array type '" + prefix + "'");
+	}
+
+	/**
+	 * Moves to the next element of an array, checking the length of the
+	 * array.
+	 * @param length The number of elements read so far.
+	 * @return Whether there is another element, or false if the end of the
+	 * array has been read.
+	 * @throws IOException if an I/O error occurs, or the SNBT is invalid.
+	 */
+	private boolean nextElement(int length) throws IOException {
+		skipWhitespace();
+		if(length == 0) {
+			if(peek() == ']') {
+				next();
+				return false;
+			}
+		} else if(peek() == ',') {
+			next();
+		} else {
+			expect(']');
+			return false;
+		}
+
+		checkArrayLength(length + 1);
+		skipWhitespace();
+		return true;
+	}
+
+	private static long[] grow(long[] values) {
+		long[] grown = new long[values.length * 2];
+		System.arraycopy(values, 0, grown, 0, values.length);
+		return grown;
+	}
+
+	/**
+	 * Converts an unquoted word to a tag.
+	 * @param name The name of the tag.
+	 * @param word The word.
+	 * @return The tag.
+	 * @throws IOException if the word is a number which is out of range.
+	 */
+	private Tag toScalar(String name, String word) throws IOException {
+		if(INTEGER.matcher(word).matches()) {
+			return new IntTag(name, (int) toIntegral(word, 'I'));
+		} else if(SUFFIXED_INTEGER.matcher(word).matches()) {
+			char type = Character.toUpperCase(word.charAt(word.length() - 1));
+			long value = toIntegral(word, type);
+			switch(type) {
+			case 'B':
+				return new ByteTag(name, (byte) value);
+			case 'S':
+				return new ShortTag(name, (short) value);
+			default:
+				return new LongTag(name, value);
+			}
+		} else if(DECIMAL.matcher(word).matches()) {
+			return new DoubleTag(name, toDecimal(word, 'D'));
+		} else if(SUFFIXED_DECIMAL.matcher(word).matches()) {
+			char type = Character.toUpperCase(word.charAt(word.length() - 1));
+			if(type == 'F') {
+				return new FloatTag(name, (float) toDecimal(word, type));
+			}
+
+			return new DoubleTag(name, toDecimal(word, type));
+		} else if(word.equals("true")) {
+			return new ByteTag(name, (byte) 1);
+		} else if(word.equals("false")) {
+			return new ByteTag(name, (byte) 0);
+		}
+
+		return new StringTag(name, word);
+	}
+
+	/**
+	 * Converts a word to an integer of the given type, which may have the
+	 * type's suffix.
+	 * @param word The word.
+	 * @param type The type, as an array prefix.
+	 * @return The integer.
+	 * @throws IOException if the word is not such an integer.
+	 */
+	private long toIntegral(String word, char type) throws IOException {
+		String digits = word;
+		char last = digits.length() > 0 ? Character.toUpperCase(digits.charAt(digits.length() - 1)) : 0;
+		if(type != 'I' && last == type) {
+			digits = digits.substring(0, digits.length() - 1);
+		}
+
+		if(digits.startsWith("+")) {
+			digits = digits.substring(1);
+		}
+
+		long min;
+		long max;
+		switch(type) {
+		case 'B':
+			min = Byte.MIN_VALUE;
+			max = Byte.MAX_VALUE;
+			break;
+		case 'S':
+			min = Short.MIN_VALUE;
+			max = Short.MAX_VALUE;
+			break;
+		case 'I':
+			min = Integer.MIN_VALUE;
+			max = Integer.MAX_VALUE;
+			break;
+		default:
+			min = Long.MIN_VALUE;
+			max = Long.MAX_VALUE;
+		}
+
+		try {
+			long value = Long.parseLong(digits);
+			if(value >= min && value <= max) {
+				return value;
+			}
+		} catch(NumberFormatException e) {
+		}
+
+		throw error("Invalid or out of range value '" + word + "'");
+	}
+
+	/**
+	 * Converts a word to a decimal number, which may have the given type's
+	 * suffix.
+	 * @param word The word.
+	 * @param type The type, as an array prefix.
+	 * @return The number.
+	 * @throws IOException if the word is not a number.
+	 */
+	private double toDecimal(String word, char type) throws IOException {
+		String digits = word;
+		if(digits.length() > 0 && Character.toUpperCase(digits.charAt(digits.length() - 1)) == type) {
+			digits = digits.substring(0, digits.length() - 1);
+		}
+
+		if(digits.startsWith("+")) {
+			digits = digits.substring(1);
+		}
+
+		// parseDouble also takes hex and its own suffixes, which SNBT does
+		// not, so the characters are checked first.
+		for(int i = 0; i < digits.length(); i++) {
+			char c = digits.charAt(i);
+			if(!((c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E') && !digits.equals("NaN") && !digits.equals("Infinity") && !digits.equals("-Infinity")) {
+				throw error("Invalid number '" + word + "'");
+			}
+		}
+
+		try {
+			return Double.parseDouble(digits);
+		} catch(NumberFormatException e) {
+			throw error("Invalid number '" + word + "'");
+		}
+	}
+
+	/**
+	 * Converts a hex string to the object it encodes.
+	 * @param hex The hex string.
+	 * @return The object.
+	 * @throws IOException if the string is not valid hex, or the object
+	 * cannot be read.
+	 */
+	private Object toObject(String hex) throws IOException {
+		if(hex.length() % 2 != 0) {
+			throw error("Object data must have an even number of hex digits");
+		}
+
+		byte[] data = new byte[hex.length() / 2];
+		for(int i = 0; i < data.length; i++) {
+			int high = Character.digit(hex.charAt(i * 2), 16);
+			int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+			if(high < 0 || low < 0) {
+				throw error("Invalid hex digit in object data");
+			}
+
+			data[i] = (byte) ((high << 4) | low);
+		}
+
+		return ObjectCodecs.readObject(new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Reads a quoted string.
+	 * @return The string.
+	 * @throws IOException if an I/O error occurs, or the string is invalid.
+	 */
+	private String readQuoted() throws IOException {
+		int quote = next();
+		StringBuilder builder = new StringBuilder();
+		while(true) {
+			int c = next();
+			if(c == -1) {
+				throw error("Unterminated string");
+			} else if(c == quote) {
+				return builder.toString();
+			} else if(c == '\\') {
+				c = next();
+				switch(c) {
+				case 'n':
+					c = '\n';
+					break;
+				case 'r':
+					c = '\r';
+					break;
+				case 't':
+					c = '\t';
+					break;
+				case 'b':
+					c = '\b';
+					break;
+				case 'f':
+					c = '\f';
+					break;
+				case 'u':
+					int value = 0;
+					for(int i = 0; i < 4; i++) {
+						int digit = Character.digit(next(), 16);
+						if(digit < 0) {
+							throw error("Invalid unicode escape");
+						}
+
+						value = (value << 4) | digit;
+					}
+
+					c = value;
+					break;
+				case '"':
+				case '\'':
+				case '\\':
+					break;
+				default:
+					throw error("Invalid escape");
+				}
+			}
+
+			checkStringLength(builder.length() + 1);
+			builder.append((char) c);
+		}
+	}
+
+	/**
+	 * Reads an unquoted word.
+	 * @return The word.
+	 * @throws IOException if an I/O error occurs, or there is no word.
+	 */
+	private String readUnquoted() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		while(isUnquotedChar(peek())) {
+			checkStringLength(builder.length() + 1);
+			builder.append((char) next());
+		}
+
+		if(builder.length() == 0) {
+			int c = peek();
+			throw error(c == -1 ? "Unexpected end of input" : "Unexpected character '" + (char) c + "'");
+		}
+
+		return builder.toString();
+	}
+
+	private void expect(char expected) throws IOException {
+		int c = peek();
+		if(c != expected) {
+			throw error("Expected '" + expected + "' but found " + (c == -1 ? "the end of input" : "'" + (char) c + "'"));
+		}
+
+		next();
+	}
+
+	private void skipWhitespace() throws IOException {
+		while(Character.isWhitespace(peek())) {
+			next();
+		}
+	}
+
+	/**
+	 * Gets the next character without consuming it.
+	 * @return The character, or -1 at the end of the input.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private int peek() throws IOException {
+		if(this.pos == this.limit && !fill()) {
+			return -1;
+		}
+
+		return this.buffer[this.pos];
+	}
+
+	/**
+	 * Consumes the next character.
+	 * @return The character, or -1 at the end of the input.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private int next() throws IOException {
+		int c = peek();
+		if(c != -1) {
+			this.pos++;
+			if(c == '\n') {
+				this.line++;
+				this.column = 1;
+			} else {
+				this.column++;
+			}
+		}
+
+		return c;
+	}
+
+	/**
+	 * Refills the buffer.
+	 * @return Whether any characters were read.
+	 * @throws IOException if an I/O error occurs, or the input exceeds the
+	 * limits.
+	 */
+	private boolean fill() throws IOException {
+		this.consumed += this.limit;
+		this.pos = 0;
+		this.limit = 0;
+		int read = this.in.read(this.buffer);
+		if(read <= 0) {
+			return false;
+		}
+
+		this.limit = read;
+		if(this.consumed + read > this.limits.getMaxBytes()) {
+			throw limit("Input exceeds the limit of " + this.limits.getMaxBytes() + " characters");
+		}
+
+		return true;
+	}
+
+	private void checkDepth(int depth) throws NBTLimitException {
+		if(depth > this.limits.getMaxDepth()) {
+			throw limit("Nesting depth exceeds the limit of " + this.limits.getMaxDepth());
+		}
+	}
+
+	private void checkArrayLength(int length) throws NBTLimitException {
+		if(length > this.limits.getMaxArrayLength()) {
+			throw limit("Array length exceeds the limit of " + this.limits.getMaxArrayLength());
+		}
+	}
+
+	private void checkStringLength(int length) throws NBTLimitException {
+		if(length > this.limits.getMaxStringLength()) {
+			throw limit("String length exceeds the limit of " + this.limits.getMaxStringLength());
+		}
+	}
+
+	/**
+	 * Creates an exception for invalid SNBT at the current position.
+	 * @param message The message, without a trailing period.
+	 * @return The exception.
+	 */
+	private InvalidNBTException error(String message) {
+		return new InvalidNBTException(message + " at line " + this.line + ", column " + this.column + ".");
+	}
+
+	/**
+	 * Creates an exception for a limit exceeded at the current position.
+	 * @param message The message, without a trailing period.
+	 * @return The exception.
+	 */
+	private NBTLimitException limit(String message) {
+		return new NBTLimitException(message + " at line " + this.line + ", column " + this.column, -1);
+	}
+
+}
@@ -0,0 +1,682 @@
+package ch.spacebase.opennbt.snbt;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import ch.spacebase.opennbt.exception.InvalidNBTException;
+import ch.spacebase.opennbt.object.ObjectCodecs;
+import ch.spacebase.opennbt.tag.ByteArrayTag;
+import ch.spacebase.opennbt.tag.ByteTag;
+import ch.spacebase.opennbt.tag.CompoundTag;
+import ch.spacebase.opennbt.tag.DoubleTag;
+import ch.spacebase.opennbt.tag.EndTag;
+import ch.spacebase.opennbt.tag.FloatTag;
+import ch.spacebase.opennbt.tag.IntArrayTag;
+import ch.spacebase.opennbt.tag.IntTag;
+import ch.spacebase.opennbt.tag.ListTag;
+import ch.spacebase.opennbt.tag.LongTag;
+import ch.spacebase.opennbt.tag.ShortTag;
+import ch.spacebase.opennbt.tag.StringTag;
+import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagVisitor;
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
+
+/**
+ * <p>Writes tags as <strong>SNBT</strong>, the text form of NBT, straight
+ * into an <code>Appendable</code>. The time taken is linear in the size of
+ * the output, unlike <code>Tag.toString</code>, which copies the text of
+ * every child once for each level it is nested in.</p>
+ * 
+ * <p>Values are written the way the game writes them: <code>1b</code>,
+ * <code>2s</code>, <code>3</code>, <code>4L</code>, <code>5.0f</code>,
+ * <code>6.0d</code>, <code>"text"</code>, <code>[a, b]</code>,
+ * <code>{key: value}</code>, <code>[B; 1b]</code>, <code>[I; 1]</code> and
+ * <code>[L; 1L]</code>. The types the game does not have use their own
+ * array prefixes: <code>[S; 1s]</code> for short arrays,
+ * <code>[F; 1.0f]</code> for float arrays, <code>[D; 1.0d]</code> for double
+ * arrays and <code>[T; "a"]</code> for string arrays. Objects are written
+ * as the hex of their <code>ObjectCodecs</code> encoding, as
+ * <code>[O; "..."]</code> for an object and <code>[OA; "...", "..."]</code>
+ * for an object array. The name of the outermost tag is not written.</p>
+ * 
+ * <p>Output cut short by <code>setMaxArrayLength</code> or
+ * <code>setMaxLength</code> is meant for reading and cannot be parsed
+ * again.</p>
+ */
+public final class SNBTWriter {
+
+	/**
+	 * Hex digits, for object values.
+	 */
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * The output.
+	 */
+	private final Appendable out;
+
+	/**
+	 * The string to indent each level with, or null to write everything on
+	 * one line.
+	 */
+	private String indent = null;
+
+	/**
+	 * The number of elements of an array to write before the rest are cut.
+	 */
+	private int maxArrayLength = Integer.MAX_VALUE;
+
+	/**
+	 * The number of characters to write before the output is cut.
+	 */
+	private long maxLength = Long.MAX_VALUE;
+
+	/**
+	 * The number of characters written.
+	 */
+	private long length = 0;
+
+	/**
+	 * Whether the output has been cut at the maximum length.
+	 */
+	private boolean truncated = false;
+
+	/**
+	 * The visitor which writes each tag.
+	 */
+	private final Printer printer = new Printer();
+
+	/**
+	 * Creates a new <code>SNBTWriter</code>.
+	 * @param out The output.
+	 */
+	public SNBTWriter(Appendable out) {
+		this.out = out;
+	}
+
+	/**
+	 * Sets the string to indent each level with. Null or an empty string
+	 * writes everything on one line, which is the default.
+	 * @param indent The indent.
+	 * @return This writer.
+	 */
+	public SNBTWriter setIndent(String indent) {
+		this.indent = indent == null || indent.length() == 0 ? null : indent;
+		return this;
+	}
+
+	/**
+	 * Sets the number of elements of an array to write. Arrays with more are
+	 * cut, ending with a count of the elements left out.
+	 * @param maxArrayLength The number of elements.
+	 * @return This writer.
+	 * @throws IllegalArgumentException if the number is negative.
+	 */
+	public SNBTWriter setMaxArrayLength(int maxArrayLength) {
+		if(maxArrayLength < 0) {
+			throw new IllegalArgumentException("Max array length cannot be negative.");
+		}
+
+		this.maxArrayLength = maxArrayLength;
+		return this;
+	}
+
+	/**
+	 * Sets the number of characters to write. Once it is reached, the output
+	 * ends with <code>...</code> and nothing more is written.
+	 * @param maxLength The number of characters.
+	 * @return This writer.
+	 * @throws IllegalArgumentException if the number is negative.
+	 */
+	public SNBTWriter setMaxLength(long maxLength) {
+		if(maxLength < 0) {
+			throw new IllegalArgumentException("Max length cannot be negative.");
+		}
+
+		this.maxLength = maxLength;
+		return this;
+	}
+
+	/**
+	 * Gets the number of characters written so far.
+	 * @return The number of characters.
+	 */
+	public long getLength() {
+		return this.length;
+	}
+
+	/**
+	 * Gets whether the output has been cut at the maximum length.
+	 * @return Whether the output has been cut.
+	 */
+	public boolean isTruncated() {
+		return this.truncated;
+	}
+
+	/**
+	 * Writes a tag.
+	 * @param tag The tag.
+	 * @throws IOException if the output fails, or the tag cannot be written
+	 * as SNBT.
+	 */
+	public void write(Tag tag) throws IOException {
+		tag.accept(this.printer);
+	}
+
+	/**
+	 * Writes a tag as SNBT on a single line.
+	 * @param tag The tag.
+	 * @return The SNBT.
+	 * @throws IOException if the tag cannot be written as SNBT.
+	 */
+	public static String toString(Tag tag) throws IOException {
+		return toString(tag, null);
+	}
+
+	/**
+	 * Writes a tag as SNBT.
+	 * @param tag The tag.
+	 * @param indent The string to indent each level with, or null to write
+	 * everything on one line.
+	 * @return The SNBT.
+	 * @throws IOException if the tag cannot be written as SNBT.
+	 */
+	public static String toString(Tag tag, String indent) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		new SNBTWriter(builder).setIndent(indent).write(tag);
+		return builder.toString();
+	}
+
+	private void append(char c) throws IOException {
+		if(this.truncated) {
+			return;
+		}
+
+		if(this.length >= this.maxLength) {
+			this.out.append("...");
+			this.truncated = true;
+			return;
+		}
+
+		this.out.append(c);
+		this.length++;
+	}
+
+	private void append(String s) throws IOException {
+		if(this.truncated) {
+			return;
+		}
+
+		if(this.length + s.length() > this.maxLength) {
+			this.out.append(s, 0, (int) (this.maxLength - this.length)).append("...");
+			this.length = this.maxLength;
+			this.truncated = true;
+			return;
+		}
+
+		this.out.append(s);
+		this.length += s.length();
+	}
+
+	/**
+	 * Starts a new line at the given depth, if indenting.
+	 * @param depth The depth.
+	 * @throws IOException if the output fails.
+	 */
+	private void newLine(int depth) throws IOException {
+		if(this.indent != null) {
+			append('\n');
+			for(int i = 0; i < depth; i++) {
+				append(this.indent);
+			}
+		}
+	}
+
+	/**
+	 * Writes a separator between two elements on the same line.
+	 * @throws IOException if the output fails.
+	 */
+	private void separator() throws IOException {
+		append(this.indent != null ? ", " : ",");
+	}
+
+	/**
+	 * Writes a compound key, quoting it only if it needs to be.
+	 * @param key The key.
+	 * @throws IOException if the output fails.
+	 */
+	private void key(String key) throws IOException {
+		boolean plain = key.length() > 0;
+		for(int i = 0; i < key.length() && plain; i++) {
+			plain = SNBTReader.isUnquotedChar(key.charAt(i));
+		}
+
+		if(plain) {
+			append(key);
+		} else {
+			quote(key);
+		}
+	}
+
+	/**
+	 * Writes a quoted string.
+	 * @param s The string.
+	 * @throws IOException if the output fails.
+	 */
+	private void quote(String s) throws IOException {
+		append('"');
+		int start = 0;
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			String escape;
+			switch(c) {
+			case '"':
+				escape = "\\\"";
+				break;
+			case '\\':
+				escape = "\\\\";
+				break;
+			case '\n':
+				escape = "\\n";
+				break;
+			case '\r':
+				escape = "\\r";
+				break;
+			case '\t':
+				escape = "\\t";
+				break;
+			default:
+				if(c >= 0x20) {
+					continue;
+				}
+
+				escape = "\\u00" + HEX[c >> 4] + HEX[c & 0xF];
+			}
+
+			append(s.substring(start, i));
+			append(escape);
+			start = i + 1;
+		}
+
+		append(start == 0 ? s : s.substring(start));
+		append('"');
+	}
+
+	/**
+	 * Writes the start of an array.
+	 * @param prefix The type prefix.
+	 * @param length The length of the array.
+	 * @return The number of elements to write.
+	 * @throws IOException if the output fails.
+	 */
+	private int startArray(String prefix, int length) throws IOException {
+		append('[');
+		append(prefix);
+		append(';');
+		if(length > 0 && this.indent != null) {
+			append(' ');
+		}
+
+		return Math.min(length, this.maxArrayLength);
+	}
+
+	/**
+	 * Writes the end of an array.
+	 * @param written The number of elements written.
+	 * @param length The length of the array.
+	 * @throws IOException if the output fails.
+	 */
+	private void endArray(int written, int length) throws IOException {
+		if(written < length) {
+			if(written > 0) {
+				separator();
+			}
+
+			append("... " + (length - written) + " more");
+		}
+
+		append(']');
+	}
+
+	/**
+	 * Writes an object as the hex of its codec encoding.
+	 * @param value The object.
+	 * @throws IOException if the output fails.
+	 */
+	private void object(Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectCodecs.writeObject(bytes, value);
+
+		byte[] data = bytes.toByteArray();
+		char[] hex = new char[data.length * 2];
+		for(int i = 0; i < data.length; i++) {
+			hex[i * 2] = HEX[(data[i] >> 4) & 0xF];
+			hex[i * 2 + 1] = HEX[data[i] & 0xF];
+		}
+
+		append('"');
+		append(new String(hex));
+		append('"');
+	}
+
+	/**
+	 * Writes each tag it visits.
+	 */
+	private class Printer implements TagVisitor<Void, IOException> {
+
+		/**
+		 * The depth of the tag being written.
+		 */
+		private int depth = 0;
+
+		@Override
+		public Void visitEnd(EndTag tag) throws IOException {
+			throw new InvalidNBTException("TAG_End cannot be written as SNBT.");
+		}
+
+		@Override
+		public Void visitByte(ByteTag tag) throws IOException {
+			append(Byte.toString(tag.getValue()));
+			append('b');
+			return null;
+		}
+
+		@Override
+		public Void visitShort(ShortTag tag) throws IOException {
+			append(Short.toString(tag.getValue()));
+			append('s');
+			return null;
+		}
+
+		@Override
+		public Void visitInt(IntTag tag) throws IOException {
+			append(Integer.toString(tag.getValue()));
+			return null;
+		}
+
+		@Override
+		public Void visitLong(LongTag tag) throws IOException {
+			append(Long.toString(tag.getValue()));
+			append('L');
+			return null;
+		}
+
+		@Override
+		public Void visitFloat(FloatTag tag) throws IOException {
+			append(Float.toString(tag.getValue()));
+			append('f');
+			return null;
+		}
+
+		@Override
+		public Void visitDouble(DoubleTag tag) throws IOException {
+			append(Double.toString(tag.getValue()));
+			append('d');
+			return null;
+		}
+
+		@Override
+		public Void visitByteArray(ByteArrayTag tag) throws IOException {
+			byte[] value = tag.getValue();
+			int count = startArray("B", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				append(Byte.toString(value[i]));
+				append('b');
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitString(StringTag tag) throws IOException {
+			quote(tag.getValue());
+			return null;
+		}
+
+		@Override
+		public Void visitList(ListTag<?> tag) throws IOException {
+			List<? extends Tag> value = tag.getValue();
+			// Lists of containers get a line per element, while lists of
+			// plain values stay on one line, like arrays.
+			boolean lines = CompoundTag.class.isAssignableFrom(tag.getType()) || ListTag.class.isAssignableFrom(tag.getType());
+			append('[');
+			this.depth++;
+			for(int i = 0; i < value.size() && !truncated; i++) {
+				if(lines) {
+					if(i > 0) {
+						append(',');
+					}
+
+					newLine(this.depth);
+				} else if(i > 0) {
+					separator();
+				}
+
+				value.get(i).accept(this);
+			}
+
+			this.depth--;
+			if(lines && !value.isEmpty()) {
+				newLine(this.depth);
+			}
+
+			append(']');
+			return null;
+		}
+
+		@Override
+		public Void visitCompound(CompoundTag tag) throws IOException {
+			Map<String, Tag> value = tag.getValue();
+			append('{');
+			this.depth++;
+			boolean first = true;
+			for(Map.Entry<String, Tag> entry : value.entrySet()) {
+				if(truncated) {
+					break;
+				}
+
+				if(!first) {
+					append(',');
+				}
+
+				newLine(this.depth);
+				key(entry.getKey());
+				append(indent != null ? ": " : ":");
+				entry.getValue().accept(this);
+				first = false;
+			}
+
+			this.depth--;
+			if(!value.isEmpty()) {
+				newLine(this.depth);
+			}
+
+			append('}');
+			return null;
+		}
+
+		@Override
+		public Void visitIntArray(IntArrayTag tag) throws IOException {
+			int[] value = tag.getValue();
+			int count = startArray("I", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				append(Integer.toString(value[i]));
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitDoubleArray(DoubleArrayTag tag) throws IOException {
+			double[] value = tag.getValue();
+			int count = startArray("D", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				append(Double.toString(value[i]));
+				append('d');
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitFloatArray(FloatArrayTag tag) throws IOException {
+			float[] value = tag.getValue();
+			int count = startArray("F", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				append(Float.toString(value[i]));
+				append('f');
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitLongArray(LongArrayTag tag) throws IOException {
+			long[] value = tag.getValue();
+			int count = startArray("L", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				append(Long.toString(value[i]));
+				append('L');
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitObjectArray(ObjectArrayTag tag) throws IOException {
+			Object[] value = tag.getValue();
+			int count = startArray("OA", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				object(value[i]);
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitObject(ObjectTag tag) throws IOException {
+			startArray("O", 1);
+			object(tag.getValue());
+			append(']');
+			return null;
+		}
+
+		@Override
+		public Void visitShortArray(ShortArrayTag tag) throws IOException {
+			short[] value = tag.getValue();
+			int count = startArray("S", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				append(Short.toString(value[i]));
+				append('s');
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitStringArray(StringArrayTag tag) throws IOException {
+			String[] value = tag.getValue();
+			int count = startArray("T", value.length);
+			for(int i = 0; i < count && !truncated; i++) {
+				if(i > 0) {
+					separator();
+				}
+
+				quote(value[i]);
+			}
+
+			endArray(count, value.length);
+			return null;
+		}
+
+		@Override
+		public Void visitUnknown(UnknownTag tag) throws IOException {
+			throw new InvalidNBTException("Unknown tags cannot be written as SNBT.");
+		}
+
+		@Override
+		public Void visitOther(Tag tag) throws IOException {
+			throw new InvalidNBTException("Tags of type " + tag.getClass().getName() + " cannot be written as SNBT.");
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import ch.spacebase.opennbt.exception.NBTLimitException;
+
+/**
+ * A stream which counts the bytes read through it and fails once more
+ * than a limit would be needed. A limit of <code>Long.MAX_VALUE</code> only
+ * counts.
+ */
+class CountingInputStream extends FilterInputStream {
+
+	/**
+	 * The maximum number of bytes which may be read.
+	 */
+	private final long limit;
+
+	/**
+	 * The number of bytes read so far.
+	 */
+	private long position = 0;
+
+	/**
+	 * Creates a new <code>CountingInputStream</code>.
+	 * @param in The stream to read from.
+	 * @param limit The maximum number of bytes which may be read.
+	 */
+	public CountingInputStream(InputStream in, long limit) {
+		super(in);
+		this.limit = limit;
+	}
+
+	/**
+	 * Gets the number of bytes read so far.
+	 * @return The number of bytes.
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * Gets the maximum number of bytes which may be read.
+	 * @return The limit.
+	 */
+	public long getLimit() {
+		return this.limit;
+	}
+
+	/**
+	 * Gets the number of bytes which may still be read.
+	 * @return The number of bytes.
+	 */
+	public long remaining() {
+		return this.limit - this.position;
+	}
+
+	/**
+	 * Fails if the underlying stream has more data, or returns -1 if it
+	 * has reached its end exactly at the limit.
+	 * @return -1.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws NBTLimitException if there is more data.
+	 */
+	private int atLimit() throws IOException {
+		if(super.read() == -1) {
+			return -1;
+		}
+
+		throw new NBTLimitException("NBT data exceeds the limit of " + this.limit + " bytes", this.position);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(this.position >= this.limit) {
+			return atLimit();
+		}
+
+		int b = super.read();
+		if(b != -1) {
+			this.position++;
+		}
+
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+
+		if(this.position >= this.limit) {
+			return atLimit();
+		}
+
+		int read = super.read(b, off, (int) Math.min(len, remaining()));
+		if(read > 0) {
+			this.position += read;
+		}
+
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(Math.min(n, remaining()));
+		if(skipped > 0) {
+			this.position += skipped;
+		}
+
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+}
+
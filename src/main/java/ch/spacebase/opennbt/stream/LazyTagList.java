@@ -0,0 +1,214 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * The value of a lazily read <code>TAG_List</code>. Elements are read the
+ * first time they are accessed. Elements of a fixed size are located by
+ * arithmetic, and the offsets of other elements are indexed on the first
+ * access. Modifying the list reads every element. Reading an element
+ * changes the state of the list, so access is synchronized to let several
+ * threads read the list at once, as they can with a list which was read
+ * eagerly. Malformed elements are reported by an
+ * <code>IllegalStateException</code> when they are read.
+ */
+class LazyTagList extends AbstractList<Tag> implements RandomAccess {
+
+	/**
+	 * The payload of the list, after its type and length.
+	 */
+	private ByteBuffer data;
+
+	/**
+	 * The type of the elements.
+	 */
+	private final int type;
+
+	/**
+	 * The number of elements.
+	 */
+	private final int length;
+
+	/**
+	 * The depth of the elements.
+	 */
+	private final int depth;
+
+	/**
+	 * The limits the elements are checked against.
+	 */
+	private final NBTReadLimits limits;
+
+	/**
+	 * The offsets of the elements, or null if they have not been indexed or
+	 * have a fixed size.
+	 */
+	private int[] offsets;
+
+	/**
+	 * The elements which have been read.
+	 */
+	private Tag[] elements;
+
+	/**
+	 * The elements once the list has been modified, or null if it has not.
+	 */
+	private List<Tag> list;
+
+	/**
+	 * Creates a new lazy list value.
+	 * @param data The elements of the list.
+	 * @param type The type of the elements.
+	 * @param length The number of elements.
+	 * @param depth The depth of the elements.
+	 * @param limits The limits the elements are checked against.
+	 */
+	LazyTagList(ByteBuffer data, int type, int length, int depth, NBTReadLimits limits) {
+		this.data = data;
+		this.type = type;
+		this.length = Math.max(length, 0);
+		this.depth = depth;
+		this.limits = limits;
+		this.elements = new Tag[this.length];
+	}
+
+	/**
+	 * Gets the offset of an element.
+	 * @param index The index of the element.
+	 * @return The offset of the element's payload.
+	 */
+	private int offset(int index) {
+		int size = NBTConstants.getPayloadSize(this.type);
+		if(size >= 0) {
+			return index * size;
+		}
+
+		if(this.offsets == null) {
+			this.offsets = new int[this.length];
+			NBTBufferReader reader = new NBTBufferReader(this.data, true, this.limits);
+			try {
+				for(int i = 0; i < this.length; i++) {
+					this.offsets[i] = reader.getPosition();
+					reader.skip(this.type, this.depth);
+				}
+			} catch(IOException e) {
+				throw new IllegalStateException("Malformed lazily read list.", e);
+			}
+		}
+
+		return this.offsets[index];
+	}
+
+	/**
+	 * Switches to a plain list holding every element, so that it can be
+	 * modified.
+	 * @return The plain list.
+	 */
+	private List<Tag> modifiable() {
+		if(this.list == null) {
+			List<Tag> list = new ArrayList<Tag>(this.length);
+			for(int i = 0; i < this.length; i++) {
+				list.add(get(i));
+			}
+
+			this.list = list;
+			this.data = null;
+			this.offsets = null;
+			this.elements = null;
+		}
+
+		return this.list;
+	}
+
+	@Override
+	public synchronized Tag get(int index) {
+		if(this.list != null) {
+			return this.list.get(index);
+		}
+
+		if(index < 0 || index >= this.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.length);
+		}
+
+		Tag tag = this.elements[index];
+		if(tag == null) {
+			ByteBuffer dup = this.data.duplicate();
+			dup.position(offset(index));
+			try {
+				tag = new NBTBufferReader(dup, true, this.limits).readPayload(this.type, "", this.depth);
+			} catch(IOException e) {
+				throw new IllegalStateException("Malformed lazily read list.", e);
+			}
+
+			this.elements[index] = tag;
+		}
+
+		return tag;
+	}
+
+	@Override
+	public synchronized int size() {
+		return this.list != null ? this.list.size() : this.length;
+	}
+
+	@Override
+	public synchronized Tag set(int index, Tag element) {
+		return modifiable().set(index, element);
+	}
+
+	@Override
+	public synchronized void add(int index, Tag element) {
+		modifiable().add(index, element);
+		this.modCount++;
+	}
+
+	@Override
+	public synchronized Tag remove(int index) {
+		Tag old = modifiable().remove(index);
+		this.modCount++;
+		return old;
+	}
+
+}
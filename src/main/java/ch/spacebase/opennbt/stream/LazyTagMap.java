@@ -0,0 +1,212 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * The value of a lazily read <code>TAG_Compound</code>. The raw payload is
+ * kept, an index of child offsets is built the first time a child is looked
+ * up, and each child is only read when it is first accessed. Operations
+ * which need every entry, such as iteration, read the remaining children.
+ * Reading a child changes the state of the map, so access is synchronized
+ * to let several threads read the compound at once, as they can with a
+ * compound which was read eagerly. Malformed children are reported by an
+ * <code>IllegalStateException</code> when they are read.
+ */
+class LazyTagMap extends AbstractMap<String, Tag> {
+
+	/**
+	 * The payload of the compound.
+	 */
+	private ByteBuffer data;
+
+	/**
+	 * The depth of the children of the compound.
+	 */
+	private final int depth;
+
+	/**
+	 * The limits the payload is checked against.
+	 */
+	private final NBTReadLimits limits;
+
+	/**
+	 * The offsets of the type bytes of children which have not been read
+	 * yet, or null if the index has not been built.
+	 */
+	private Map<String, Integer> offsets;
+
+	/**
+	 * The children which have been read.
+	 */
+	private final Map<String, Tag> loaded = new HashMap<String, Tag>();
+
+	/**
+	 * Creates a new lazy compound value.
+	 * @param data The payload of the compound, up to and including its
+	 * <code>TAG_End</code>.
+	 * @param depth The depth of the children of the compound.
+	 * @param limits The limits the payload is checked against.
+	 */
+	LazyTagMap(ByteBuffer data, int depth, NBTReadLimits limits) {
+		this.data = data;
+		this.depth = depth;
+		this.limits = limits;
+	}
+
+	/**
+	 * Builds the offset index if it has not been built yet.
+	 * @return The offset index.
+	 */
+	private Map<String, Integer> index() {
+		if(this.offsets == null) {
+			this.offsets = new HashMap<String, Integer>();
+			NBTBufferReader reader = new NBTBufferReader(this.data, true, this.limits);
+			ByteBuffer buf = reader.buffer();
+			try {
+				while(true) {
+					int offset = buf.position();
+					int type = buf.get() & 0xFF;
+					if(type == NBTConstants.TYPE_END) {
+						break;
+					}
+
+					String name = reader.readName();
+					reader.skip(type, this.depth);
+					this.offsets.put(name, offset);
+				}
+			} catch(IOException e) {
+				throw new IllegalStateException("Malformed lazily read compound.", e);
+			}
+		}
+
+		return this.offsets;
+	}
+
+	/**
+	 * Reads the child at the given offset.
+	 * @param offset The offset of the child's type byte.
+	 * @return The child.
+	 */
+	private Tag read(int offset) {
+		ByteBuffer dup = this.data.duplicate();
+		dup.position(offset);
+		NBTBufferReader reader = new NBTBufferReader(dup, true, this.limits);
+		try {
+			int type = reader.buffer().get() & 0xFF;
+			String name = reader.readName();
+			return reader.readPayload(type, name, this.depth);
+		} catch(IOException e) {
+			throw new IllegalStateException("Malformed lazily read compound.", e);
+		}
+	}
+
+	/**
+	 * Reads every child which has not been read yet and drops the payload.
+	 */
+	private void loadAll() {
+		Map<String, Integer> index = index();
+		if(!index.isEmpty()) {
+			for(Map.Entry<String, Integer> entry : index.entrySet()) {
+				this.loaded.put(entry.getKey(), read(entry.getValue()));
+			}
+
+			index.clear();
+		}
+
+		this.data = null;
+	}
+
+	@Override
+	public synchronized int size() {
+		return index().size() + this.loaded.size();
+	}
+
+	@Override
+	public synchronized boolean containsKey(Object key) {
+		return this.loaded.containsKey(key) || index().containsKey(key);
+	}
+
+	@Override
+	public synchronized Tag get(Object key) {
+		Tag tag = this.loaded.get(key);
+		if(tag == null) {
+			Integer offset = index().remove(key);
+			if(offset != null) {
+				tag = read(offset);
+				this.loaded.put((String) key, tag);
+			}
+		}
+
+		return tag;
+	}
+
+	@Override
+	public synchronized Tag put(String key, Tag value) {
+		Tag old = get(key);
+		this.loaded.put(key, value);
+		return old;
+	}
+
+	@Override
+	public synchronized Tag remove(Object key) {
+		Tag old = get(key);
+		this.loaded.remove(key);
+		return old;
+	}
+
+	@Override
+	public synchronized void clear() {
+		index().clear();
+		this.loaded.clear();
+		this.data = null;
+	}
+
+	@Override
+	public synchronized Set<Map.Entry<String, Tag>> entrySet() {
+		loadAll();
+		return this.loaded.entrySet();
+	}
+
+}
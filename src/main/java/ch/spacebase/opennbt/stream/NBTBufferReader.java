@@ -0,0 +1,673 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.NBTUtils;
+import ch.spacebase.opennbt.exception.NBTLimitException;
+import ch.spacebase.opennbt.object.ObjectCodecs;
+import ch.spacebase.opennbt.tag.ByteArrayTag;
+import ch.spacebase.opennbt.tag.ByteTag;
+import ch.spacebase.opennbt.tag.CompoundTag;
+import ch.spacebase.opennbt.tag.DoubleTag;
+import ch.spacebase.opennbt.tag.EndTag;
+import ch.spacebase.opennbt.tag.FloatTag;
+import ch.spacebase.opennbt.tag.IntArrayTag;
+import ch.spacebase.opennbt.tag.IntTag;
+import ch.spacebase.opennbt.tag.ListTag;
+import ch.spacebase.opennbt.tag.LongTag;
+import ch.spacebase.opennbt.tag.ShortTag;
+import ch.spacebase.opennbt.tag.StringTag;
+import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagType;
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
+
+/**
+ * <p>Reads uncompressed <strong>NBT</strong> data held in a
+ * <code>ByteBuffer</code> or byte array, producing the same object graph as
+ * <code>NBTInputStream</code>.</p>
+ * 
+ * <p>Primitive arrays are decoded in bulk through typed views of the buffer
+ * rather than one element at a time.</p>
+ * 
+ * <p>In lazy mode, compounds and lists keep a slice of the buffer and only
+ * create their children when they are accessed. The data must not be
+ * modified while lazily read tags are still in use, so a buffer mapped from
+ * a file which may be rewritten should be copied first. Lazily read tags
+ * may be accessed from several threads at once, and malformed data found
+ * when a tag is accessed is reported by an
+ * <code>IllegalStateException</code>.</p>
+ * 
+ * <p>The nesting depth and the lengths of arrays, lists and strings are
+ * checked against the <code>NBTReadLimits</code> of the reader, including
+ * when lazily read tags are accessed later. The total size is not checked,
+ * as the data is already in memory.</p>
+ */
+public final class NBTBufferReader {
+
+	private static final Logger logger = Logger.getLogger("NBTBufferReader");
+
+	/**
+	 * The buffer being read from.
+	 */
+	private final ByteBuffer buf;
+
+	/**
+	 * Whether compounds and lists are read lazily.
+	 */
+	private final boolean lazy;
+
+	/**
+	 * The limits the data is checked against.
+	 */
+	private final NBTReadLimits limits;
+
+	/**
+	 * Creates a new <code>NBTBufferReader</code> which reads the whole of the
+	 * given array.
+	 * @param data The uncompressed NBT data.
+	 */
+	public NBTBufferReader(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	/**
+	 * Creates a new <code>NBTBufferReader</code> which reads part of the
+	 * given array.
+	 * @param data The uncompressed NBT data.
+	 * @param offset The offset of the data in the array.
+	 * @param length The length of the data.
+	 */
+	public NBTBufferReader(byte[] data, int offset, int length) {
+		this(ByteBuffer.wrap(data, offset, length));
+	}
+
+	/**
+	 * Creates a new <code>NBTBufferReader</code> which reads the remaining
+	 * bytes of the given buffer. The position of the given buffer is not
+	 * changed.
+	 * @param buf The buffer holding the uncompressed NBT data.
+	 */
+	public NBTBufferReader(ByteBuffer buf) {
+		this(buf, false);
+	}
+
+	/**
+	 * Creates a new <code>NBTBufferReader</code> which reads the remaining
+	 * bytes of the given buffer. The position of the given buffer is not
+	 * changed.
+	 * @param buf The buffer holding the uncompressed NBT data.
+	 * @param lazy Whether to read compounds and lists lazily.
+	 */
+	public NBTBufferReader(ByteBuffer buf, boolean lazy) {
+		this(buf, lazy, NBTReadLimits.DEFAULT);
+	}
+
+	/**
+	 * Creates a new <code>NBTBufferReader</code> which reads the remaining
+	 * bytes of the given buffer, rejecting data which exceeds the given
+	 * limits. The position of the given buffer is not changed.
+	 * @param buf The buffer holding the uncompressed NBT data.
+	 * @param lazy Whether to read compounds and lists lazily.
+	 * @param limits The limits the data is checked against.
+	 */
+	public NBTBufferReader(ByteBuffer buf, boolean lazy, NBTReadLimits limits) {
+		this.buf = buf.slice().order(ByteOrder.BIG_ENDIAN);
+		this.lazy = lazy;
+		this.limits = limits;
+	}
+
+	/**
+	 * Gets whether this reader reads compounds and lists lazily.
+	 * @return Whether this reader is lazy.
+	 */
+	public boolean isLazy() {
+		return this.lazy;
+	}
+
+	/**
+	 * Gets the limits the data is checked against.
+	 * @return The limits.
+	 */
+	public NBTReadLimits getLimits() {
+		return this.limits;
+	}
+
+	/**
+	 * Gets whether there is any data left to read.
+	 * @return Whether there is data left.
+	 */
+	public boolean hasRemaining() {
+		return this.buf.hasRemaining();
+	}
+
+	/**
+	 * Gets the number of bytes read so far.
+	 * @return The position of the reader.
+	 */
+	public int getPosition() {
+		return this.buf.position();
+	}
+
+	/**
+	 * Reads an NBT tag from the buffer.
+	 * @return The tag that was read, or null if the end of the buffer has
+	 * been reached.
+	 * @throws IOException if the data is truncated or malformed.
+	 */
+	public Tag readTag() throws IOException {
+		if(!this.buf.hasRemaining()) {
+			return null;
+		}
+
+		try {
+			return readTag(0);
+		} catch(BufferUnderflowException e) {
+			throw new EOFException("Unexpected end of NBT data at byte " + this.buf.position() + ".");
+		}
+	}
+
+	/**
+	 * Reads the payload of a tag at the current position.
+	 * @param type The type.
+	 * @param name The name.
+	 * @param depth The depth.
+	 * @return The tag.
+	 * @throws IOException if the data is truncated or malformed.
+	 */
+	Tag readPayload(int type, String name, int depth) throws IOException {
+		try {
+			return readTagPayload(type, name, depth);
+		} catch(BufferUnderflowException e) {
+			throw new EOFException("Unexpected end of NBT data at byte " + this.buf.position() + ".");
+		}
+	}
+
+	/**
+	 * Skips over the payload of a tag at the current position without
+	 * creating any tags.
+	 * @param type The type.
+	 * @param depth The depth.
+	 * @throws IOException if the data is truncated or malformed.
+	 */
+	void skip(int type, int depth) throws IOException {
+		try {
+			skipPayload(type, depth);
+		} catch(BufferUnderflowException e) {
+			throw new EOFException("Unexpected end of NBT data at byte " + this.buf.position() + ".");
+		}
+	}
+
+	/**
+	 * Reads a tag name at the current position.
+	 * @return The name.
+	 * @throws IOException if the data is truncated.
+	 */
+	String readName() throws IOException {
+		try {
+			return TagNameTable.getShared().decode(this.buf, readStringLength());
+		} catch(BufferUnderflowException e) {
+			throw new EOFException("Unexpected end of NBT data at byte " + this.buf.position() + ".");
+		}
+	}
+
+	/**
+	 * Gets the buffer being read from.
+	 * @return The buffer.
+	 */
+	ByteBuffer buffer() {
+		return this.buf;
+	}
+
+	/**
+	 * Reads an NBT tag from the buffer.
+	 * @param depth The depth of this tag.
+	 * @return The tag that was read.
+	 * @throws IOException if the data is malformed.
+	 */
+	private Tag readTag(int depth) throws IOException {
+		int type = this.buf.get() & 0xFF;
+
+		String name;
+		if(type != NBTConstants.TYPE_END) {
+			name = TagNameTable.getShared().decode(this.buf, readStringLength());
+		} else {
+			name = "";
+		}
+
+		return readTagPayload(type, name, depth);
+	}
+
+	/**
+	 * Reads the length of a string and checks it against the limits.
+	 * @return The length in bytes.
+	 * @throws NBTLimitException if the length exceeds the limits.
+	 */
+	private int readStringLength() throws NBTLimitException {
+		int length = this.buf.getShort() & 0xFFFF;
+		if(length > this.limits.getMaxStringLength()) {
+			throw new NBTLimitException("String length " + length + " exceeds the limit of " + this.limits.getMaxStringLength(), this.buf.position());
+		}
+
+		return length;
+	}
+
+	/**
+	 * Reads a length prefixed string.
+	 * @return The string.
+	 * @throws NBTLimitException if the length exceeds the limits.
+	 */
+	private String readString() throws NBTLimitException {
+		int length = readStringLength();
+		String str;
+		if(this.buf.hasArray()) {
+			if(length > this.buf.remaining()) {
+				throw new BufferUnderflowException();
+			}
+
+			str = new String(this.buf.array(), this.buf.arrayOffset() + this.buf.position(), length, NBTConstants.CHARSET);
+			this.buf.position(this.buf.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			this.buf.get(bytes);
+			str = new String(bytes, NBTConstants.CHARSET);
+		}
+
+		return str;
+	}
+
+	/**
+	 * Checks that an array of the given length and element size fits in the
+	 * remaining data and the limits, so that a corrupt length does not cause
+	 * a huge allocation.
+	 * @param length The number of elements.
+	 * @param size The size of an element in bytes.
+	 * @return The length.
+	 * @throws NBTLimitException if the length exceeds the limits.
+	 */
+	private int checkArrayLength(int length, int size) throws NBTLimitException {
+		if(length > this.limits.getMaxArrayLength()) {
+			throw new NBTLimitException("Array length " + length + " exceeds the limit of " + this.limits.getMaxArrayLength(), this.buf.position());
+		}
+
+		if(length < 0 || (long) length * size > this.buf.remaining()) {
+			throw new BufferUnderflowException();
+		}
+
+		return length;
+	}
+
+	/**
+	 * Checks the length of a list against the limits.
+	 * @param length The number of elements.
+	 * @return The length.
+	 * @throws NBTLimitException if the length exceeds the limits.
+	 */
+	private int checkListLength(int length) throws NBTLimitException {
+		if(length > this.limits.getMaxArrayLength()) {
+			throw new NBTLimitException("List length " + length + " exceeds the limit of " + this.limits.getMaxArrayLength(), this.buf.position());
+		}
+
+		return length;
+	}
+
+	/**
+	 * Checks that a compound or list at the given depth does not nest deeper
+	 * than the limits allow.
+	 * @param depth The depth of the compound or list.
+	 * @throws NBTLimitException if the depth exceeds the limit.
+	 */
+	private void checkDepth(int depth) throws NBTLimitException {
+		if(depth > this.limits.getMaxDepth()) {
+			throw new NBTLimitException("Nesting depth exceeds the limit of " + this.limits.getMaxDepth(), this.buf.position());
+		}
+	}
+
+	/**
+	 * Reads the payload of a tag, given the name and type.
+	 * @param type The type.
+	 * @param name The name.
+	 * @param depth The depth.
+	 * @return The tag.
+	 * @throws IOException if the data is malformed.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Tag readTagPayload(int type, String name, int depth) throws IOException {
+		switch(type) {
+		case NBTConstants.TYPE_END:
+			if(depth == 0) {
+				throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
+			} else {
+				return new EndTag();
+			}
+		case NBTConstants.TYPE_BYTE:
+			return new ByteTag(name, this.buf.get());
+		case NBTConstants.TYPE_SHORT:
+			return new ShortTag(name, this.buf.getShort());
+		case NBTConstants.TYPE_INT:
+			return new IntTag(name, this.buf.getInt());
+		case NBTConstants.TYPE_LONG:
+			return new LongTag(name, this.buf.getLong());
+		case NBTConstants.TYPE_FLOAT:
+			return new FloatTag(name, this.buf.getFloat());
+		case NBTConstants.TYPE_DOUBLE:
+			return new DoubleTag(name, this.buf.getDouble());
+		case NBTConstants.TYPE_BYTE_ARRAY:
+			byte[] bytes = new byte[checkArrayLength(this.buf.getInt(), 1)];
+			this.buf.get(bytes);
+			return new ByteArrayTag(name, bytes);
+		case NBTConstants.TYPE_STRING:
+			return new StringTag(name, readString());
+		case NBTConstants.TYPE_LIST:
+			checkDepth(depth + 1);
+			int childType = this.buf.get() & 0xFF;
+			int length = checkListLength(this.buf.getInt());
+
+			Class<? extends Tag> oclass = NBTUtils.getTypeClass(childType);
+			if(this.lazy) {
+				int start = this.buf.position();
+				skipList(childType, length, depth + 1);
+				return new ListTag(name, oclass, new LazyTagList(slice(start), childType, length, depth + 1, this.limits));
+			}
+
+			List<Tag> tagList = new ArrayList<Tag>(Math.min(Math.max(length, 0), this.buf.remaining()));
+			for(int i = 0; i < length; i++) {
+				Tag tag = readTagPayload(childType, "", depth + 1);
+
+				if(tag instanceof EndTag) {
+					throw new IOException("TAG_End not permitted in a list.");
+				} else if(!oclass.isInstance(tag)) {
+					throw new IOException("Mixed types within a list.");
+				}
+
+				tagList.add(tag);
+			}
+
+			return new ListTag(name, oclass, tagList);
+		case NBTConstants.TYPE_COMPOUND:
+			checkDepth(depth + 1);
+			if(this.lazy) {
+				int start = this.buf.position();
+				skipCompound(depth + 1);
+				return new CompoundTag(name, new LazyTagMap(slice(start), depth + 1, this.limits));
+			}
+
+			Map<String, Tag> tagMap = new HashMap<String, Tag>();
+			while(true) {
+				Tag tag = readTag(depth + 1);
+				if(tag instanceof EndTag) {
+					break;
+				} else {
+					tagMap.put(tag.getName(), tag);
+				}
+			}
+
+			return new CompoundTag(name, tagMap);
+		case NBTConstants.TYPE_INT_ARRAY:
+			int[] ints = new int[checkArrayLength(this.buf.getInt(), 4)];
+			this.buf.asIntBuffer().get(ints);
+			this.buf.position(this.buf.position() + ints.length * 4);
+			return new IntArrayTag(name, ints);
+		case NBTConstants.TYPE_DOUBLE_ARRAY:
+			double[] doubles = new double[checkArrayLength(this.buf.getInt(), 8)];
+			this.buf.asDoubleBuffer().get(doubles);
+			this.buf.position(this.buf.position() + doubles.length * 8);
+			return new DoubleArrayTag(name, doubles);
+		case NBTConstants.TYPE_FLOAT_ARRAY:
+			float[] floats = new float[checkArrayLength(this.buf.getInt(), 4)];
+			this.buf.asFloatBuffer().get(floats);
+			this.buf.position(this.buf.position() + floats.length * 4);
+			return new FloatArrayTag(name, floats);
+		case NBTConstants.TYPE_LONG_ARRAY:
+			long[] longs = new long[checkArrayLength(this.buf.getInt(), 8)];
+			this.buf.asLongBuffer().get(longs);
+			this.buf.position(this.buf.position() + longs.length * 8);
+			return new LongArrayTag(name, longs);
+		case NBTConstants.TYPE_SHORT_ARRAY:
+			short[] shorts = new short[checkArrayLength(this.buf.getInt(), 2)];
+			this.buf.asShortBuffer().get(shorts);
+			this.buf.position(this.buf.position() + shorts.length * 2);
+			return new ShortArrayTag(name, shorts);
+		case NBTConstants.TYPE_OBJECT_ARRAY:
+			length = checkArrayLength(this.buf.getInt(), 2);
+			return new ObjectArrayTag(name, ObjectCodecs.readObjectArray(new BufferInputStream(), length));
+		case NBTConstants.TYPE_OBJECT:
+			Object o = ObjectCodecs.readObject(new BufferInputStream());
+
+			return new ObjectTag(name, o);
+		case NBTConstants.TYPE_STRING_ARRAY:
+			length = this.buf.getInt();
+			String[] strings = new String[checkArrayLength(length, 2)];
+			for(int i = 0; i < length; i++) {
+				strings[i] = readString();
+			}
+
+			return new StringArrayTag(name, strings);
+		default:
+			TagType custom = TagType.get(type);
+			if(custom != null && !custom.isBuiltin()) {
+				return custom.read(new DataInputStream(new BufferInputStream()), name);
+			}
+
+			logger.warning("Unknown tag found while reading.");
+			return new UnknownTag(name);
+		}
+	}
+
+	/**
+	 * Gets a slice of the buffer from the given position up to the current
+	 * position.
+	 * @param start The start of the slice.
+	 * @return The slice.
+	 */
+	private ByteBuffer slice(int start) {
+		ByteBuffer dup = this.buf.duplicate();
+		dup.position(start);
+		dup.limit(this.buf.position());
+		return dup.slice();
+	}
+
+	/**
+	 * Moves the position forward by the given number of bytes.
+	 * @param count The number of bytes to skip.
+	 */
+	private void skipBytes(long count) {
+		if(count < 0 || count > this.buf.remaining()) {
+			throw new BufferUnderflowException();
+		}
+
+		this.buf.position(this.buf.position() + (int) count);
+	}
+
+	/**
+	 * Skips over the payload of a tag.
+	 * @param type The type.
+	 * @param depth The depth.
+	 * @throws IOException if the data is malformed.
+	 */
+	private void skipPayload(int type, int depth) throws IOException {
+		int size = NBTConstants.getPayloadSize(type);
+		if(size >= 0) {
+			skipBytes(size);
+			return;
+		}
+
+		switch(type) {
+		case NBTConstants.TYPE_BYTE_ARRAY:
+			skipBytes(checkArrayLength(this.buf.getInt(), 1));
+			break;
+		case NBTConstants.TYPE_STRING:
+			skipBytes(readStringLength());
+			break;
+		case NBTConstants.TYPE_LIST:
+			checkDepth(depth + 1);
+			int childType = this.buf.get() & 0xFF;
+			skipList(childType, checkListLength(this.buf.getInt()), depth + 1);
+			break;
+		case NBTConstants.TYPE_COMPOUND:
+			checkDepth(depth + 1);
+			skipCompound(depth + 1);
+			break;
+		case NBTConstants.TYPE_INT_ARRAY:
+		case NBTConstants.TYPE_FLOAT_ARRAY:
+			skipBytes(checkArrayLength(this.buf.getInt(), 4) * 4L);
+			break;
+		case NBTConstants.TYPE_LONG_ARRAY:
+		case NBTConstants.TYPE_DOUBLE_ARRAY:
+			skipBytes(checkArrayLength(this.buf.getInt(), 8) * 8L);
+			break;
+		case NBTConstants.TYPE_SHORT_ARRAY:
+			skipBytes(checkArrayLength(this.buf.getInt(), 2) * 2L);
+			break;
+		case NBTConstants.TYPE_STRING_ARRAY:
+			int length = checkArrayLength(this.buf.getInt(), 2);
+			for(int i = 0; i < length; i++) {
+				skipBytes(readStringLength());
+			}
+
+			break;
+		case NBTConstants.TYPE_OBJECT:
+		case NBTConstants.TYPE_OBJECT_ARRAY:
+			// Serialized objects have no length prefix, so they have to be
+			// read to find where they end.
+			readTagPayload(type, "", 1);
+			break;
+		default:
+			TagType custom = TagType.get(type);
+			if(custom == null || custom.isBuiltin()) {
+				throw new IOException("Cannot skip over unknown tag type " + type + ".");
+			}
+
+			custom.read(new DataInputStream(new BufferInputStream()), "");
+		}
+	}
+
+	/**
+	 * Skips over the children of a compound.
+	 * @param depth The depth of the compound.
+	 * @throws IOException if the data is malformed.
+	 */
+	private void skipCompound(int depth) throws IOException {
+		while(true) {
+			int childTag = this.buf.get() & 0xFF;
+			if(childTag == NBTConstants.TYPE_END) {
+				break;
+			}
+
+			skipBytes(readStringLength());
+			skipPayload(childTag, depth);
+		}
+	}
+
+	/**
+	 * Skips over the elements of a list.
+	 * @param childType The type of the elements.
+	 * @param length The number of elements.
+	 * @param depth The depth of the list.
+	 * @throws IOException if the data is malformed.
+	 */
+	private void skipList(int childType, int length, int depth) throws IOException {
+		if(length <= 0) {
+			return;
+		}
+
+		if(childType == NBTConstants.TYPE_END) {
+			throw new IOException("TAG_End not permitted in a list.");
+		}
+
+		int size = NBTConstants.getPayloadSize(childType);
+		if(size >= 0) {
+			skipBytes((long) length * size);
+		} else {
+			for(int i = 0; i < length; i++) {
+				skipPayload(childType, depth);
+			}
+		}
+	}
+
+	/**
+	 * An input stream over the remaining bytes of the buffer, used to read
+	 * serialized objects.
+	 */
+	private class BufferInputStream extends InputStream {
+
+		@Override
+		public int read() {
+			return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(len == 0) {
+				return 0;
+			}
+
+			if(!buf.hasRemaining()) {
+				return -1;
+			}
+
+			len = Math.min(len, buf.remaining());
+			buf.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buf.remaining();
+		}
+
+	}
+
+}
@@ -0,0 +1,485 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.exception.NBTLimitException;
+import ch.spacebase.opennbt.object.ObjectCodecs;
+import ch.spacebase.opennbt.tag.TagType;
+
+/**
+ * A <code>DataInputStream</code> which also reads the strings and primitive
+ * arrays of the NBT format. Arrays are decoded in bulk through a reusable
+ * scratch buffer rather than one element at a time. Lengths, nesting and
+ * the total size are checked against the <code>NBTReadLimits</code> of the
+ * stream.
+ */
+class NBTDataInputStream extends DataInputStream {
+
+	/**
+	 * Scratch space which primitive arrays are decoded through.
+	 */
+	private final byte[] scratch = new byte[8192];
+
+	/**
+	 * A big endian buffer wrapping the scratch space.
+	 */
+	private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+
+	/**
+	 * The limits the data is checked against.
+	 */
+	private final NBTReadLimits limits;
+
+	/**
+	 * The stream counting the bytes read, or null if they are not counted.
+	 */
+	private final CountingInputStream counter;
+
+	/**
+	 * Creates a new <code>NBTDataInputStream</code> with the default limits.
+	 * @param in The stream to read from.
+	 */
+	public NBTDataInputStream(InputStream in) {
+		this(in, NBTReadLimits.DEFAULT);
+	}
+
+	/**
+	 * Creates a new <code>NBTDataInputStream</code>.
+	 * @param in The stream to read from.
+	 * @param limits The limits the data is checked against.
+	 */
+	public NBTDataInputStream(InputStream in, NBTReadLimits limits) {
+		this(in, limits, false);
+	}
+
+	/**
+	 * Creates a new <code>NBTDataInputStream</code>.
+	 * @param in The stream to read from.
+	 * @param limits The limits the data is checked against.
+	 * @param count Whether to count the bytes read even if the total is not
+	 * limited.
+	 */
+	public NBTDataInputStream(InputStream in, NBTReadLimits limits, boolean count) {
+		super(count || limits.getMaxBytes() != Long.MAX_VALUE ? new CountingInputStream(in, limits.getMaxBytes()) : in);
+		this.limits = limits;
+		this.counter = this.in instanceof CountingInputStream ? (CountingInputStream) this.in : null;
+	}
+
+	/**
+	 * Gets the limits the data is checked against.
+	 * @return The limits.
+	 */
+	public NBTReadLimits getLimits() {
+		return this.limits;
+	}
+
+	/**
+	 * Gets the number of bytes read so far.
+	 * @return The position, or -1 if the bytes are not counted.
+	 */
+	public long getPosition() {
+		return this.counter != null ? this.counter.getPosition() : -1;
+	}
+
+	/**
+	 * Checks that compounds and lists may be nested to the given depth.
+	 * @param depth The depth.
+	 * @throws NBTLimitException if the depth exceeds the limit.
+	 */
+	public void checkDepth(int depth) throws NBTLimitException {
+		if(depth > this.limits.getMaxDepth()) {
+			throw new NBTLimitException("Nesting depth exceeds the limit of " + this.limits.getMaxDepth(), getPosition());
+		}
+	}
+
+	/**
+	 * Reads the length of an array and checks it against the limits before
+	 * anything is allocated for it.
+	 * @param size The size of an element in bytes, or the minimum size if
+	 * elements vary in size.
+	 * @return The length.
+	 * @throws IOException if an I/O error occurs or the length is negative.
+	 * @throws NBTLimitException if the length exceeds the limits.
+	 */
+	public int readArrayLength(int size) throws IOException {
+		int length = readInt();
+		if(length < 0) {
+			throw new IOException("Negative array length " + length + ".");
+		}
+
+		if(length > this.limits.getMaxArrayLength()) {
+			throw new NBTLimitException("Array length " + length + " exceeds the limit of " + this.limits.getMaxArrayLength(), getPosition());
+		}
+
+		if(this.counter != null && (long) length * size > this.counter.remaining()) {
+			throw new NBTLimitException("Array of " + length + " elements needs " + (long) length * size + " bytes but only " + this.counter.remaining() + " remain of the limit of " + this.counter.getLimit() + " bytes", getPosition());
+		}
+
+		return length;
+	}
+
+	/**
+	 * Reads the length of a list and checks it against the limits. Negative
+	 * lengths are returned as they are and read as empty lists.
+	 * @return The length.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws NBTLimitException if the length exceeds the limits.
+	 */
+	public int readListLength() throws IOException {
+		int length = readInt();
+		if(length > this.limits.getMaxArrayLength()) {
+			throw new NBTLimitException("List length " + length + " exceeds the limit of " + this.limits.getMaxArrayLength(), getPosition());
+		}
+
+		return length;
+	}
+
+	/**
+	 * Reads the length of a string and checks it against the limits.
+	 * @return The length.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws NBTLimitException if the length exceeds the limits.
+	 */
+	private int readStringLength() throws IOException {
+		int length = readUnsignedShort();
+		if(length > this.limits.getMaxStringLength()) {
+			throw new NBTLimitException("String length " + length + " exceeds the limit of " + this.limits.getMaxStringLength(), getPosition());
+		}
+
+		return length;
+	}
+
+	/**
+	 * Reads a string prefixed with its length as an unsigned short.
+	 * @return The string.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public String readString() throws IOException {
+		int length = readStringLength();
+		if(length <= scratch.length) {
+			readFully(scratch, 0, length);
+			return new String(scratch, 0, length, NBTConstants.CHARSET);
+		}
+
+		byte[] bytes = new byte[length];
+		readFully(bytes);
+		return new String(bytes, NBTConstants.CHARSET);
+	}
+
+	/**
+	 * Reads a tag name prefixed with its length as an unsigned short. Names
+	 * seen before are returned from the shared <code>TagNameTable</code>
+	 * without being decoded.
+	 * @return The name.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public String readName() throws IOException {
+		int length = readStringLength();
+		if(length <= scratch.length) {
+			readFully(scratch, 0, length);
+			return TagNameTable.getShared().decode(scratch, 0, length);
+		}
+
+		byte[] bytes = new byte[length];
+		readFully(bytes);
+		return new String(bytes, NBTConstants.CHARSET);
+	}
+
+	/**
+	 * Skips exactly the given number of bytes.
+	 * @param count The number of bytes to skip.
+	 * @throws IOException if the end of the stream is reached first.
+	 */
+	public void skipFully(long count) throws IOException {
+		while(count > 0) {
+			int skipped = skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+			if(skipped <= 0) {
+				// skipBytes may stop early without reaching the end.
+				readByte();
+				skipped = 1;
+			}
+
+			count -= skipped;
+		}
+	}
+
+	/**
+	 * Skips over the payload of a tag which is not nested in a compound or
+	 * list. Fixed size data is skipped without being read into memory.
+	 * @param type The type of the tag.
+	 * @throws IOException if an I/O error occurs or the type is unknown.
+	 */
+	public void skipPayload(int type) throws IOException {
+		skipPayload(type, 0);
+	}
+
+	/**
+	 * Skips over the payload of a tag nested in the given number of
+	 * compounds and lists, checking the depth of its children against the
+	 * limits.
+	 * @param type The type of the tag.
+	 * @param depth The number of compounds and lists the tag is nested in.
+	 * @throws IOException if an I/O error occurs or the type is unknown.
+	 * @throws NBTLimitException if the nesting exceeds the limits.
+	 */
+	public void skipPayload(int type, int depth) throws IOException {
+		int size = NBTConstants.getPayloadSize(type);
+		if(size >= 0) {
+			skipFully(size);
+			return;
+		}
+
+		switch(type) {
+		case NBTConstants.TYPE_BYTE_ARRAY:
+			skipFully(readArrayLength(1));
+			break;
+		case NBTConstants.TYPE_STRING:
+			skipFully(readStringLength());
+			break;
+		case NBTConstants.TYPE_LIST:
+			checkDepth(depth + 1);
+			int childType = readByte() & 0xFF;
+			skipElements(childType, readListLength(), depth + 1);
+			break;
+		case NBTConstants.TYPE_COMPOUND:
+			checkDepth(depth + 1);
+			while(true) {
+				int childTag = readByte() & 0xFF;
+				if(childTag == NBTConstants.TYPE_END) {
+					break;
+				}
+
+				skipFully(readStringLength());
+				skipPayload(childTag, depth + 1);
+			}
+
+			break;
+		case NBTConstants.TYPE_INT_ARRAY:
+		case NBTConstants.TYPE_FLOAT_ARRAY:
+			skipFully(readArrayLength(4) * 4L);
+			break;
+		case NBTConstants.TYPE_LONG_ARRAY:
+		case NBTConstants.TYPE_DOUBLE_ARRAY:
+			skipFully(readArrayLength(8) * 8L);
+			break;
+		case NBTConstants.TYPE_SHORT_ARRAY:
+			skipFully(readArrayLength(2) * 2L);
+			break;
+		case NBTConstants.TYPE_STRING_ARRAY:
+			int length = readArrayLength(2);
+			for(int i = 0; i < length; i++) {
+				skipFully(readStringLength());
+			}
+
+			break;
+		case NBTConstants.TYPE_OBJECT:
+		case NBTConstants.TYPE_OBJECT_ARRAY:
+			// Objects have no length prefix, so they have to be read to find
+			// where they end.
+			if(type == NBTConstants.TYPE_OBJECT) {
+				ObjectCodecs.readObject(this);
+			} else {
+				ObjectCodecs.readObjectArray(this, readArrayLength(2));
+			}
+
+			break;
+		default:
+			TagType custom = TagType.get(type);
+			if(custom == null || custom.isBuiltin()) {
+				throw new IOException("Cannot skip over unknown tag type " + type + ".");
+			}
+
+			custom.read(this, "");
+		}
+	}
+
+	/**
+	 * Skips over the elements of a list which is not nested in a compound or
+	 * list. Lists of fixed size elements are skipped in one step.
+	 * @param childType The type of the elements.
+	 * @param length The number of elements.
+	 * @throws IOException if an I/O error occurs or the type is unknown.
+	 */
+	public void skipList(int childType, int length) throws IOException {
+		skipList(childType, length, 0);
+	}
+
+	/**
+	 * Skips over the elements of a list nested in the given number of
+	 * compounds and lists, checking the depth of the list and its children
+	 * against the limits.
+	 * @param childType The type of the elements.
+	 * @param length The number of elements.
+	 * @param depth The number of compounds and lists the list is nested in.
+	 * @throws IOException if an I/O error occurs or the type is unknown.
+	 * @throws NBTLimitException if the nesting exceeds the limits.
+	 */
+	public void skipList(int childType, int length, int depth) throws IOException {
+		checkDepth(depth + 1);
+		skipElements(childType, length, depth + 1);
+	}
+
+	/**
+	 * Skips over the elements of a list.
+	 * @param childType The type of the elements.
+	 * @param length The number of elements.
+	 * @param depth The depth of the list.
+	 * @throws IOException if an I/O error occurs or the type is unknown.
+	 */
+	private void skipElements(int childType, int length, int depth) throws IOException {
+		if(length <= 0) {
+			return;
+		}
+
+		if(childType == NBTConstants.TYPE_END) {
+			throw new IOException("TAG_End not permitted in a list.");
+		}
+
+		int size = NBTConstants.getPayloadSize(childType);
+		if(size >= 0) {
+			skipFully((long) length * size);
+		} else {
+			for(int i = 0; i < length; i++) {
+				skipPayload(childType, depth);
+			}
+		}
+	}
+
+	/**
+	 * Reads <code>count</code> elements of <code>size</code> bytes into the
+	 * scratch buffer.
+	 * @param count The number of elements to read.
+	 * @param size The size of an element in bytes.
+	 * @return The scratch buffer, positioned at the start of the elements.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private ByteBuffer fillScratch(int count, int size) throws IOException {
+		readFully(scratch, 0, count * size);
+		scratchBuffer.clear();
+		return scratchBuffer;
+	}
+
+	/**
+	 * Reads the elements of an int array in bulk.
+	 * @param length The length of the array.
+	 * @return The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public int[] readIntArray(int length) throws IOException {
+		int[] data = new int[length];
+		for(int off = 0; off < length;) {
+			int count = Math.min(length - off, scratch.length / 4);
+			fillScratch(count, 4).asIntBuffer().get(data, off, count);
+			off += count;
+		}
+
+		return data;
+	}
+
+	/**
+	 * Reads the elements of a long array in bulk.
+	 * @param length The length of the array.
+	 * @return The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long[] readLongArray(int length) throws IOException {
+		long[] data = new long[length];
+		for(int off = 0; off < length;) {
+			int count = Math.min(length - off, scratch.length / 8);
+			fillScratch(count, 8).asLongBuffer().get(data, off, count);
+			off += count;
+		}
+
+		return data;
+	}
+
+	/**
+	 * Reads the elements of a short array in bulk.
+	 * @param length The length of the array.
+	 * @return The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public short[] readShortArray(int length) throws IOException {
+		short[] data = new short[length];
+		for(int off = 0; off < length;) {
+			int count = Math.min(length - off, scratch.length / 2);
+			fillScratch(count, 2).asShortBuffer().get(data, off, count);
+			off += count;
+		}
+
+		return data;
+	}
+
+	/**
+	 * Reads the elements of a float array in bulk.
+	 * @param length The length of the array.
+	 * @return The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public float[] readFloatArray(int length) throws IOException {
+		float[] data = new float[length];
+		for(int off = 0; off < length;) {
+			int count = Math.min(length - off, scratch.length / 4);
+			fillScratch(count, 4).asFloatBuffer().get(data, off, count);
+			off += count;
+		}
+
+		return data;
+	}
+
+	/**
+	 * Reads the elements of a double array in bulk.
+	 * @param length The length of the array.
+	 * @return The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public double[] readDoubleArray(int length) throws IOException {
+		double[] data = new double[length];
+		for(int off = 0; off < length;) {
+			int count = Math.min(length - off, scratch.length / 8);
+			fillScratch(count, 8).asDoubleBuffer().get(data, off, count);
+			off += count;
+		}
+
+		return data;
+	}
+
+}
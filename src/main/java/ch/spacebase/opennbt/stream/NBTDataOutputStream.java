@@ -0,0 +1,369 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import ch.spacebase.opennbt.NBTConstants;
+
+/**
+ * A buffered stream which writes the primitives, strings and primitive
+ * arrays of the NBT format. Values are encoded into a reusable buffer, with
+ * arrays encoded in bulk, and the buffer is passed to the underlying stream
+ * in large blocks.
+ */
+class NBTDataOutputStream extends OutputStream {
+
+	/**
+	 * The stream being written to.
+	 */
+	private final OutputStream out;
+
+	/**
+	 * The buffer which values are encoded into.
+	 */
+	private final byte[] buffer = new byte[8192];
+
+	/**
+	 * A big endian buffer wrapping the buffer array.
+	 */
+	private final ByteBuffer buf = ByteBuffer.wrap(buffer);
+
+	/**
+	 * The number of bytes passed to the underlying stream.
+	 */
+	private long drained = 0;
+
+	/**
+	 * Creates a new <code>NBTDataOutputStream</code>.
+	 * @param out The stream to write to.
+	 */
+	public NBTDataOutputStream(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Gets the number of bytes written so far, including those still in the
+	 * buffer.
+	 * @return The number of bytes.
+	 */
+	public long getCount() {
+		return drained + buf.position();
+	}
+
+	/**
+	 * Writes out the buffered bytes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void drain() throws IOException {
+		if(buf.position() > 0) {
+			out.write(buffer, 0, buf.position());
+			drained += buf.position();
+			buf.clear();
+		}
+	}
+
+	/**
+	 * Makes sure that there is room in the buffer for the given number of
+	 * bytes.
+	 * @param count The number of bytes.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void ensure(int count) throws IOException {
+		if(buf.remaining() < count) {
+			drain();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensure(1);
+		buf.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if(len > buf.remaining()) {
+			drain();
+			if(len >= buffer.length) {
+				out.write(b, off, len);
+				drained += len;
+				return;
+			}
+		}
+
+		buf.put(b, off, len);
+	}
+
+	/**
+	 * Writes a byte.
+	 * @param v The byte.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeByte(int v) throws IOException {
+		ensure(1);
+		buf.put((byte) v);
+	}
+
+	/**
+	 * Writes a short.
+	 * @param v The short.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeShort(int v) throws IOException {
+		ensure(2);
+		buf.putShort((short) v);
+	}
+
+	/**
+	 * Writes an int.
+	 * @param v The int.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeInt(int v) throws IOException {
+		ensure(4);
+		buf.putInt(v);
+	}
+
+	/**
+	 * Writes a long.
+	 * @param v The long.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeLong(long v) throws IOException {
+		ensure(8);
+		buf.putLong(v);
+	}
+
+	/**
+	 * Writes a float.
+	 * @param v The float.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeFloat(float v) throws IOException {
+		ensure(4);
+		buf.putFloat(v);
+	}
+
+	/**
+	 * Writes a double.
+	 * @param v The double.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeDouble(double v) throws IOException {
+		ensure(8);
+		buf.putDouble(v);
+	}
+
+	/**
+	 * Writes a tag name, reusing its encoding from the shared
+	 * <code>TagNameTable</code> where possible.
+	 * @param name The name.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeName(String name) throws IOException {
+		byte[] bytes = TagNameTable.getShared().encode(name);
+		writeShort(bytes.length);
+		write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Writes a string in UTF-8, prefixed with its encoded length as a short.
+	 * Strings which fit in the buffer are encoded straight into it, producing
+	 * the same bytes as <code>String.getBytes</code>.
+	 * @param s The string.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeString(String s) throws IOException {
+		int length = s.length();
+		int encoded = 0;
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				encoded++;
+			} else if(c < 0x800) {
+				encoded += 2;
+			} else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				encoded += 4;
+				i++;
+			} else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				// Unpaired surrogates are replaced with '?'.
+				encoded++;
+			} else {
+				encoded += 3;
+			}
+		}
+
+		if(encoded + 2 > buffer.length) {
+			byte[] bytes = s.getBytes(NBTConstants.CHARSET);
+			writeShort(bytes.length);
+			write(bytes, 0, bytes.length);
+			return;
+		}
+
+		ensure(encoded + 2);
+		buf.putShort((short) encoded);
+		int pos = buf.position();
+		for(int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				buffer[pos++] = (byte) c;
+			} else if(c < 0x800) {
+				buffer[pos++] = (byte) (0xC0 | (c >> 6));
+				buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+				buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+			} else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				buffer[pos++] = '?';
+			} else {
+				buffer[pos++] = (byte) (0xE0 | (c >> 12));
+				buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		buf.position(pos);
+	}
+
+	/**
+	 * Gets room in the buffer for at least one element of the given size.
+	 * @param size The size of an element in bytes.
+	 * @param left The number of elements left to write.
+	 * @return The number of elements which fit in the buffer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private int room(int size, int left) throws IOException {
+		ensure(size);
+		return Math.min(left, buf.remaining() / size);
+	}
+
+	/**
+	 * Writes the elements of an int array in bulk, prefixed with its length.
+	 * @param data The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeIntArray(int[] data) throws IOException {
+		writeInt(data.length);
+		for(int off = 0; off < data.length;) {
+			int count = room(4, data.length - off);
+			buf.asIntBuffer().put(data, off, count);
+			buf.position(buf.position() + count * 4);
+			off += count;
+		}
+	}
+
+	/**
+	 * Writes the elements of a long array in bulk, prefixed with its length.
+	 * @param data The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeLongArray(long[] data) throws IOException {
+		writeInt(data.length);
+		for(int off = 0; off < data.length;) {
+			int count = room(8, data.length - off);
+			buf.asLongBuffer().put(data, off, count);
+			buf.position(buf.position() + count * 8);
+			off += count;
+		}
+	}
+
+	/**
+	 * Writes the elements of a short array in bulk, prefixed with its length.
+	 * @param data The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeShortArray(short[] data) throws IOException {
+		writeInt(data.length);
+		for(int off = 0; off < data.length;) {
+			int count = room(2, data.length - off);
+			buf.asShortBuffer().put(data, off, count);
+			buf.position(buf.position() + count * 2);
+			off += count;
+		}
+	}
+
+	/**
+	 * Writes the elements of a float array in bulk, prefixed with its length.
+	 * @param data The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeFloatArray(float[] data) throws IOException {
+		writeInt(data.length);
+		for(int off = 0; off < data.length;) {
+			int count = room(4, data.length - off);
+			buf.asFloatBuffer().put(data, off, count);
+			buf.position(buf.position() + count * 4);
+			off += count;
+		}
+	}
+
+	/**
+	 * Writes the elements of a double array in bulk, prefixed with its
+	 * length.
+	 * @param data The array.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void writeDoubleArray(double[] data) throws IOException {
+		writeInt(data.length);
+		for(int off = 0; off < data.length;) {
+			int count = room(8, data.length - off);
+			buf.asDoubleBuffer().put(data, off, count);
+			buf.position(buf.position() + count * 8);
+			off += count;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+		} finally {
+			out.close();
+		}
+	}
+
+}
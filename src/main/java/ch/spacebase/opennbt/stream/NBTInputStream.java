@@ -35,19 +35,25 @@ package ch.spacebase.opennbt.stream;
  */
 
 import java.io.Closeable;
-import java.io.DataInputStream;
+import java.io.DataInput;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
 
 import ch.spacebase.opennbt.NBTConstants;
 import ch.spacebase.opennbt.NBTUtils;
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.exception.NBTLimitException;
+import ch.spacebase.opennbt.metrics.Metrics;
+import ch.spacebase.opennbt.metrics.NBTMetrics;
+import ch.spacebase.opennbt.object.ObjectCodecs;
 import ch.spacebase.opennbt.tag.ByteArrayTag;
 import ch.spacebase.opennbt.tag.ByteTag;
 import ch.spacebase.opennbt.tag.CompoundTag;
@@ -61,6 +67,7 @@ import ch.spacebase.opennbt.tag.LongTag;
 import ch.spacebase.opennbt.tag.ShortTag;
 import ch.spacebase.opennbt.tag.StringTag;
 import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagType;
 import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
 import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
 import ch.spacebase.opennbt.tag.custom.LongArrayTag;
@@ -86,25 +93,121 @@ public final class NBTInputStream implements Closeable {
 	/**
 	 * The data input stream.
 	 */
-	private final DataInputStream is;
+	private final NBTDataInputStream is;
+	
+	/**
+	 * The metrics to report to, or null if nothing is measured.
+	 */
+	private final NBTMetrics metrics;
+	
+	/**
+	 * The stream counting the compressed bytes read, or null if nothing is
+	 * measured.
+	 */
+	private final CountingInputStream compressed;
+	
+	/**
+	 * The number of tags of each type read for the current tag, or null if
+	 * nothing is measured.
+	 */
+	private final int[] tagCounts;
 	
 	/**
 	 * Creates a new <code>NBTInputStream</code>, which will source its data
-	 * from the specified input stream.
+	 * from the specified GZIP compressed input stream.
 	 * @param is The input stream.
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public NBTInputStream(InputStream is) throws IOException {
-		this.is = new DataInputStream(new GZIPInputStream(is));
+		this(is, CompressionCodecs.GZIP);
+	}
+	
+	/**
+	 * Creates a new <code>NBTInputStream</code>, which will source its data
+	 * from the specified input stream, decompressing it with the given codec.
+	 * @param is The input stream.
+	 * @param codec The codec the data is compressed with.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTInputStream(InputStream is, CompressionCodec codec) throws IOException {
+		this(is, codec, NBTReadLimits.DEFAULT);
+	}
+	
+	/**
+	 * Creates a new <code>NBTInputStream</code>, which will source its data
+	 * from the specified input stream, decompressing it with the given codec
+	 * and rejecting data which exceeds the given limits. The total size is
+	 * counted after decompression.
+	 * @param is The input stream.
+	 * @param codec The codec the data is compressed with.
+	 * @param limits The limits the data is checked against.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTInputStream(InputStream is, CompressionCodec codec, NBTReadLimits limits) throws IOException {
+		this.metrics = Metrics.get();
+		if(this.metrics != null) {
+			this.compressed = new CountingInputStream(is, Long.MAX_VALUE);
+			this.tagCounts = new int[256];
+			this.is = new NBTDataInputStream(codec.decompress(this.compressed), limits, true);
+		} else {
+			this.compressed = null;
+			this.tagCounts = null;
+			this.is = new NBTDataInputStream(codec.decompress(is), limits);
+		}
+	}
+	
+	/**
+	 * Creates a new <code>NBTInputStream</code> which reads from a stream of
+	 * decompressed data shared with another reader.
+	 * @param is The data input stream.
+	 */
+	NBTInputStream(NBTDataInputStream is) {
+		this.is = is;
+		this.metrics = null;
+		this.compressed = null;
+		this.tagCounts = null;
 	}
 	
 	/**
 	 * Reads an NBT tag from the stream.
-	 * @return The tag that was read.
+	 * @return The tag that was read, or null if the end of the stream has
+	 * been reached.
 	 * @throws IOException if an I/O error occurs.
+	 * @throws NBTLimitException if the data exceeds the limits of the stream.
 	 */
 	public Tag readTag() throws IOException {
-		return readTag(0);
+		if(this.metrics != null) {
+			return readMeasuredTag();
+		}
+		
+		int type = is.read();
+		if(type == -1) {
+			return null;
+		}
+		
+		return readTag(type, 0);
+	}
+	
+	/**
+	 * Reads an NBT tag from the stream and reports it to the metrics.
+	 * @return The tag that was read, or null if the end of the stream has
+	 * been reached.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private Tag readMeasuredTag() throws IOException {
+		long start = System.nanoTime();
+		long position = is.getPosition();
+		long compressedPosition = this.compressed.getPosition();
+		
+		int type = is.read();
+		if(type == -1) {
+			return null;
+		}
+		
+		Arrays.fill(this.tagCounts, 0);
+		Tag tag = readTag(type, 0);
+		this.metrics.decoded(this.tagCounts, is.getPosition() - position, this.compressed.getPosition() - compressedPosition, System.nanoTime() - start);
+		return tag;
 	}
 	
 	/**
@@ -114,14 +217,20 @@ public final class NBTInputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	private Tag readTag(int depth) throws IOException {
-		int type = is.readByte() & 0xFF;
-				
+		return readTag(is.readByte() & 0xFF, depth);
+	}
+	
+	/**
+	 * Reads an NBT from the stream, given its type.
+	 * @param type The type of this tag.
+	 * @param depth The depth of this tag.
+	 * @return The tag that was read.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private Tag readTag(int type, int depth) throws IOException {
 		String name;
 		if(type != NBTConstants.TYPE_END) {
-			int nameLength = is.readShort() & 0xFFFF;
-			byte[] nameBytes = new byte[nameLength];
-			is.readFully(nameBytes);
-			name = new String(nameBytes, NBTConstants.CHARSET);
+			name = is.readName();
 		} else {
 			name = "";
 		}
@@ -138,7 +247,11 @@ public final class NBTInputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private Tag readTagPayload(int type, String name, int depth) throws IOException {
+	Tag readTagPayload(int type, String name, int depth) throws IOException {
+		if(this.tagCounts != null && type != NBTConstants.TYPE_END) {
+			this.tagCounts[type]++;
+		}
+		
 		switch(type) {
 		case NBTConstants.TYPE_END:
 			if(depth == 0) {
@@ -159,18 +272,15 @@ public final class NBTInputStream implements Closeable {
 		case NBTConstants.TYPE_DOUBLE:
 			return new DoubleTag(name, is.readDouble());
 		case NBTConstants.TYPE_BYTE_ARRAY:
-			int length = is.readInt();
-			byte[] bytes = new byte[length];
+			byte[] bytes = new byte[is.readArrayLength(1)];
 			is.readFully(bytes);
 			return new ByteArrayTag(name, bytes);
 		case NBTConstants.TYPE_STRING:
-			length = is.readShort();
-			bytes = new byte[length];
-			is.readFully(bytes);
-			return new StringTag(name, new String(bytes, NBTConstants.CHARSET));
+			return new StringTag(name, is.readString());
 		case NBTConstants.TYPE_LIST:
-			int childType = is.readByte();
-			length = is.readInt();
+			is.checkDepth(depth + 1);
+			int childType = is.readByte() & 0xFF;
+			int length = is.readListLength();
 			
 			Class<? extends Tag> oclass = NBTUtils.getTypeClass(childType);
 			
@@ -189,6 +299,7 @@ public final class NBTInputStream implements Closeable {
 			
 			return new ListTag(name, oclass, tagList);
 		case NBTConstants.TYPE_COMPOUND:
+			is.checkDepth(depth + 1);
 			Map<String, Tag> tagMap = new HashMap<String, Tag>();
 			while(true) {
 				Tag tag = readTag(depth + 1);
@@ -201,103 +312,90 @@ public final class NBTInputStream implements Closeable {
 			
 			return new CompoundTag(name, tagMap);
         case NBTConstants.TYPE_INT_ARRAY:
-            length = is.readInt();
-            int[] data = new int[length];
-            
-            for (int i = 0; i < length; i++) {
-                data[i] = is.readInt();
-            }
-            
-            return new IntArrayTag(name, data);
+            return new IntArrayTag(name, is.readIntArray(is.readArrayLength(4)));
         case NBTConstants.TYPE_DOUBLE_ARRAY:
-            length = is.readInt();
-            double[] dat = new double[length];
-            
-            for (int i = 0; i < length; i++) {
-                dat[i] = is.readDouble();
-            }
-            
-            return new DoubleArrayTag(name, dat);
+            return new DoubleArrayTag(name, is.readDoubleArray(is.readArrayLength(8)));
         case NBTConstants.TYPE_FLOAT_ARRAY:
-            length = is.readInt();
-            float[] floats = new float[length];
-            
-            for (int i = 0; i < length; i++) {
-            	floats[i] = is.readFloat();
-            }
-
-            return new FloatArrayTag(name, floats);
+            return new FloatArrayTag(name, is.readFloatArray(is.readArrayLength(4)));
         case NBTConstants.TYPE_LONG_ARRAY:
-            length = is.readInt();
-            long[] longs = new long[length];
-            
-            for (int i = 0; i < length; i++) {
-            	longs[i] = is.readLong();
-            }
-
-            return new LongArrayTag(name, longs);
+            return new LongArrayTag(name, is.readLongArray(is.readArrayLength(8)));
         case NBTConstants.TYPE_OBJECT_ARRAY:
-        	length = is.readInt();
-        	Object[] objs = new Object[length];
-        	
-        	ObjectInputStream str = new ObjectInputStream(is);
-
-        	for(int i = 0; i < length; i++) {
-            	try {
-    				objs[i] = str.readObject();
-    			} catch (ClassNotFoundException e) {
-    				logger.severe("Class not found while reading ObjectTag!");
-    				e.printStackTrace();
-    				continue;
-    			}
-        	}
-        	
-        	return new ObjectArrayTag(name, objs);
+        	return new ObjectArrayTag(name, ObjectCodecs.readObjectArray(is, is.readArrayLength(2)));
         case NBTConstants.TYPE_OBJECT:
-        	str = new ObjectInputStream(is);
-        	Object o = null;
-        	
-        	try {
-				o = str.readObject();
-			} catch (ClassNotFoundException e) {
-				logger.severe("Class not found while reading ObjectTag!");
-				e.printStackTrace();
-				return null;
-			}
-        	
-        	return new ObjectTag(name, o);
+        	return new ObjectTag(name, ObjectCodecs.readObject(is));
         case NBTConstants.TYPE_SHORT_ARRAY:
-        	long time = System.currentTimeMillis();
-            length = is.readInt();
-            short[] shorts = new short[length];
-            
-            for (int i = 0; i < length; i++) {
-            	shorts[i] = is.readShort();
-            }
-
-            System.out.println("Took " + (System.currentTimeMillis() - time) + "ms to read a short array.");
-            return new ShortArrayTag(name, shorts);
+            return new ShortArrayTag(name, is.readShortArray(is.readArrayLength(2)));
         case NBTConstants.TYPE_STRING_ARRAY:
-        	length = is.readInt();
-        	String[] strings = new String[length];
-        	
-        	for(int i = 0; i < length; i++) {
-    			int size = is.readShort();
-    			bytes = new byte[size];
-    			is.readFully(bytes);
-    			strings[i] = new String(bytes, NBTConstants.CHARSET);
+        	String[] strings = new String[is.readArrayLength(2)];
+        	for(int i = 0; i < strings.length; i++) {
+    			strings[i] = is.readString();
         	}
         	
         	return new StringArrayTag(name, strings);
 		default:
+			TagType custom = TagType.get(type);
+			if(custom != null && !custom.isBuiltin()) {
+				return custom.read(is, name);
+			}
+
 			logger.warning("Unknown tag found while reading.");
 			return new UnknownTag(name);
 		}
 	}
 
+	/**
+	 * Reads the payload of a tag of a built-in type from a data input. This
+	 * is what <code>TagType.read</code> does for the built-in types.
+	 * @param in The input to read from.
+	 * @param type The type.
+	 * @param name The name of the tag.
+	 * @return The tag.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static Tag readPayload(DataInput in, int type, String name) throws IOException {
+		NBTDataInputStream is;
+		if(in instanceof NBTDataInputStream) {
+			is = (NBTDataInputStream) in;
+		} else {
+			is = new NBTDataInputStream(in instanceof InputStream ? (InputStream) in : new DataInputAdapter(in));
+		}
+
+		return new NBTInputStream(is).readTagPayload(type, name, 0);
+	}
+
 	@Override
 	public void close() throws IOException {
 		is.close();
 	}
 
+	/**
+	 * Reads from a <code>DataInput</code> which is not a stream, one byte at a
+	 * time.
+	 */
+	private static class DataInputAdapter extends InputStream {
+
+		/**
+		 * The input.
+		 */
+		private final DataInput in;
+
+		/**
+		 * Creates a new <code>DataInputAdapter</code>.
+		 * @param in The input.
+		 */
+		public DataInputAdapter(DataInput in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				return this.in.readUnsignedByte();
+			} catch(EOFException e) {
+				return -1;
+			}
+		}
+
+	}
+
 }
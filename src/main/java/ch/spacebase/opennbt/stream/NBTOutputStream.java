@@ -1,15 +1,20 @@
 package ch.spacebase.opennbt.stream;
 
 import java.io.Closeable;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
 
 import ch.spacebase.opennbt.NBTConstants;
 import ch.spacebase.opennbt.NBTUtils;
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.metrics.Metrics;
+import ch.spacebase.opennbt.metrics.NBTMetrics;
+import ch.spacebase.opennbt.object.ObjectCodecs;
 import ch.spacebase.opennbt.tag.ByteArrayTag;
 import ch.spacebase.opennbt.tag.ByteTag;
 import ch.spacebase.opennbt.tag.CompoundTag;
@@ -23,6 +28,8 @@ import ch.spacebase.opennbt.tag.LongTag;
 import ch.spacebase.opennbt.tag.ShortTag;
 import ch.spacebase.opennbt.tag.StringTag;
 import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagType;
+import ch.spacebase.opennbt.tag.TagVisitor;
 import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
 import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
 import ch.spacebase.opennbt.tag.custom.LongArrayTag;
@@ -30,6 +37,7 @@ import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
 import ch.spacebase.opennbt.tag.custom.ObjectTag;
 import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
 import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
 
 /*
  * OpenNBT License
@@ -81,16 +89,70 @@ public final class NBTOutputStream implements Closeable {
 	/**
 	 * The output stream.
 	 */
-	private final DataOutputStream os;
+	private final NBTDataOutputStream os;
 	
 	/**
-	 * Creates a new <code>NBTOutputStream</code>, which will write data to the
-	 * specified underlying output stream.
+	 * The visitor writing the payload of each tag.
+	 */
+	private final PayloadWriter payloadWriter = new PayloadWriter();
+	
+	/**
+	 * The metrics to report to, or null if nothing is measured.
+	 */
+	private final NBTMetrics metrics;
+	
+	/**
+	 * The stream counting the compressed bytes written, or null if nothing
+	 * is measured.
+	 */
+	private final CountingOutputStream compressed;
+	
+	/**
+	 * The number of tags of each type written for the current tag, or null
+	 * if nothing is measured.
+	 */
+	private final int[] tagCounts;
+	
+	/**
+	 * Creates a new <code>NBTOutputStream</code>, which will write GZIP
+	 * compressed data to the specified underlying output stream.
 	 * @param os The output stream.
 	 * @throws IOException if an I/O error occurs.
 	 */
 	public NBTOutputStream(OutputStream os) throws IOException {
-		this.os = new DataOutputStream(new GZIPOutputStream(os));
+		this(os, CompressionCodecs.GZIP);
+	}
+	
+	/**
+	 * Creates a new <code>NBTOutputStream</code>, which will write data to the
+	 * specified underlying output stream, compressing it with the given codec.
+	 * @param os The output stream.
+	 * @param codec The codec to compress the data with.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTOutputStream(OutputStream os, CompressionCodec codec) throws IOException {
+		this.metrics = Metrics.get();
+		if(this.metrics != null) {
+			this.compressed = new CountingOutputStream(os);
+			this.tagCounts = new int[256];
+			this.os = new NBTDataOutputStream(codec.compress(this.compressed));
+		} else {
+			this.compressed = null;
+			this.tagCounts = null;
+			this.os = new NBTDataOutputStream(codec.compress(os));
+		}
+	}
+	
+	/**
+	 * Creates a new <code>NBTOutputStream</code> which writes to a data
+	 * stream shared with another writer.
+	 * @param os The data output stream.
+	 */
+	NBTOutputStream(NBTDataOutputStream os) {
+		this.os = os;
+		this.metrics = null;
+		this.compressed = null;
+		this.tagCounts = null;
 	}
 	
 	/**
@@ -98,18 +160,33 @@ public final class NBTOutputStream implements Closeable {
 	 * @param tag The tag to write.
 	 * @throws IOException if an I/O error occurs.
 	 */
-	public void writeTag(Tag tag) throws IOException { 
+	public void writeTag(Tag tag) throws IOException {
+		if(this.metrics == null) {
+			writeNamedTag(tag);
+			return;
+		}
+		
+		long start = System.nanoTime();
+		long count = os.getCount();
+		long compressedCount = this.compressed.getCount();
+		Arrays.fill(this.tagCounts, 0);
+		writeNamedTag(tag);
+		this.metrics.encoded(this.tagCounts, os.getCount() - count, this.compressed.getCount() - compressedCount, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Writes a tag with its type and name.
+	 * @param tag The tag to write.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void writeNamedTag(Tag tag) throws IOException {
 		int type = NBTUtils.getTypeCode(tag.getClass());
 		if(type == NBTConstants.TYPE_UNKNOWN) {
 			logger.warning("Unknown tag found while writing, ignoring...");
 		}
 
-		String name = tag.getName();
-		byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
-		
 		os.writeByte(type);
-		os.writeShort(nameBytes.length);
-		os.write(nameBytes);
+		os.writeName(tag.getName());
 		
 		if(type == NBTConstants.TYPE_END) {
 			throw new IOException("Named TAG_End not permitted.");
@@ -123,69 +200,12 @@ public final class NBTOutputStream implements Closeable {
 	 * @param tag The tag.
 	 * @throws IOException if an I/O error occurs.
 	 */
-	private void writeTagPayload(Tag tag) throws IOException {
-		int type = NBTUtils.getTypeCode(tag.getClass());
-		switch(type) {
-		case NBTConstants.TYPE_END:
-			writeEndTagPayload((EndTag) tag);
-			break;
-		case NBTConstants.TYPE_BYTE:
-			writeByteTagPayload((ByteTag) tag);
-			break;
-		case NBTConstants.TYPE_SHORT:
-			writeShortTagPayload((ShortTag) tag);
-			break;
-		case NBTConstants.TYPE_INT:
-			writeIntTagPayload((IntTag) tag);
-			break;
-		case NBTConstants.TYPE_LONG:
-			writeLongTagPayload((LongTag) tag);
-			break;
-		case NBTConstants.TYPE_FLOAT:
-			writeFloatTagPayload((FloatTag) tag);
-			break;
-		case NBTConstants.TYPE_DOUBLE:
-			writeDoubleTagPayload((DoubleTag) tag);
-			break;
-		case NBTConstants.TYPE_BYTE_ARRAY:
-			writeByteArrayTagPayload((ByteArrayTag) tag);
-			break;
-		case NBTConstants.TYPE_STRING:
-			writeStringTagPayload((StringTag) tag);
-			break;
-		case NBTConstants.TYPE_LIST:
-			writeListTagPayload((ListTag<?>) tag);
-			break;
-		case NBTConstants.TYPE_COMPOUND:
-			writeCompoundTagPayload((CompoundTag) tag);
-			break;
-		case NBTConstants.TYPE_INT_ARRAY:
-			writeIntArrayTagPayload((IntArrayTag) tag);
-			break;
-		case NBTConstants.TYPE_DOUBLE_ARRAY:
-			writeDoubleArrayTagPayload((DoubleArrayTag) tag);
-			break;
-		case NBTConstants.TYPE_FLOAT_ARRAY:
-			writeFloatArrayTagPayload((FloatArrayTag) tag);
-			break;
-		case NBTConstants.TYPE_LONG_ARRAY:
-			writeLongArrayTagPayload((LongArrayTag) tag);
-			break;
-		case NBTConstants.TYPE_OBJECT_ARRAY:
-			writeObjectArrayTagPayload((ObjectArrayTag) tag);
-			break;
-		case NBTConstants.TYPE_OBJECT:
-			writeObjectTagPayload((ObjectTag) tag);
-			break;
-		case NBTConstants.TYPE_SHORT_ARRAY:
-			writeShortArrayTagPayload((ShortArrayTag) tag);
-			break;
-		case NBTConstants.TYPE_STRING_ARRAY:
-			writeStringArrayTagPayload((StringArrayTag) tag);
-			break;
-		default:
-			logger.warning("Unknown tag found while writing, ignoring...");
+	void writeTagPayload(Tag tag) throws IOException {
+		if(this.tagCounts != null) {
+			this.tagCounts[NBTUtils.getTypeCode(tag.getClass()) & 0xFF]++;
 		}
+		
+		tag.accept(this.payloadWriter);
 	}
 
 	/**
@@ -215,7 +235,7 @@ public final class NBTOutputStream implements Closeable {
 	 */
 	private void writeCompoundTagPayload(CompoundTag tag) throws IOException {
 		for(Tag childTag : tag.values()) {
-			writeTag(childTag);
+			writeNamedTag(childTag);
 		}
 		os.writeByte((byte) 0); // end tag - better way?
 	}
@@ -242,9 +262,7 @@ public final class NBTOutputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
 	private void writeStringTagPayload(StringTag tag) throws IOException {
-		byte[] bytes = tag.getValue() != null ? tag.getValue().getBytes(NBTConstants.CHARSET) : new byte[0];
-		os.writeShort(bytes.length);
-		os.write(bytes);
+		os.writeString(tag.getValue() != null ? tag.getValue() : "");
 	}
 
 	/**
@@ -306,13 +324,7 @@ public final class NBTOutputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
     private void writeIntArrayTagPayload(IntArrayTag tag) throws IOException {
-        int[] data = tag.getValue();
-        
-        os.writeInt(data.length);
-        
-        for (int i = 0; i < data.length; i++) {
-            os.writeInt(data[i]);
-        } 
+        os.writeIntArray(tag.getValue());
     }
     
 	/** Writes a <code>TAG_Double_Array<code> tag.
@@ -320,13 +332,7 @@ public final class NBTOutputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
     private void writeDoubleArrayTagPayload(DoubleArrayTag tag) throws IOException {
-        double[] data = tag.getValue();
-        
-        os.writeInt(data.length);
-        
-        for (int i = 0; i < data.length; i++) {
-            os.writeDouble(data[i]);
-        } 
+        os.writeDoubleArray(tag.getValue());
     }
     
 	/** Writes a <code>TAG_Float_Array<code> tag.
@@ -334,13 +340,7 @@ public final class NBTOutputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
     private void writeFloatArrayTagPayload(FloatArrayTag tag) throws IOException {
-        float[] data = tag.getValue();
-        
-        os.writeInt(data.length);
-        
-        for (int i = 0; i < data.length; i++) {
-            os.writeFloat(data[i]);
-        } 
+        os.writeFloatArray(tag.getValue());
     }
     
 	/** Writes a <code>TAG_Long_Array<code> tag.
@@ -348,13 +348,7 @@ public final class NBTOutputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
     private void writeLongArrayTagPayload(LongArrayTag tag) throws IOException {
-        long[] data = tag.getValue();
-        
-        os.writeInt(data.length);
-        
-        for (int i = 0; i < data.length; i++) {
-            os.writeLong(data[i]);
-        } 
+        os.writeLongArray(tag.getValue());
     }
     
 	/** Writes a <code>TAG_Object_Array<code> tag.
@@ -365,11 +359,7 @@ public final class NBTOutputStream implements Closeable {
         Object[] data = tag.getValue();
         
         os.writeInt(data.length);
-        ObjectOutputStream str = new ObjectOutputStream(os);
-        
-        for (int i = 0; i < data.length; i++) {
-            str.writeObject(data[i]);
-        } 
+        ObjectCodecs.writeObjectArray(os, data);
     }
     
 	/** Writes a <code>TAG_Object<code> tag.
@@ -377,7 +367,7 @@ public final class NBTOutputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
     private void writeObjectTagPayload(ObjectTag tag) throws IOException {
-    	(new ObjectOutputStream(os)).writeObject(tag.getValue());
+    	ObjectCodecs.writeObject(os, tag.getValue());
     }
     
 	/** Writes a <code>TAG_Short_Array<code> tag.
@@ -385,13 +375,7 @@ public final class NBTOutputStream implements Closeable {
 	 * @throws IOException if an I/O error occurs.
 	 */
     private void writeShortArrayTagPayload(ShortArrayTag tag) throws IOException {
-        short[] data = tag.getValue();
-        
-        os.writeInt(data.length);
-        
-        for (int i = 0; i < data.length; i++) {
-            os.writeShort(data[i]);
-        } 
+        os.writeShortArray(tag.getValue());
     }
     
 	/** Writes a <code>TAG_String_Array<code> tag.
@@ -402,18 +386,194 @@ public final class NBTOutputStream implements Closeable {
         String[] data = tag.getValue();
         
         os.writeInt(data.length);
-        byte[] bytes;
         
         for (int i = 0; i < data.length; i++) {
-    		bytes = data[i].getBytes(NBTConstants.CHARSET);
-    		os.writeShort(bytes.length);
-    		os.write(bytes);
+    		os.writeString(data[i]);
         } 
     }
 
+	/**
+	 * Writes the payload of a tag of a built-in type to a data output. This
+	 * is what <code>TagType.write</code> does for the built-in types.
+	 * @param out The output to write to.
+	 * @param tag The tag.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static void writePayload(final DataOutput out, Tag tag) throws IOException {
+		OutputStream stream;
+		if(out instanceof OutputStream) {
+			stream = (OutputStream) out;
+		} else {
+			stream = new OutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+				}
+			};
+		}
+
+		NBTDataOutputStream os = new NBTDataOutputStream(stream);
+		new NBTOutputStream(os).writeTagPayload(tag);
+		os.flush();
+	}
+
 	@Override
 	public void close() throws IOException {
+		if(this.metrics == null) {
+			os.close();
+			return;
+		}
+		
+		// Compressors hold back output until they are finished, so report
+		// what they write on close.
+		long compressedCount = this.compressed.getCount();
 		os.close();
+		Arrays.fill(this.tagCounts, 0);
+		this.metrics.encoded(this.tagCounts, 0, this.compressed.getCount() - compressedCount, 0);
+	}
+
+	/**
+	 * Writes the payload of each type of tag.
+	 */
+	private class PayloadWriter implements TagVisitor<Void, IOException> {
+
+		@Override
+		public Void visitEnd(EndTag tag) {
+			writeEndTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitByte(ByteTag tag) throws IOException {
+			writeByteTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitShort(ShortTag tag) throws IOException {
+			writeShortTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitInt(IntTag tag) throws IOException {
+			writeIntTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitLong(LongTag tag) throws IOException {
+			writeLongTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitFloat(FloatTag tag) throws IOException {
+			writeFloatTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitDouble(DoubleTag tag) throws IOException {
+			writeDoubleTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitByteArray(ByteArrayTag tag) throws IOException {
+			writeByteArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitString(StringTag tag) throws IOException {
+			writeStringTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitList(ListTag<?> tag) throws IOException {
+			writeListTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitCompound(CompoundTag tag) throws IOException {
+			writeCompoundTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitIntArray(IntArrayTag tag) throws IOException {
+			writeIntArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitDoubleArray(DoubleArrayTag tag) throws IOException {
+			writeDoubleArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitFloatArray(FloatArrayTag tag) throws IOException {
+			writeFloatArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitLongArray(LongArrayTag tag) throws IOException {
+			writeLongArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitObjectArray(ObjectArrayTag tag) throws IOException {
+			writeObjectArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitObject(ObjectTag tag) throws IOException {
+			writeObjectTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitShortArray(ShortArrayTag tag) throws IOException {
+			writeShortArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitStringArray(StringArrayTag tag) throws IOException {
+			writeStringArrayTagPayload(tag);
+			return null;
+		}
+
+		@Override
+		public Void visitUnknown(UnknownTag tag) {
+			logger.warning("Unknown tag found while writing, ignoring...");
+			return null;
+		}
+
+		@Override
+		public Void visitOther(Tag tag) throws IOException {
+			TagType custom = TagType.get(tag.getClass());
+			if(custom == null || custom.isBuiltin()) {
+				logger.warning("Unknown tag found while writing, ignoring...");
+				return null;
+			}
+
+			custom.write(new DataOutputStream(os), tag);
+			return null;
+		}
+
 	}
 
 }
@@ -0,0 +1,243 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Logger;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.object.ObjectCodecs;
+import ch.spacebase.opennbt.tag.TagType;
+
+/**
+ * <p>Reads an <strong>NBT</strong> stream and reports its contents to an
+ * <code>NBTVisitor</code> as it goes, without building a tree of
+ * <code>Tag</code> objects.</p>
+ * 
+ * <p>This is useful for jobs such as counting or validating, which only
+ * need to look at the data once and would otherwise throw the tree away.</p>
+ */
+public final class NBTParser implements Closeable {
+
+	private static final Logger logger = Logger.getLogger("NBTParser");
+
+	/**
+	 * The data input stream.
+	 */
+	private final NBTDataInputStream is;
+
+	/**
+	 * Creates a new <code>NBTParser</code>, which will source its data
+	 * from the specified GZIP compressed input stream.
+	 * @param is The input stream.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTParser(InputStream is) throws IOException {
+		this(is, CompressionCodecs.GZIP);
+	}
+
+	/**
+	 * Creates a new <code>NBTParser</code>, which will source its data
+	 * from the specified input stream, decompressing it with the given codec.
+	 * @param is The input stream.
+	 * @param codec The codec the data is compressed with.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTParser(InputStream is, CompressionCodec codec) throws IOException {
+		this(is, codec, NBTReadLimits.DEFAULT);
+	}
+
+	/**
+	 * Creates a new <code>NBTParser</code>, which will source its data
+	 * from the specified input stream, decompressing it with the given codec
+	 * and rejecting data which exceeds the given limits.
+	 * @param is The input stream.
+	 * @param codec The codec the data is compressed with.
+	 * @param limits The limits the data is checked against.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTParser(InputStream is, CompressionCodec codec, NBTReadLimits limits) throws IOException {
+		this.is = new NBTDataInputStream(codec.decompress(is), limits);
+	}
+
+	/**
+	 * Parses the next tag in the stream, reporting it to the given visitor.
+	 * @param visitor The visitor to report to.
+	 * @return Whether a tag was parsed, or false if the end of the stream
+	 * has been reached.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public boolean parse(NBTVisitor visitor) throws IOException {
+		int type = is.read();
+		if(type == -1) {
+			return false;
+		}
+
+		if(type == NBTConstants.TYPE_END) {
+			throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
+		}
+
+		parsePayload(type, is.readName(), visitor, 0);
+		return true;
+	}
+
+	/**
+	 * Parses every remaining tag in the stream, reporting them to the given
+	 * visitor.
+	 * @param visitor The visitor to report to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void parseAll(NBTVisitor visitor) throws IOException {
+		while(parse(visitor));
+	}
+
+	/**
+	 * Parses the payload of a tag, given the name and type.
+	 * @param type The type.
+	 * @param name The name.
+	 * @param visitor The visitor to report to.
+	 * @param depth The depth.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void parsePayload(int type, String name, NBTVisitor visitor, int depth) throws IOException {
+		switch(type) {
+		case NBTConstants.TYPE_BYTE:
+			visitor.visitByte(name, is.readByte());
+			break;
+		case NBTConstants.TYPE_SHORT:
+			visitor.visitShort(name, is.readShort());
+			break;
+		case NBTConstants.TYPE_INT:
+			visitor.visitInt(name, is.readInt());
+			break;
+		case NBTConstants.TYPE_LONG:
+			visitor.visitLong(name, is.readLong());
+			break;
+		case NBTConstants.TYPE_FLOAT:
+			visitor.visitFloat(name, is.readFloat());
+			break;
+		case NBTConstants.TYPE_DOUBLE:
+			visitor.visitDouble(name, is.readDouble());
+			break;
+		case NBTConstants.TYPE_BYTE_ARRAY:
+			byte[] bytes = new byte[is.readArrayLength(1)];
+			is.readFully(bytes);
+			visitor.visitByteArray(name, bytes);
+			break;
+		case NBTConstants.TYPE_STRING:
+			visitor.visitString(name, is.readString());
+			break;
+		case NBTConstants.TYPE_LIST:
+			is.checkDepth(depth + 1);
+			int childType = is.readByte() & 0xFF;
+			int length = is.readListLength();
+			if(childType == NBTConstants.TYPE_END && length > 0) {
+				throw new IOException("TAG_End not permitted in a list.");
+			}
+
+			visitor.startList(name, childType, length);
+			for(int i = 0; i < length; i++) {
+				parsePayload(childType, "", visitor, depth + 1);
+			}
+
+			visitor.endList();
+			break;
+		case NBTConstants.TYPE_COMPOUND:
+			is.checkDepth(depth + 1);
+			visitor.startCompound(name);
+			while(true) {
+				int childTag = is.readByte() & 0xFF;
+				if(childTag == NBTConstants.TYPE_END) {
+					break;
+				}
+
+				parsePayload(childTag, is.readName(), visitor, depth + 1);
+			}
+
+			visitor.endCompound();
+			break;
+		case NBTConstants.TYPE_INT_ARRAY:
+			visitor.visitIntArray(name, is.readIntArray(is.readArrayLength(4)));
+			break;
+		case NBTConstants.TYPE_LONG_ARRAY:
+			visitor.visitLongArray(name, is.readLongArray(is.readArrayLength(8)));
+			break;
+		case NBTConstants.TYPE_SHORT_ARRAY:
+			visitor.visitShortArray(name, is.readShortArray(is.readArrayLength(2)));
+			break;
+		case NBTConstants.TYPE_FLOAT_ARRAY:
+			visitor.visitFloatArray(name, is.readFloatArray(is.readArrayLength(4)));
+			break;
+		case NBTConstants.TYPE_DOUBLE_ARRAY:
+			visitor.visitDoubleArray(name, is.readDoubleArray(is.readArrayLength(8)));
+			break;
+		case NBTConstants.TYPE_STRING_ARRAY:
+			String[] strings = new String[is.readArrayLength(2)];
+			for(int i = 0; i < strings.length; i++) {
+				strings[i] = is.readString();
+			}
+
+			visitor.visitStringArray(name, strings);
+			break;
+		case NBTConstants.TYPE_OBJECT:
+			visitor.visitObject(name, ObjectCodecs.readObject(is));
+			break;
+		case NBTConstants.TYPE_OBJECT_ARRAY:
+			visitor.visitObjectArray(name, ObjectCodecs.readObjectArray(is, is.readArrayLength(2)));
+			break;
+		default:
+			TagType custom = TagType.get(type);
+			if(custom != null && !custom.isBuiltin()) {
+				visitor.visitUnknown(name, type);
+				is.skipPayload(type, depth);
+				break;
+			}
+
+			logger.warning("Unknown tag found while parsing.");
+			visitor.visitUnknown(name, type);
+			throw new IOException("Cannot parse past unknown tag type " + type + ".");
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		is.close();
+	}
+
+}
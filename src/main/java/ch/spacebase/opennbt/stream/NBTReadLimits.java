@@ -0,0 +1,137 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+/**
+ * <p>Limits on the data a reader accepts, so that untrusted input cannot
+ * exhaust memory or the stack. Lengths are checked as soon as they are
+ * read, before anything is allocated for them, and the total size is
+ * checked as bytes are pulled from the underlying stream.</p>
+ * 
+ * <p>Instances are immutable and may be shared between readers.</p>
+ */
+public final class NBTReadLimits {
+
+	/**
+	 * The limits used when none are given. Only the nesting depth is limited,
+	 * to the same depth the game itself allows.
+	 */
+	public static final NBTReadLimits DEFAULT = new NBTReadLimits(512, Integer.MAX_VALUE, Long.MAX_VALUE, 65535);
+
+	/**
+	 * Limits for data received from clients, matching the 2 MiB the game
+	 * accepts in a single packet.
+	 */
+	public static final NBTReadLimits UNTRUSTED = new NBTReadLimits(512, 1 << 20, 2 * 1024 * 1024, 32767);
+
+	/**
+	 * The maximum nesting depth of compounds and lists.
+	 */
+	private final int maxDepth;
+
+	/**
+	 * The maximum number of elements in an array or list.
+	 */
+	private final int maxArrayLength;
+
+	/**
+	 * The maximum number of bytes read in total.
+	 */
+	private final long maxBytes;
+
+	/**
+	 * The maximum length of a string or name in bytes.
+	 */
+	private final int maxStringLength;
+
+	/**
+	 * Creates a new <code>NBTReadLimits</code>.
+	 * @param maxDepth The maximum nesting depth of compounds and lists.
+	 * @param maxArrayLength The maximum number of elements in an array or list.
+	 * @param maxBytes The maximum number of bytes read in total, or
+	 * <code>Long.MAX_VALUE</code> for no limit.
+	 * @param maxStringLength The maximum length of a string or name in bytes.
+	 * @throws IllegalArgumentException if a limit is negative.
+	 */
+	public NBTReadLimits(int maxDepth, int maxArrayLength, long maxBytes, int maxStringLength) {
+		if(maxDepth < 0 || maxArrayLength < 0 || maxBytes < 0 || maxStringLength < 0) {
+			throw new IllegalArgumentException("Limits must not be negative.");
+		}
+
+		this.maxDepth = maxDepth;
+		this.maxArrayLength = maxArrayLength;
+		this.maxBytes = maxBytes;
+		this.maxStringLength = maxStringLength;
+	}
+
+	/**
+	 * Gets the maximum nesting depth of compounds and lists.
+	 * @return The maximum depth.
+	 */
+	public int getMaxDepth() {
+		return this.maxDepth;
+	}
+
+	/**
+	 * Gets the maximum number of elements in an array or list.
+	 * @return The maximum length.
+	 */
+	public int getMaxArrayLength() {
+		return this.maxArrayLength;
+	}
+
+	/**
+	 * Gets the maximum number of bytes read in total.
+	 * @return The maximum number of bytes, or <code>Long.MAX_VALUE</code>
+	 * if the total is not limited.
+	 */
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	/**
+	 * Gets the maximum length of a string or name in bytes.
+	 * @return The maximum length.
+	 */
+	public int getMaxStringLength() {
+		return this.maxStringLength;
+	}
+
+	@Override
+	public String toString() {
+		return "NBTReadLimits[maxDepth=" + this.maxDepth + ", maxArrayLength=" + this.maxArrayLength + ", maxBytes=" + this.maxBytes + ", maxStringLength=" + this.maxStringLength + "]";
+	}
+
+}
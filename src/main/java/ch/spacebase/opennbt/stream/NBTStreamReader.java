@@ -0,0 +1,622 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.NBTUtils;
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.object.ObjectCodecs;
+import ch.spacebase.opennbt.tag.CompoundTag;
+import ch.spacebase.opennbt.tag.ListTag;
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * <p>A cursor over an <strong>NBT</strong> stream, which reads one tag at a
+ * time on request.</p>
+ * 
+ * <p>{@link #next()} moves to the next tag and returns its type. The value
+ * of the current tag can then be read with one of the value methods, read as
+ * a whole <code>Tag</code> with {@link #readTag()}, or passed over with
+ * {@link #skipValue()}. Calling <code>next()</code> on a compound or list
+ * moves into it, and any other unread value is skipped. When a compound or
+ * list has no more children, <code>next()</code> returns
+ * <code>TYPE_END</code> and moves back out of it.</p>
+ * 
+ * <p>Skipping never creates tags. Arrays and lists of fixed size elements
+ * are skipped without being read into memory.</p>
+ */
+public final class NBTStreamReader implements Closeable {
+
+	/**
+	 * The token returned by {@link #next()} at the end of the stream.
+	 */
+	public static final int END_OF_STREAM = -1;
+
+	/**
+	 * The data input stream.
+	 */
+	private final NBTDataInputStream is;
+
+	/**
+	 * The element type of each list which has been moved into, or
+	 * <code>TYPE_COMPOUND</code> for compounds, outermost first.
+	 */
+	private int[] containers = new int[16];
+
+	/**
+	 * The number of unread elements of each list which has been moved into.
+	 */
+	private int[] remaining = new int[16];
+
+	/**
+	 * The number of compounds and lists which have been moved into.
+	 */
+	private int depth = 0;
+
+	/**
+	 * The type of the current tag.
+	 */
+	private int type = END_OF_STREAM;
+
+	/**
+	 * The name of the current tag.
+	 */
+	private String name = "";
+
+	/**
+	 * Whether the value of the current tag has not been read yet.
+	 */
+	private boolean pending = false;
+
+	/**
+	 * The element type of the current list.
+	 */
+	private int listType;
+
+	/**
+	 * The number of elements in the current list.
+	 */
+	private int listLength;
+
+	/**
+	 * Creates a new <code>NBTStreamReader</code>, which will source its data
+	 * from the specified GZIP compressed input stream.
+	 * @param is The input stream.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamReader(InputStream is) throws IOException {
+		this(is, CompressionCodecs.GZIP);
+	}
+
+	/**
+	 * Creates a new <code>NBTStreamReader</code>, which will source its data
+	 * from the specified input stream, decompressing it with the given codec.
+	 * @param is The input stream.
+	 * @param codec The codec the data is compressed with.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamReader(InputStream is, CompressionCodec codec) throws IOException {
+		this(is, codec, NBTReadLimits.DEFAULT);
+	}
+
+	/**
+	 * Creates a new <code>NBTStreamReader</code>, which will source its data
+	 * from the specified input stream, decompressing it with the given codec
+	 * and rejecting data which exceeds the given limits.
+	 * @param is The input stream.
+	 * @param codec The codec the data is compressed with.
+	 * @param limits The limits the data is checked against.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamReader(InputStream is, CompressionCodec codec, NBTReadLimits limits) throws IOException {
+		this.is = new NBTDataInputStream(codec.decompress(is), limits);
+	}
+
+	/**
+	 * Moves to the next tag.
+	 * @return The type of the tag, <code>TYPE_END</code> if the enclosing
+	 * compound or list has ended, or {@link #END_OF_STREAM}.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public int next() throws IOException {
+		if(this.pending) {
+			if(this.type == NBTConstants.TYPE_COMPOUND) {
+				push(NBTConstants.TYPE_COMPOUND, 0);
+			} else if(this.type == NBTConstants.TYPE_LIST) {
+				push(this.listType, this.listLength);
+			} else {
+				is.skipPayload(this.type, this.depth);
+			}
+
+			this.pending = false;
+		}
+
+		if(this.depth == 0) {
+			int next = is.read();
+			if(next == -1) {
+				this.type = END_OF_STREAM;
+				this.name = "";
+				return this.type;
+			}
+
+			if(next == NBTConstants.TYPE_END) {
+				throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
+			}
+
+			this.type = next;
+			this.name = is.readName();
+		} else if(this.containers[this.depth - 1] == NBTConstants.TYPE_COMPOUND) {
+			this.type = is.readByte() & 0xFF;
+			if(this.type == NBTConstants.TYPE_END) {
+				this.depth--;
+				this.name = "";
+				return this.type;
+			}
+
+			this.name = is.readName();
+		} else {
+			if(this.remaining[this.depth - 1] == 0) {
+				this.depth--;
+				this.type = NBTConstants.TYPE_END;
+				this.name = "";
+				return this.type;
+			}
+
+			this.remaining[this.depth - 1]--;
+			this.type = this.containers[this.depth - 1];
+			this.name = "";
+		}
+
+		if(this.type == NBTConstants.TYPE_LIST) {
+			this.listType = is.readByte() & 0xFF;
+			this.listLength = is.readListLength();
+			if(this.listType == NBTConstants.TYPE_END && this.listLength > 0) {
+				throw new IOException("TAG_End not permitted in a list.");
+			}
+		}
+
+		this.pending = true;
+		return this.type;
+	}
+
+	/**
+	 * Moves into a compound or list.
+	 * @param elementType The element type of a list, or
+	 * <code>TYPE_COMPOUND</code> for a compound.
+	 * @param length The number of elements of a list.
+	 * @throws IOException if the nesting exceeds the limits.
+	 */
+	private void push(int elementType, int length) throws IOException {
+		is.checkDepth(this.depth + 1);
+		if(this.depth == this.containers.length) {
+			int[] containers = new int[this.depth * 2];
+			int[] remaining = new int[this.depth * 2];
+			System.arraycopy(this.containers, 0, containers, 0, this.depth);
+			System.arraycopy(this.remaining, 0, remaining, 0, this.depth);
+			this.containers = containers;
+			this.remaining = remaining;
+		}
+
+		this.containers[this.depth] = elementType;
+		this.remaining[this.depth] = Math.max(length, 0);
+		this.depth++;
+	}
+
+	/**
+	 * Gets the type of the current tag.
+	 * @return The type of the current tag.
+	 */
+	public int type() {
+		return this.type;
+	}
+
+	/**
+	 * Gets the name of the current tag. Elements of lists have an empty name.
+	 * @return The name of the current tag.
+	 */
+	public String name() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the number of compounds and lists the cursor is inside.
+	 * @return The depth of the cursor.
+	 */
+	public int depth() {
+		return this.depth;
+	}
+
+	/**
+	 * Gets whether the current tag is an element of a list.
+	 * @return Whether the current tag is in a list.
+	 */
+	public boolean inList() {
+		return this.depth > 0 && this.containers[this.depth - 1] != NBTConstants.TYPE_COMPOUND;
+	}
+
+	/**
+	 * Gets the element type of the current list.
+	 * @return The element type.
+	 * @throws IllegalStateException if the current tag is not a list.
+	 */
+	public int listType() {
+		check(NBTConstants.TYPE_LIST);
+		return this.listType;
+	}
+
+	/**
+	 * Gets the number of elements in the current list.
+	 * @return The number of elements.
+	 * @throws IllegalStateException if the current tag is not a list.
+	 */
+	public int listLength() {
+		check(NBTConstants.TYPE_LIST);
+		return this.listLength;
+	}
+
+	/**
+	 * Skips the value of the current tag, including all children of a
+	 * compound or list.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void skipValue() throws IOException {
+		if(!this.pending) {
+			return;
+		}
+
+		if(this.type == NBTConstants.TYPE_LIST) {
+			is.skipList(this.listType, this.listLength, this.depth);
+		} else {
+			is.skipPayload(this.type, this.depth);
+		}
+
+		this.pending = false;
+	}
+
+	/**
+	 * Reads the value of the current tag as a <code>Tag</code>, including all
+	 * children of a compound or list.
+	 * @return The tag.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalStateException if the value has already been read.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public Tag readTag() throws IOException {
+		if(!this.pending) {
+			throw new IllegalStateException("The value of the current tag has already been read.");
+		}
+
+		this.pending = false;
+		NBTInputStream in = new NBTInputStream(is);
+		if(this.type == NBTConstants.TYPE_LIST) {
+			is.checkDepth(this.depth + 1);
+			Class<? extends Tag> oclass = NBTUtils.getTypeClass(this.listType);
+			List<Tag> tagList = new ArrayList<Tag>();
+			for(int i = 0; i < this.listLength; i++) {
+				Tag tag = in.readTagPayload(this.listType, "", this.depth + 1);
+				if(!oclass.isInstance(tag)) {
+					throw new IOException("Mixed types within a list.");
+				}
+
+				tagList.add(tag);
+			}
+
+			return new ListTag(this.name, oclass, tagList);
+		}
+
+		return in.readTagPayload(this.type, this.name, this.depth);
+	}
+
+	/**
+	 * Reads the current compound, keeping only the tags at the given paths
+	 * and skipping everything else. A path is the names of nested compounds
+	 * and the name of the wanted tag, separated by dots, such as
+	 * <code>"Level.xPos"</code>. A path which names a compound keeps the
+	 * whole compound. Compounds on the way to a wanted tag only hold the
+	 * selected children.
+	 * @param paths The paths to keep.
+	 * @return The compound with only the selected tags.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalStateException if the current tag is not a compound.
+	 */
+	public CompoundTag readSelected(String... paths) throws IOException {
+		check(NBTConstants.TYPE_COMPOUND);
+		PathNode root = new PathNode();
+		for(String path : paths) {
+			PathNode node = root;
+			for(String part : path.split("\\.")) {
+				PathNode child = node.children.get(part);
+				if(child == null) {
+					child = new PathNode();
+					node.children.put(part, child);
+				}
+
+				node = child;
+			}
+
+			node.selected = true;
+		}
+
+		String name = this.name;
+		Map<String, Tag> tagMap = new HashMap<String, Tag>();
+		readSelected(root, tagMap);
+		return new CompoundTag(name, tagMap);
+	}
+
+	/**
+	 * Reads the selected children of the current compound.
+	 * @param node The selection for the compound.
+	 * @param tagMap The map to put selected children in.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void readSelected(PathNode node, Map<String, Tag> tagMap) throws IOException {
+		while(next() != NBTConstants.TYPE_END) {
+			PathNode child = node.children.get(this.name);
+			if(child == null) {
+				skipValue();
+			} else if(child.selected) {
+				tagMap.put(this.name, readTag());
+			} else if(this.type == NBTConstants.TYPE_COMPOUND) {
+				String name = this.name;
+				Map<String, Tag> childMap = new HashMap<String, Tag>();
+				readSelected(child, childMap);
+				if(!childMap.isEmpty()) {
+					tagMap.put(name, new CompoundTag(name, childMap));
+				}
+			} else {
+				skipValue();
+			}
+		}
+	}
+
+	/**
+	 * A node in a tree of selected paths.
+	 */
+	private static class PathNode {
+
+		/**
+		 * The selections below this node, by name.
+		 */
+		private final Map<String, PathNode> children = new HashMap<String, PathNode>();
+
+		/**
+		 * Whether the whole tag at this node is selected.
+		 */
+		private boolean selected = false;
+
+	}
+
+	/**
+	 * Checks that the current tag is of the given type and has not been read.
+	 * @param expected The expected type.
+	 * @throws IllegalStateException if the check fails.
+	 */
+	private void check(int expected) {
+		if(this.type != expected) {
+			throw new IllegalStateException("Current tag is of type " + this.type + ", not " + expected + ".");
+		}
+
+		if(!this.pending) {
+			throw new IllegalStateException("The value of the current tag has already been read.");
+		}
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Byte</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public byte byteValue() throws IOException {
+		check(NBTConstants.TYPE_BYTE);
+		this.pending = false;
+		return is.readByte();
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Short</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public short shortValue() throws IOException {
+		check(NBTConstants.TYPE_SHORT);
+		this.pending = false;
+		return is.readShort();
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Int</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public int intValue() throws IOException {
+		check(NBTConstants.TYPE_INT);
+		this.pending = false;
+		return is.readInt();
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Long</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long longValue() throws IOException {
+		check(NBTConstants.TYPE_LONG);
+		this.pending = false;
+		return is.readLong();
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Float</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public float floatValue() throws IOException {
+		check(NBTConstants.TYPE_FLOAT);
+		this.pending = false;
+		return is.readFloat();
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Double</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public double doubleValue() throws IOException {
+		check(NBTConstants.TYPE_DOUBLE);
+		this.pending = false;
+		return is.readDouble();
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_String</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public String stringValue() throws IOException {
+		check(NBTConstants.TYPE_STRING);
+		this.pending = false;
+		return is.readString();
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Byte_Array</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public byte[] byteArrayValue() throws IOException {
+		check(NBTConstants.TYPE_BYTE_ARRAY);
+		this.pending = false;
+		byte[] bytes = new byte[is.readArrayLength(1)];
+		is.readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Int_Array</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public int[] intArrayValue() throws IOException {
+		check(NBTConstants.TYPE_INT_ARRAY);
+		this.pending = false;
+		return is.readIntArray(is.readArrayLength(4));
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Long_Array</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public long[] longArrayValue() throws IOException {
+		check(NBTConstants.TYPE_LONG_ARRAY);
+		this.pending = false;
+		return is.readLongArray(is.readArrayLength(8));
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Short_Array</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public short[] shortArrayValue() throws IOException {
+		check(NBTConstants.TYPE_SHORT_ARRAY);
+		this.pending = false;
+		return is.readShortArray(is.readArrayLength(2));
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Float_Array</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public float[] floatArrayValue() throws IOException {
+		check(NBTConstants.TYPE_FLOAT_ARRAY);
+		this.pending = false;
+		return is.readFloatArray(is.readArrayLength(4));
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Double_Array</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public double[] doubleArrayValue() throws IOException {
+		check(NBTConstants.TYPE_DOUBLE_ARRAY);
+		this.pending = false;
+		return is.readDoubleArray(is.readArrayLength(8));
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_String_Array</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public String[] stringArrayValue() throws IOException {
+		check(NBTConstants.TYPE_STRING_ARRAY);
+		this.pending = false;
+		String[] strings = new String[is.readArrayLength(2)];
+		for(int i = 0; i < strings.length; i++) {
+			strings[i] = is.readString();
+		}
+
+		return strings;
+	}
+
+	/**
+	 * Reads the value of the current <code>TAG_Object</code>.
+	 * @return The value.
+	 * @throws IOException if an I/O error occurs or the value cannot be read.
+	 */
+	public Object objectValue() throws IOException {
+		check(NBTConstants.TYPE_OBJECT);
+		this.pending = false;
+		return ObjectCodecs.readObject(is);
+	}
+
+	@Override
+	public void close() throws IOException {
+		is.close();
+	}
+
+}
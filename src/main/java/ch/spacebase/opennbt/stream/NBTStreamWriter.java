@@ -0,0 +1,456 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.NBTUtils;
+import ch.spacebase.opennbt.compression.CompressionCodec;
+import ch.spacebase.opennbt.compression.CompressionCodecs;
+import ch.spacebase.opennbt.tag.Tag;
+
+/**
+ * <p>Writes <strong>NBT</strong> data one tag at a time, without a tree of
+ * <code>Tag</code> objects having to be built first. The output is the same
+ * as writing the equivalent tree with <code>NBTOutputStream</code>.</p>
+ * 
+ * <p>Compounds and lists are opened with <code>beginCompound</code> and
+ * <code>beginList</code> and closed with <code>endCompound</code> and
+ * <code>endList</code>. Inside a list, names are ignored, every value must
+ * be of the list's element type and exactly as many values as the list's
+ * size must be written. Nesting mistakes throw an
+ * <code>IllegalStateException</code>.</p>
+ */
+public final class NBTStreamWriter implements Closeable {
+
+	/**
+	 * The output stream.
+	 */
+	private final NBTDataOutputStream os;
+
+	/**
+	 * The element type of each open list, or <code>TYPE_COMPOUND</code> for
+	 * open compounds, outermost first.
+	 */
+	private int[] containers = new int[16];
+
+	/**
+	 * The number of elements still to be written to each open list.
+	 */
+	private int[] remaining = new int[16];
+
+	/**
+	 * The number of open compounds and lists.
+	 */
+	private int depth = 0;
+
+	/**
+	 * Creates a new <code>NBTStreamWriter</code>, which will write GZIP
+	 * compressed data to the specified underlying output stream.
+	 * @param os The output stream.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter(OutputStream os) throws IOException {
+		this(os, CompressionCodecs.GZIP);
+	}
+
+	/**
+	 * Creates a new <code>NBTStreamWriter</code>, which will write data to
+	 * the specified underlying output stream, compressing it with the given
+	 * codec.
+	 * @param os The output stream.
+	 * @param codec The codec to compress the data with.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter(OutputStream os, CompressionCodec codec) throws IOException {
+		this.os = new NBTDataOutputStream(codec.compress(os));
+	}
+
+	/**
+	 * Gets the number of open compounds and lists.
+	 * @return The depth of the writer.
+	 */
+	public int depth() {
+		return this.depth;
+	}
+
+	/**
+	 * Writes the header of a tag, or checks the element type when inside a
+	 * list.
+	 * @param type The type of the tag.
+	 * @param name The name of the tag.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void header(int type, String name) throws IOException {
+		if(this.depth > 0 && this.containers[this.depth - 1] != NBTConstants.TYPE_COMPOUND) {
+			int elementType = this.containers[this.depth - 1];
+			if(elementType != type) {
+				throw new IllegalStateException("Cannot write a tag of type " + type + " to a list of type " + elementType + ".");
+			}
+
+			if(this.remaining[this.depth - 1] == 0) {
+				throw new IllegalStateException("Too many elements written to a list.");
+			}
+
+			this.remaining[this.depth - 1]--;
+			return;
+		}
+
+		os.writeByte(type);
+		os.writeName(name);
+	}
+
+	/**
+	 * Opens a compound or list.
+	 * @param elementType The element type of a list, or
+	 * <code>TYPE_COMPOUND</code> for a compound.
+	 * @param length The number of elements of a list.
+	 */
+	private void push(int elementType, int length) {
+		if(this.depth == this.containers.length) {
+			int[] containers = new int[this.depth * 2];
+			int[] remaining = new int[this.depth * 2];
+			System.arraycopy(this.containers, 0, containers, 0, this.depth);
+			System.arraycopy(this.remaining, 0, remaining, 0, this.depth);
+			this.containers = containers;
+			this.remaining = remaining;
+		}
+
+		this.containers[this.depth] = elementType;
+		this.remaining[this.depth] = length;
+		this.depth++;
+	}
+
+	/**
+	 * Starts a <code>TAG_Compound</code>.
+	 * @param name The name of the compound.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter beginCompound(String name) throws IOException {
+		header(NBTConstants.TYPE_COMPOUND, name);
+		push(NBTConstants.TYPE_COMPOUND, 0);
+		return this;
+	}
+
+	/**
+	 * Ends the current <code>TAG_Compound</code>.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter endCompound() throws IOException {
+		if(this.depth == 0 || this.containers[this.depth - 1] != NBTConstants.TYPE_COMPOUND) {
+			throw new IllegalStateException("No compound to end.");
+		}
+
+		os.writeByte(NBTConstants.TYPE_END);
+		this.depth--;
+		return this;
+	}
+
+	/**
+	 * Starts a <code>TAG_List</code>.
+	 * @param name The name of the list.
+	 * @param type The type code of the elements.
+	 * @param size The number of elements which will be written.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter beginList(String name, int type, int size) throws IOException {
+		if(size < 0) {
+			throw new IllegalArgumentException("Negative list size " + size + ".");
+		}
+
+		if(type == NBTConstants.TYPE_END && size > 0) {
+			throw new IllegalArgumentException("TAG_End not permitted in a list.");
+		}
+
+		header(NBTConstants.TYPE_LIST, name);
+		os.writeByte(type);
+		os.writeInt(size);
+		push(type, size);
+		return this;
+	}
+
+	/**
+	 * Ends the current <code>TAG_List</code>.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter endList() throws IOException {
+		if(this.depth == 0 || this.containers[this.depth - 1] == NBTConstants.TYPE_COMPOUND) {
+			throw new IllegalStateException("No list to end.");
+		}
+
+		if(this.remaining[this.depth - 1] != 0) {
+			throw new IllegalStateException(this.remaining[this.depth - 1] + " list elements still to be written.");
+		}
+
+		this.depth--;
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Byte</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeByte(String name, byte value) throws IOException {
+		header(NBTConstants.TYPE_BYTE, name);
+		os.writeByte(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Short</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeShort(String name, short value) throws IOException {
+		header(NBTConstants.TYPE_SHORT, name);
+		os.writeShort(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Int</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeInt(String name, int value) throws IOException {
+		header(NBTConstants.TYPE_INT, name);
+		os.writeInt(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Long</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeLong(String name, long value) throws IOException {
+		header(NBTConstants.TYPE_LONG, name);
+		os.writeLong(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Float</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeFloat(String name, float value) throws IOException {
+		header(NBTConstants.TYPE_FLOAT, name);
+		os.writeFloat(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Double</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeDouble(String name, double value) throws IOException {
+		header(NBTConstants.TYPE_DOUBLE, name);
+		os.writeDouble(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_String</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeString(String name, String value) throws IOException {
+		header(NBTConstants.TYPE_STRING, name);
+		os.writeString(value != null ? value : "");
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Byte_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeByteArray(String name, byte[] value) throws IOException {
+		header(NBTConstants.TYPE_BYTE_ARRAY, name);
+		os.writeInt(value.length);
+		os.write(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Int_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeIntArray(String name, int[] value) throws IOException {
+		header(NBTConstants.TYPE_INT_ARRAY, name);
+		os.writeIntArray(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Long_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeLongArray(String name, long[] value) throws IOException {
+		header(NBTConstants.TYPE_LONG_ARRAY, name);
+		os.writeLongArray(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Short_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeShortArray(String name, short[] value) throws IOException {
+		header(NBTConstants.TYPE_SHORT_ARRAY, name);
+		os.writeShortArray(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Float_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeFloatArray(String name, float[] value) throws IOException {
+		header(NBTConstants.TYPE_FLOAT_ARRAY, name);
+		os.writeFloatArray(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_Double_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeDoubleArray(String name, double[] value) throws IOException {
+		header(NBTConstants.TYPE_DOUBLE_ARRAY, name);
+		os.writeDoubleArray(value);
+		return this;
+	}
+
+	/**
+	 * Writes a <code>TAG_String_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeStringArray(String name, String[] value) throws IOException {
+		header(NBTConstants.TYPE_STRING_ARRAY, name);
+		os.writeInt(value.length);
+		for(int i = 0; i < value.length; i++) {
+			os.writeString(value[i]);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Writes an already built tag and all of its children. Inside a list,
+	 * the tag's name is ignored.
+	 * @param tag The tag to write.
+	 * @return This writer.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public NBTStreamWriter writeTag(Tag tag) throws IOException {
+		int type = NBTUtils.getTypeCode(tag.getClass());
+		if(type == NBTConstants.TYPE_END) {
+			throw new IOException("Named TAG_End not permitted.");
+		}
+
+		header(type, tag.getName());
+		new NBTOutputStream(os).writeTagPayload(tag);
+		return this;
+	}
+
+	/**
+	 * Flushes any buffered data to the underlying stream. Data held by the
+	 * compressor may not be flushed until the writer is closed.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void flush() throws IOException {
+		os.flush();
+	}
+
+	/**
+	 * Closes the writer, finishing the compressed data.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalStateException if a compound or list is still open. The
+	 * underlying stream is closed regardless.
+	 */
+	@Override
+	public void close() throws IOException {
+		os.close();
+		if(this.depth != 0) {
+			throw new IllegalStateException(this.depth + " compounds or lists were not ended.");
+		}
+	}
+
+}
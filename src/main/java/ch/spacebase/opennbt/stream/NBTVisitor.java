@@ -0,0 +1,191 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+/**
+ * <p>Receives the contents of an NBT stream from an <code>NBTParser</code>
+ * as a sequence of events, without any <code>Tag</code> objects being
+ * created.</p>
+ * 
+ * <p>Elements of a list are reported with an empty name. Compounds and lists
+ * are reported with a start and end event, with their children in between.</p>
+ */
+public interface NBTVisitor {
+
+	/**
+	 * Called when a <code>TAG_Compound</code> starts.
+	 * @param name The name of the compound.
+	 */
+	public void startCompound(String name);
+
+	/**
+	 * Called when the current <code>TAG_Compound</code> ends.
+	 */
+	public void endCompound();
+
+	/**
+	 * Called when a <code>TAG_List</code> starts.
+	 * @param name The name of the list.
+	 * @param type The type code of the elements.
+	 * @param length The number of elements.
+	 */
+	public void startList(String name, int type, int length);
+
+	/**
+	 * Called when the current <code>TAG_List</code> ends.
+	 */
+	public void endList();
+
+	/**
+	 * Called for a <code>TAG_Byte</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitByte(String name, byte value);
+
+	/**
+	 * Called for a <code>TAG_Short</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitShort(String name, short value);
+
+	/**
+	 * Called for a <code>TAG_Int</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitInt(String name, int value);
+
+	/**
+	 * Called for a <code>TAG_Long</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitLong(String name, long value);
+
+	/**
+	 * Called for a <code>TAG_Float</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitFloat(String name, float value);
+
+	/**
+	 * Called for a <code>TAG_Double</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitDouble(String name, double value);
+
+	/**
+	 * Called for a <code>TAG_String</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitString(String name, String value);
+
+	/**
+	 * Called for a <code>TAG_Byte_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitByteArray(String name, byte[] value);
+
+	/**
+	 * Called for a <code>TAG_Int_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitIntArray(String name, int[] value);
+
+	/**
+	 * Called for a <code>TAG_Long_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitLongArray(String name, long[] value);
+
+	/**
+	 * Called for a <code>TAG_Short_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitShortArray(String name, short[] value);
+
+	/**
+	 * Called for a <code>TAG_Float_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitFloatArray(String name, float[] value);
+
+	/**
+	 * Called for a <code>TAG_Double_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitDoubleArray(String name, double[] value);
+
+	/**
+	 * Called for a <code>TAG_String_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitStringArray(String name, String[] value);
+
+	/**
+	 * Called for a <code>TAG_Object</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitObject(String name, Object value);
+
+	/**
+	 * Called for a <code>TAG_Object_Array</code>.
+	 * @param name The name of the tag.
+	 * @param value The value of the tag.
+	 */
+	public void visitObjectArray(String name, Object[] value);
+
+	/**
+	 * Called for a tag of an unknown type. The stream cannot be read past
+	 * an unknown tag, so parsing stops after this call.
+	 * @param name The name of the tag.
+	 * @param type The type code of the tag.
+	 */
+	public void visitUnknown(String name, int type);
+
+}
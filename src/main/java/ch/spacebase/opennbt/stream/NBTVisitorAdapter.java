@@ -0,0 +1,127 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+/**
+ * An <code>NBTVisitor</code> which ignores every event. Subclasses override
+ * the events they are interested in.
+ */
+public abstract class NBTVisitorAdapter implements NBTVisitor {
+
+	@Override
+	public void startCompound(String name) {
+	}
+
+	@Override
+	public void endCompound() {
+	}
+
+	@Override
+	public void startList(String name, int type, int length) {
+	}
+
+	@Override
+	public void endList() {
+	}
+
+	@Override
+	public void visitByte(String name, byte value) {
+	}
+
+	@Override
+	public void visitShort(String name, short value) {
+	}
+
+	@Override
+	public void visitInt(String name, int value) {
+	}
+
+	@Override
+	public void visitLong(String name, long value) {
+	}
+
+	@Override
+	public void visitFloat(String name, float value) {
+	}
+
+	@Override
+	public void visitDouble(String name, double value) {
+	}
+
+	@Override
+	public void visitString(String name, String value) {
+	}
+
+	@Override
+	public void visitByteArray(String name, byte[] value) {
+	}
+
+	@Override
+	public void visitIntArray(String name, int[] value) {
+	}
+
+	@Override
+	public void visitLongArray(String name, long[] value) {
+	}
+
+	@Override
+	public void visitShortArray(String name, short[] value) {
+	}
+
+	@Override
+	public void visitFloatArray(String name, float[] value) {
+	}
+
+	@Override
+	public void visitDoubleArray(String name, double[] value) {
+	}
+
+	@Override
+	public void visitStringArray(String name, String[] value) {
+	}
+
+	@Override
+	public void visitObject(String name, Object value) {
+	}
+
+	@Override
+	public void visitObjectArray(String name, Object[] value) {
+	}
+
+	@Override
+	public void visitUnknown(String name, int type) {
+	}
+
+}
@@ -0,0 +1,273 @@
+package ch.spacebase.opennbt.stream;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ch.spacebase.opennbt.NBTConstants;
+
+/**
+ * A bounded cache of tag names shared by the readers and writers. Names are
+ * looked up by their encoded bytes when reading, so a name seen before is
+ * returned as the same <code>String</code> without being decoded again, and
+ * by value when writing, so its UTF-8 encoding is reused.
+ * <p>
+ * The table is a fixed number of slots indexed by hash. A new name replaces
+ * whatever was in its slot, so the table never grows past its capacity and
+ * needs no locking. Entries are immutable and may be shared between threads.
+ */
+public final class TagNameTable {
+
+	/**
+	 * The table used by all NBT readers and writers.
+	 */
+	private static final TagNameTable SHARED = new TagNameTable(2048, 64);
+
+	/**
+	 * Entries indexed by the hash of their encoded bytes.
+	 */
+	private final AtomicReferenceArray<Entry> byBytes;
+
+	/**
+	 * Entries indexed by the hash of their name.
+	 */
+	private final AtomicReferenceArray<Entry> byName;
+
+	/**
+	 * Mask applied to hashes to find a slot.
+	 */
+	private final int mask;
+
+	/**
+	 * The longest encoded name, in bytes, which will be cached.
+	 */
+	private final int maxLength;
+
+	/**
+	 * Creates a new <code>TagNameTable</code>.
+	 * @param capacity The number of names to hold, rounded up to a power of two.
+	 * @param maxLength The longest encoded name, in bytes, which will be cached.
+	 */
+	public TagNameTable(int capacity, int maxLength) {
+		if(capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if(size < capacity) {
+			size <<= 1;
+		}
+
+		this.byBytes = new AtomicReferenceArray<Entry>(size);
+		this.byName = new AtomicReferenceArray<Entry>(size);
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Gets the table shared by all NBT readers and writers.
+	 * @return The shared table.
+	 */
+	public static TagNameTable getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Gets the name encoded in the given bytes.
+	 * @param bytes The array holding the name.
+	 * @param off The offset of the name.
+	 * @param len The length of the name in bytes.
+	 * @return The name.
+	 */
+	public String decode(byte[] bytes, int off, int len) {
+		if(len > this.maxLength) {
+			return new String(bytes, off, len, NBTConstants.CHARSET);
+		}
+
+		int hash = 0;
+		for(int i = 0; i < len; i++) {
+			hash = 31 * hash + bytes[off + i];
+		}
+
+		int slot = spread(hash) & this.mask;
+		Entry entry = this.byBytes.get(slot);
+		if(entry != null && entry.hash == hash && entry.bytes.length == len) {
+			byte[] cached = entry.bytes;
+			int i = 0;
+			while(i < len && cached[i] == bytes[off + i]) {
+				i++;
+			}
+
+			if(i == len) {
+				return entry.name;
+			}
+		}
+
+		byte[] copy = new byte[len];
+		System.arraycopy(bytes, off, copy, 0, len);
+		String name = new String(copy, NBTConstants.CHARSET);
+		this.byBytes.set(slot, new Entry(name, copy, hash));
+		return name;
+	}
+
+	/**
+	 * Gets the name encoded in the next bytes of the given buffer and moves
+	 * the buffer past them.
+	 * @param buf The buffer holding the name.
+	 * @param len The length of the name in bytes.
+	 * @return The name.
+	 * @throws BufferUnderflowException if fewer than <code>len</code> bytes remain.
+	 */
+	public String decode(ByteBuffer buf, int len) {
+		if(len > buf.remaining()) {
+			throw new BufferUnderflowException();
+		}
+
+		int pos = buf.position();
+		if(buf.hasArray()) {
+			buf.position(pos + len);
+			return decode(buf.array(), buf.arrayOffset() + pos, len);
+		}
+
+		if(len > this.maxLength) {
+			byte[] bytes = new byte[len];
+			buf.get(bytes);
+			return new String(bytes, NBTConstants.CHARSET);
+		}
+
+		int hash = 0;
+		for(int i = 0; i < len; i++) {
+			hash = 31 * hash + buf.get(pos + i);
+		}
+
+		int slot = spread(hash) & this.mask;
+		Entry entry = this.byBytes.get(slot);
+		if(entry != null && entry.hash == hash && entry.bytes.length == len) {
+			byte[] cached = entry.bytes;
+			int i = 0;
+			while(i < len && cached[i] == buf.get(pos + i)) {
+				i++;
+			}
+
+			if(i == len) {
+				buf.position(pos + len);
+				return entry.name;
+			}
+		}
+
+		byte[] copy = new byte[len];
+		buf.get(copy);
+		String name = new String(copy, NBTConstants.CHARSET);
+		this.byBytes.set(slot, new Entry(name, copy, hash));
+		return name;
+	}
+
+	/**
+	 * Gets the UTF-8 encoding of a name. The returned array may be shared
+	 * and must not be modified.
+	 * @param name The name.
+	 * @return The encoded name.
+	 */
+	public byte[] encode(String name) {
+		int slot = spread(name.hashCode()) & this.mask;
+		Entry entry = this.byName.get(slot);
+		if(entry != null && entry.name.equals(name)) {
+			return entry.bytes;
+		}
+
+		byte[] bytes = name.getBytes(NBTConstants.CHARSET);
+		if(bytes.length <= this.maxLength) {
+			this.byName.set(slot, new Entry(name, bytes, 0));
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Removes every name from the table.
+	 */
+	public void clear() {
+		for(int i = 0; i <= this.mask; i++) {
+			this.byBytes.set(i, null);
+			this.byName.set(i, null);
+		}
+	}
+
+	/**
+	 * Mixes the high bits of a hash into the low bits used to pick a slot.
+	 * @param hash The hash.
+	 * @return The spread hash.
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * A cached name and its encoding.
+	 */
+	private static final class Entry {
+
+		/**
+		 * The name.
+		 */
+		private final String name;
+
+		/**
+		 * The UTF-8 encoding of the name.
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * The hash of the encoded bytes.
+		 */
+		private final int hash;
+
+		/**
+		 * Creates a new entry.
+		 * @param name The name.
+		 * @param bytes The encoded name.
+		 * @param hash The hash of the encoded bytes.
+		 */
+		private Entry(String name, byte[] bytes, int hash) {
+			this.name = name;
+			this.bytes = bytes;
+			this.hash = hash;
+		}
+
+	}
+
+}
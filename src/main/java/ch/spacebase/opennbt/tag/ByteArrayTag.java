@@ -88,4 +88,9 @@ public final class ByteArrayTag extends Tag {
 		return new ByteArrayTag(this.getName(), clonedArray);
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitByteArray(this);
+	}
+
 }
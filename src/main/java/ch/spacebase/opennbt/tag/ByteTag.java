@@ -72,5 +72,10 @@ public final class ByteTag extends Tag {
 	public ByteTag clone() {
 		return new ByteTag(this.getName(), this.getValue());
 	}
-	
+
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitByte(this);
+	}
+
 }
@@ -39,8 +39,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
-import ch.spacebase.opennbt.NBTUtils;
-
 /**
  * The <code>TAG_Compound</code> tag.
  */
@@ -119,9 +117,12 @@ public final class CompoundTag extends Tag {
 	}
 	
 	public CompoundTag clone() {
-		Map<String, Tag> newMap = NBTUtils.cloneMap(this.getValue());
+		return TagCloner.copy(this);
+	}
 
-		return new CompoundTag(this.getName(), newMap);
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitCompound(this);
 	}
 
 }
@@ -73,4 +73,9 @@ public final class DoubleTag extends Tag {
 		return new DoubleTag(this.getName(), this.getValue());
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitDouble(this);
+	}
+
 }
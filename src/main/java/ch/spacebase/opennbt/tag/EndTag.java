@@ -60,4 +60,9 @@ public final class EndTag extends Tag {
 		return new EndTag();
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitEnd(this);
+	}
+
 }
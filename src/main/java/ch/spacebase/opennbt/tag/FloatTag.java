@@ -73,4 +73,9 @@ public final class FloatTag extends Tag {
 		return new FloatTag(this.getName(), this.getValue());
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitFloat(this);
+	}
+
 }
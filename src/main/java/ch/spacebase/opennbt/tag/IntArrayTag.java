@@ -106,4 +106,9 @@ public final class IntArrayTag extends Tag {
 		return new IntArrayTag(this.getName(), clonedArray);
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitIntArray(this);
+	}
+
 }
\ No newline at end of file
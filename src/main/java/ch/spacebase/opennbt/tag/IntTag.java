@@ -73,4 +73,9 @@ public final class IntTag extends Tag {
 		return new IntTag(this.getName(), this.getValue());
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitInt(this);
+	}
+
 }
@@ -125,15 +125,13 @@ public final class ListTag<T extends Tag> extends Tag implements Iterable<T> {
 		return bldr.toString();
 	}
 	
-	@SuppressWarnings("unchecked")
 	public ListTag<T> clone() {
-		List<T> newList = new ArrayList<T>();
-		
-		for(T value : this.getValue()) {
-			newList.add((T) value.clone());
-		}
-		
-		return new ListTag<T>(this.getName(), this.getType(), newList);
+		return TagCloner.copy(this);
+	}
+
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitList(this);
 	}
 
 }
@@ -73,4 +73,9 @@ public final class LongTag extends Tag {
 		return new LongTag(this.getName(), this.getValue());
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitLong(this);
+	}
+
 }
@@ -73,4 +73,9 @@ public final class ShortTag extends Tag {
 		return new ShortTag(this.getName(), this.getValue());
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitShort(this);
+	}
+
 }
@@ -73,4 +73,9 @@ public final class StringTag extends Tag {
 		return new StringTag(this.getName(), this.getValue());
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitString(this);
+	}
+
 }
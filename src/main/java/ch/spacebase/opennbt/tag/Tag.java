@@ -77,4 +77,16 @@ public abstract class Tag implements Cloneable {
 	
 	public abstract Tag clone();
 
+	/**
+	 * Calls the method of the visitor for the type of this tag. Tags of types
+	 * registered by the application are passed to
+	 * <code>TagVisitor.visitOther</code>.
+	 * @param visitor The visitor.
+	 * @return The result of the visitor.
+	 * @throws E if the visitor fails.
+	 */
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitOther(this);
+	}
+
 }
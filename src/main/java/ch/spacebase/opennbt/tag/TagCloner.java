@@ -0,0 +1,204 @@
+package ch.spacebase.opennbt.tag;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
+
+/**
+ * Makes deep copies of trees of tags. Compounds and lists are copied
+ * by walking their children with this visitor, and every other tag is
+ * copied with its own <code>clone</code> method.
+ */
+public final class TagCloner implements TagVisitor<Tag, RuntimeException> {
+
+	/**
+	 * The shared instance, which holds no state.
+	 */
+	private static final TagCloner INSTANCE = new TagCloner();
+
+	/**
+	 * Default private constructor.
+	 */
+	private TagCloner() {
+	}
+
+	/**
+	 * Makes a deep copy of a tag.
+	 * @param tag The tag.
+	 * @return The copy.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Tag> T copy(T tag) {
+		return (T) tag.accept(INSTANCE);
+	}
+
+	@Override
+	public Tag visitEnd(EndTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitByte(ByteTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitShort(ShortTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitInt(IntTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitLong(LongTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitFloat(FloatTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitDouble(DoubleTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitByteArray(ByteArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitString(StringTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitList(ListTag<?> tag) {
+		return copyList(tag);
+	}
+
+	@Override
+	public Tag visitCompound(CompoundTag tag) {
+		Map<String, Tag> map = new HashMap<String, Tag>();
+		for(Map.Entry<String, Tag> entry : tag.getValue().entrySet()) {
+			map.put(entry.getKey(), entry.getValue().accept(this));
+		}
+
+		return new CompoundTag(tag.getName(), map);
+	}
+
+	@Override
+	public Tag visitIntArray(IntArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitDoubleArray(DoubleArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitFloatArray(FloatArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitLongArray(LongArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitObjectArray(ObjectArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitObject(ObjectTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitShortArray(ShortArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitStringArray(StringArrayTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitUnknown(UnknownTag tag) {
+		return tag.clone();
+	}
+
+	@Override
+	public Tag visitOther(Tag tag) {
+		return tag.clone();
+	}
+
+	/**
+	 * Copies a list and its elements.
+	 * @param tag The list.
+	 * @return The copy.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends Tag> ListTag<T> copyList(ListTag<T> tag) {
+		List<T> list = new ArrayList<T>(tag.size());
+		for(T child : tag) {
+			list.add((T) child.accept(this));
+		}
+
+		return new ListTag<T>(tag.getName(), tag.getType(), list);
+	}
+
+}
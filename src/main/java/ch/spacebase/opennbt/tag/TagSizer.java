@@ -0,0 +1,323 @@
+package ch.spacebase.opennbt.tag;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ch.spacebase.opennbt.object.ObjectCodecs;
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
+
+/**
+ * Works out how many bytes a tree of tags takes when written uncompressed,
+ * by walking it with this visitor. Objects and tags of types registered by
+ * the application are sized by writing them to a stream which only counts
+ * bytes.
+ */
+public final class TagSizer implements TagVisitor<Void, RuntimeException> {
+
+	/**
+	 * The number of bytes counted so far.
+	 */
+	private long size;
+
+	/**
+	 * Default private constructor.
+	 */
+	private TagSizer() {
+	}
+
+	/**
+	 * Gets the number of bytes a tag takes when written, including its type
+	 * and name.
+	 * @param tag The tag.
+	 * @return The size in bytes.
+	 */
+	public static long getSize(Tag tag) {
+		return 3 + getUTF8Length(tag.getName()) + getPayloadSize(tag);
+	}
+
+	/**
+	 * Gets the number of bytes the payload of a tag takes when written.
+	 * @param tag The tag.
+	 * @return The size in bytes.
+	 */
+	public static long getPayloadSize(Tag tag) {
+		TagSizer sizer = new TagSizer();
+		tag.accept(sizer);
+		return sizer.size;
+	}
+
+	@Override
+	public Void visitEnd(EndTag tag) {
+		return null;
+	}
+
+	@Override
+	public Void visitByte(ByteTag tag) {
+		this.size += 1;
+		return null;
+	}
+
+	@Override
+	public Void visitShort(ShortTag tag) {
+		this.size += 2;
+		return null;
+	}
+
+	@Override
+	public Void visitInt(IntTag tag) {
+		this.size += 4;
+		return null;
+	}
+
+	@Override
+	public Void visitLong(LongTag tag) {
+		this.size += 8;
+		return null;
+	}
+
+	@Override
+	public Void visitFloat(FloatTag tag) {
+		this.size += 4;
+		return null;
+	}
+
+	@Override
+	public Void visitDouble(DoubleTag tag) {
+		this.size += 8;
+		return null;
+	}
+
+	@Override
+	public Void visitByteArray(ByteArrayTag tag) {
+		this.size += 4 + tag.getValue().length;
+		return null;
+	}
+
+	@Override
+	public Void visitString(StringTag tag) {
+		this.size += 2 + getUTF8Length(tag.getValue() != null ? tag.getValue() : "");
+		return null;
+	}
+
+	@Override
+	public Void visitList(ListTag<?> tag) {
+		this.size += 5;
+		for(Tag child : tag) {
+			child.accept(this);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitCompound(CompoundTag tag) {
+		for(Tag child : tag.values()) {
+			this.size += 3 + getUTF8Length(child.getName());
+			child.accept(this);
+		}
+
+		this.size += 1;
+		return null;
+	}
+
+	@Override
+	public Void visitIntArray(IntArrayTag tag) {
+		this.size += 4 + 4L * tag.getValue().length;
+		return null;
+	}
+
+	@Override
+	public Void visitDoubleArray(DoubleArrayTag tag) {
+		this.size += 4 + 8L * tag.getValue().length;
+		return null;
+	}
+
+	@Override
+	public Void visitFloatArray(FloatArrayTag tag) {
+		this.size += 4 + 4L * tag.getValue().length;
+		return null;
+	}
+
+	@Override
+	public Void visitLongArray(LongArrayTag tag) {
+		this.size += 4 + 8L * tag.getValue().length;
+		return null;
+	}
+
+	@Override
+	public Void visitObjectArray(ObjectArrayTag tag) {
+		this.size += 4 + getEncodedLength(tag.getValue());
+		return null;
+	}
+
+	@Override
+	public Void visitObject(ObjectTag tag) {
+		this.size += getEncodedLength(tag.getValue());
+		return null;
+	}
+
+	@Override
+	public Void visitShortArray(ShortArrayTag tag) {
+		this.size += 4 + 2L * tag.getValue().length;
+		return null;
+	}
+
+	@Override
+	public Void visitStringArray(StringArrayTag tag) {
+		this.size += 4;
+		for(String value : tag.getValue()) {
+			this.size += 2 + getUTF8Length(value);
+		}
+
+		return null;
+	}
+
+	@Override
+	public Void visitUnknown(UnknownTag tag) {
+		return null;
+	}
+
+	@Override
+	public Void visitOther(Tag tag) {
+		TagType type = TagType.get(tag.getClass());
+		if(type == null || type.isBuiltin()) {
+			return null;
+		}
+
+		CountingOutputStream out = new CountingOutputStream();
+		try {
+			type.write(new DataOutputStream(out), tag);
+		} catch(IOException e) {
+			throw new IllegalArgumentException("Unable to size " + tag + ".", e);
+		}
+
+		this.size += out.count;
+		return null;
+	}
+
+	/**
+	 * Gets the number of bytes a string takes in UTF-8, counting unpaired
+	 * surrogates as the single byte they are replaced with.
+	 * @param s The string.
+	 * @return The length in bytes.
+	 */
+	private static int getUTF8Length(String s) {
+		int length = 0;
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) {
+				length++;
+			} else if(c < 0x800) {
+				length += 2;
+			} else if(c >= Character.MIN_HIGH_SURROGATE && c <= Character.MAX_HIGH_SURROGATE && i + 1 < s.length() && s.charAt(i + 1) >= Character.MIN_LOW_SURROGATE && s.charAt(i + 1) <= Character.MAX_LOW_SURROGATE) {
+				length += 4;
+				i++;
+			} else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+
+		return length;
+	}
+
+	/**
+	 * Gets the number of bytes the elements of an object array take when
+	 * written the way the NBT streams write them.
+	 * @param objects The elements.
+	 * @return The length in bytes.
+	 */
+	private static long getEncodedLength(Object[] objects) {
+		CountingOutputStream out = new CountingOutputStream();
+		try {
+			ObjectCodecs.writeObjectArray(out, objects);
+		} catch(IOException e) {
+			throw new IllegalArgumentException("Unable to encode object.", e);
+		}
+
+		return out.count;
+	}
+
+	/**
+	 * Gets the number of bytes an object takes when written the way the NBT
+	 * streams write it.
+	 * @param object The object.
+	 * @return The length in bytes.
+	 */
+	private static long getEncodedLength(Object object) {
+		CountingOutputStream out = new CountingOutputStream();
+		try {
+			ObjectCodecs.writeObject(out, object);
+		} catch(IOException e) {
+			throw new IllegalArgumentException("Unable to encode object.", e);
+		}
+
+		return out.count;
+	}
+
+	/**
+	 * An output stream which discards its data and counts the bytes.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		/**
+		 * The number of bytes written.
+		 */
+		private long count;
+
+		@Override
+		public void write(int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			this.count += len;
+		}
+
+	}
+
+}
@@ -0,0 +1,288 @@
+package ch.spacebase.opennbt.tag;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import ch.spacebase.opennbt.NBTConstants;
+import ch.spacebase.opennbt.stream.NBTInputStream;
+import ch.spacebase.opennbt.stream.NBTOutputStream;
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
+
+/**
+ * <p>
+ * A type of tag, tying together its type code, name and class. Types are
+ * kept in a registry which is looked up by type code through an array and
+ * by class through a hash map, so neither lookup walks the list of types.
+ * </p>
+ * 
+ * <p>
+ * Applications may register their own types under unused type codes. The
+ * NBT streams read and write the payload of such tags through the type's
+ * {@link #read(DataInput, String)} and {@link #write(DataOutput, Tag)}
+ * methods. The built-in types are read and written by the streams directly,
+ * and their <code>read</code> and <code>write</code> methods call the same
+ * payload code, so any type can be used to read or write a single payload.
+ * </p>
+ */
+public abstract class TagType {
+
+	/**
+	 * The number of possible type codes.
+	 */
+	private static final int MAX_TYPES = 256;
+
+	/**
+	 * Registered types by type code.
+	 */
+	private static final AtomicReferenceArray<TagType> byId = new AtomicReferenceArray<TagType>(MAX_TYPES);
+
+	/**
+	 * Registered types by tag class.
+	 */
+	private static final ConcurrentMap<Class<? extends Tag>, TagType> byClass = new ConcurrentHashMap<Class<? extends Tag>, TagType>();
+
+	static {
+		register(new BuiltinType(NBTConstants.TYPE_END, "TAG_End", EndTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_BYTE, "TAG_Byte", ByteTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_SHORT, "TAG_Short", ShortTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_INT, "TAG_Int", IntTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_LONG, "TAG_Long", LongTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_FLOAT, "TAG_Float", FloatTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_DOUBLE, "TAG_Double", DoubleTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_BYTE_ARRAY, "TAG_Byte_Array", ByteArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_STRING, "TAG_String", StringTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_LIST, "TAG_List", ListTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_COMPOUND, "TAG_Compound", CompoundTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_INT_ARRAY, "TAG_Int_Array", IntArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_DOUBLE_ARRAY, "TAG_Double_Array", DoubleArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_FLOAT_ARRAY, "TAG_Float_Array", FloatArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_LONG_ARRAY, "TAG_Long_Array", LongArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_OBJECT_ARRAY, "TAG_Object_Array", ObjectArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_OBJECT, "TAG_Object", ObjectTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_SHORT_ARRAY, "TAG_Short_Array", ShortArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_STRING_ARRAY, "TAG_String_Array", StringArrayTag.class));
+		register(new BuiltinType(NBTConstants.TYPE_UNKNOWN, "TAG_Unknown", UnknownTag.class));
+	}
+
+	/**
+	 * The type code.
+	 */
+	private final int id;
+
+	/**
+	 * The type name.
+	 */
+	private final String name;
+
+	/**
+	 * The tag class.
+	 */
+	private final Class<? extends Tag> tagClass;
+
+	/**
+	 * Creates a new tag type.
+	 * @param id The type code, from 0 to 255.
+	 * @param name The type name.
+	 * @param tagClass The class of tags of this type.
+	 */
+	protected TagType(int id, String name, Class<? extends Tag> tagClass) {
+		if(id < 0 || id >= MAX_TYPES) {
+			throw new IllegalArgumentException("Invalid type code: " + id);
+		}
+
+		this.id = id;
+		this.name = name;
+		this.tagClass = tagClass;
+	}
+
+	/**
+	 * Gets the type code.
+	 * @return The type code.
+	 */
+	public final int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Gets the type name.
+	 * @return The type name.
+	 */
+	public final String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Gets the class of tags of this type.
+	 * @return The tag class.
+	 */
+	public final Class<? extends Tag> getTagClass() {
+		return this.tagClass;
+	}
+
+	/**
+	 * Checks whether this is one of the types read and written by the NBT
+	 * streams themselves.
+	 * @return Whether this type is built in.
+	 */
+	public boolean isBuiltin() {
+		return false;
+	}
+
+	/**
+	 * Reads the payload of a tag of this type.
+	 * @param in The input to read from.
+	 * @param name The name of the tag.
+	 * @return The tag.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract Tag read(DataInput in, String name) throws IOException;
+
+	/**
+	 * Writes the payload of a tag of this type.
+	 * @param out The output to write to.
+	 * @param tag The tag.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public abstract void write(DataOutput out, Tag tag) throws IOException;
+
+	@Override
+	public String toString() {
+		return this.name + " (" + this.id + ")";
+	}
+
+	/**
+	 * Registers a tag type.
+	 * @param type The type.
+	 * @throws IllegalArgumentException if the type code or tag class is already registered.
+	 */
+	public static void register(TagType type) {
+		if(!byId.compareAndSet(type.getId(), null, type)) {
+			throw new IllegalArgumentException("Type code " + type.getId() + " is already registered to " + byId.get(type.getId()) + ".");
+		}
+
+		if(byClass.putIfAbsent(type.getTagClass(), type) != null) {
+			byId.set(type.getId(), null);
+			throw new IllegalArgumentException("Tag class " + type.getTagClass().getName() + " is already registered.");
+		}
+	}
+
+	/**
+	 * Gets the type with the given type code.
+	 * @param id The type code.
+	 * @return The type, or <code>null</code> if none is registered.
+	 */
+	public static TagType get(int id) {
+		return id >= 0 && id < MAX_TYPES ? byId.get(id) : null;
+	}
+
+	/**
+	 * Gets the type of a tag class.
+	 * @param clazz The tag class.
+	 * @return The type, or <code>null</code> if none is registered.
+	 */
+	public static TagType get(Class<? extends Tag> clazz) {
+		return byClass.get(clazz);
+	}
+
+	/**
+	 * Gets every registered type.
+	 * @return A new list of the registered types, ordered by type code.
+	 */
+	public static List<TagType> getTypes() {
+		List<TagType> types = new ArrayList<TagType>();
+		for(int id = 0; id < MAX_TYPES; id++) {
+			TagType type = byId.get(id);
+			if(type != null) {
+				types.add(type);
+			}
+		}
+
+		return types;
+	}
+
+	/**
+	 * A type which the NBT streams read and write themselves. Its
+	 * <code>read</code> and <code>write</code> methods call the same payload
+	 * code as the streams.
+	 */
+	private static final class BuiltinType extends TagType {
+
+		/**
+		 * Creates a new built-in type.
+		 * @param id The type code.
+		 * @param name The type name.
+		 * @param tagClass The tag class.
+		 */
+		private BuiltinType(int id, String name, Class<? extends Tag> tagClass) {
+			super(id, name, tagClass);
+		}
+
+		@Override
+		public boolean isBuiltin() {
+			return true;
+		}
+
+		@Override
+		public Tag read(DataInput in, String name) throws IOException {
+			return NBTInputStream.readPayload(in, getId(), name);
+		}
+
+		@Override
+		public void write(DataOutput out, Tag tag) throws IOException {
+			if(!getTagClass().isInstance(tag)) {
+				throw new IllegalArgumentException("Cannot write a " + tag.getClass().getName() + " as " + getName() + ".");
+			}
+
+			NBTOutputStream.writePayload(out, tag);
+		}
+
+	}
+
+}
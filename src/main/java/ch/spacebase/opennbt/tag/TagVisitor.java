@@ -0,0 +1,226 @@
+package ch.spacebase.opennbt.tag;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
+
+/**
+ * A visitor over the types of tag. Calling <code>Tag.accept</code> with a
+ * visitor calls the method for the type of that tag, so a walk over a tree
+ * of tags needs no type codes, <code>instanceof</code> checks or casts.
+ * Tags of types the library does not know are passed to
+ * {@link #visitOther(Tag)}.
+ * @param <R> The type of result returned by the visitor.
+ * @param <E> The type of exception thrown by the visitor, which is
+ * <code>RuntimeException</code> for visitors which throw none.
+ */
+public interface TagVisitor<R, E extends Exception> {
+
+	/**
+	 * Visits a <code>TAG_End</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitEnd(EndTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Byte</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitByte(ByteTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Short</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitShort(ShortTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Int</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitInt(IntTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Long</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitLong(LongTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Float</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitFloat(FloatTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Double</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitDouble(DoubleTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Byte_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitByteArray(ByteArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_String</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitString(StringTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_List</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitList(ListTag<?> tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Compound</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitCompound(CompoundTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Int_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitIntArray(IntArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Double_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitDoubleArray(DoubleArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Float_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitFloatArray(FloatArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Long_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitLongArray(LongArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Object_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitObjectArray(ObjectArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Object</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitObject(ObjectTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Short_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitShortArray(ShortArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_String_Array</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitStringArray(StringArrayTag tag) throws E;
+
+	/**
+	 * Visits a <code>TAG_Unknown</code> tag.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitUnknown(UnknownTag tag) throws E;
+
+	/**
+	 * Visits a tag of a type registered by the application.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitOther(Tag tag) throws E;
+
+}
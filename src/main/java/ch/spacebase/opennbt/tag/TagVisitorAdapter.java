@@ -0,0 +1,170 @@
+package ch.spacebase.opennbt.tag;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import ch.spacebase.opennbt.tag.custom.DoubleArrayTag;
+import ch.spacebase.opennbt.tag.custom.FloatArrayTag;
+import ch.spacebase.opennbt.tag.custom.LongArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectArrayTag;
+import ch.spacebase.opennbt.tag.custom.ObjectTag;
+import ch.spacebase.opennbt.tag.custom.ShortArrayTag;
+import ch.spacebase.opennbt.tag.custom.StringArrayTag;
+import ch.spacebase.opennbt.tag.custom.UnknownTag;
+
+/**
+ * An adapter which passes every tag to {@link #visitTag(Tag)}, so that
+ * visitors need only override the types they treat differently.
+ * @param <R> The type of result returned by the visitor.
+ * @param <E> The type of exception thrown by the visitor.
+ */
+public abstract class TagVisitorAdapter<R, E extends Exception> implements TagVisitor<R, E> {
+
+	/**
+	 * Visits a tag which no more specific method handled. Returns
+	 * <code>null</code> unless overridden.
+	 * @param tag The tag.
+	 * @return The result.
+	 * @throws E if the visitor fails.
+	 */
+	public R visitTag(Tag tag) throws E {
+		return null;
+	}
+
+	@Override
+	public R visitEnd(EndTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitByte(ByteTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitShort(ShortTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitInt(IntTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitLong(LongTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitFloat(FloatTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitDouble(DoubleTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitByteArray(ByteArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitString(StringTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitList(ListTag<?> tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitCompound(CompoundTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitIntArray(IntArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitDoubleArray(DoubleArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitFloatArray(FloatArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitLongArray(LongArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitObjectArray(ObjectArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitObject(ObjectTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitShortArray(ShortArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitStringArray(StringArrayTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitUnknown(UnknownTag tag) throws E {
+		return visitTag(tag);
+	}
+
+	@Override
+	public R visitOther(Tag tag) throws E {
+		return visitTag(tag);
+	}
+
+}
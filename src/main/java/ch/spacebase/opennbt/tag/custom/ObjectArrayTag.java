@@ -3,6 +3,7 @@ package ch.spacebase.opennbt.tag.custom;
 import java.util.Arrays;
 
 import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagVisitor;
 
 /*
  * OpenNBT License
@@ -93,4 +94,9 @@ public final class ObjectArrayTag extends Tag {
 		return new ObjectArrayTag(this.getName(), clonedArray);
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitObjectArray(this);
+	}
+
 }
\ No newline at end of file
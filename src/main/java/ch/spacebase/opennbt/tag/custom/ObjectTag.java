@@ -1,6 +1,7 @@
 package ch.spacebase.opennbt.tag.custom;
 
 import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagVisitor;
 
 /*
  * OpenNBT License
@@ -75,4 +76,9 @@ public final class ObjectTag extends Tag {
 		return new ObjectTag(this.getName(), this.getValue());
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitObject(this);
+	}
+
 }
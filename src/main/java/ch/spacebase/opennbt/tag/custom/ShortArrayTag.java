@@ -3,6 +3,7 @@ package ch.spacebase.opennbt.tag.custom;
 import java.util.Arrays;
 
 import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagVisitor;
 
 /*
  * OpenNBT License
@@ -94,4 +95,9 @@ public final class ShortArrayTag extends Tag {
 		return new ShortArrayTag(this.getName(), clonedArray);
 	}
 
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitShortArray(this);
+	}
+
 }
\ No newline at end of file
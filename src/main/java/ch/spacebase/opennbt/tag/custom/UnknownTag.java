@@ -1,6 +1,7 @@
 package ch.spacebase.opennbt.tag.custom;
 
 import ch.spacebase.opennbt.tag.Tag;
+import ch.spacebase.opennbt.tag.TagVisitor;
 
 /*
  * OpenNBT License
@@ -77,5 +78,10 @@ public class UnknownTag extends Tag {
 	public UnknownTag clone() {
 		return new UnknownTag(this.getName());
 	}
-	
+
+	@Override
+	public <R, E extends Exception> R accept(TagVisitor<R, E> visitor) throws E {
+		return visitor.visitUnknown(this);
+	}
+
 }
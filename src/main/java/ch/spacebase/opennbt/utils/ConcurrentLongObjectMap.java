@@ -0,0 +1,684 @@
+package ch.spacebase.opennbt.utils;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * A thread safe hash map from primitive <code>long</code> keys to objects,
+ * for caches shared between many threads such as loaded chunks. Like
+ * {@link LongObjectMap}, pairs of <code>int</code> coordinates may be used as
+ * keys through the methods taking <code>x</code> and <code>z</code>.
+ * </p>
+ * 
+ * <p>
+ * The map is split into segments, each a table of linked entries. Reads take
+ * no locks: entries are published through atomic arrays and volatile fields.
+ * Writes lock only the segment of their key.
+ * </p>
+ * 
+ * <p>
+ * {@link #computeIfAbsent(long, Factory)} runs the factory outside of any
+ * lock, so slow loads do not hold up other keys. While it runs, other threads
+ * asking for the same key wait for its result instead of loading the value a
+ * second time. If the factory throws or returns <code>null</code>, nothing is
+ * stored and waiting threads try again. The factory may not call
+ * <code>computeIfAbsent</code> or <code>putIfAbsent</code> for the key it is
+ * creating, as it would wait for itself. Such calls throw an
+ * <code>IllegalStateException</code> instead.
+ * </p>
+ * 
+ * <p>
+ * Values may not be <code>null</code>.
+ * </p>
+ * @param <V> The type of the values.
+ */
+public class ConcurrentLongObjectMap<V> {
+
+	/**
+	 * Creates values for keys which are not present.
+	 * @param <V> The type of the values.
+	 */
+	public interface Factory<V> {
+
+		/**
+		 * Creates the value of a key.
+		 * @param key The key.
+		 * @return The value, or <code>null</code> to store nothing.
+		 */
+		public V create(long key);
+
+	}
+
+	/**
+	 * The default number of segments.
+	 */
+	private static final int DEFAULT_CONCURRENCY = 16;
+
+	/**
+	 * The number of buckets each segment starts with.
+	 */
+	private static final int INITIAL_BUCKETS = 16;
+
+	/**
+	 * The segments.
+	 */
+	private final Segment[] segments;
+
+	/**
+	 * Creates a new, empty <code>ConcurrentLongObjectMap</code>.
+	 */
+	public ConcurrentLongObjectMap() {
+		this(DEFAULT_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new, empty <code>ConcurrentLongObjectMap</code>.
+	 * @param concurrency The number of threads expected to write at once,
+	 * rounded up to a power of two to give the number of segments.
+	 */
+	public ConcurrentLongObjectMap(int concurrency) {
+		if(concurrency <= 0 || concurrency > 1 << 16) {
+			throw new IllegalArgumentException("Invalid concurrency: " + concurrency);
+		}
+
+		int count = 1;
+		while(count < concurrency) {
+			count <<= 1;
+		}
+
+		this.segments = new Segment[count];
+		for(int i = 0; i < count; i++) {
+			this.segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Gets the number of entries. Entries still being created are not counted.
+	 * @return The number of entries.
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : this.segments) {
+			size += segment.size;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Checks whether the map is empty.
+	 * @return Whether the map is empty.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Gets the value of a key without locking.
+	 * @param key The key.
+	 * @return The value, or <code>null</code> if the key is not present or its
+	 * value is still being created.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		Object value = find(key);
+		return value instanceof Pending ? null : (V) value;
+	}
+
+	/**
+	 * Gets the value at a pair of coordinates without locking.
+	 * @param x The x coordinate.
+	 * @param z The z coordinate.
+	 * @return The value, or <code>null</code> if the coordinates are not present
+	 * or their value is still being created.
+	 */
+	public V get(int x, int z) {
+		return get(LongObjectMap.key(x, z));
+	}
+
+	/**
+	 * Checks whether a key is present.
+	 * @param key The key.
+	 * @return Whether the key is present.
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Checks whether a pair of coordinates is present.
+	 * @param x The x coordinate.
+	 * @param z The z coordinate.
+	 * @return Whether the coordinates are present.
+	 */
+	public boolean containsKey(int x, int z) {
+		return get(LongObjectMap.key(x, z)) != null;
+	}
+
+	/**
+	 * Sets the value of a key. A value being created for the key by
+	 * <code>computeIfAbsent</code> is discarded in favour of this one.
+	 * @param key The key.
+	 * @param value The value.
+	 * @return The previous value, or <code>null</code> if the key was not present.
+	 */
+	public V put(long key, V value) {
+		return put(key, value, false);
+	}
+
+	/**
+	 * Sets the value at a pair of coordinates.
+	 * @param x The x coordinate.
+	 * @param z The z coordinate.
+	 * @param value The value.
+	 * @return The previous value, or <code>null</code> if the coordinates were not present.
+	 */
+	public V put(int x, int z, V value) {
+		return put(LongObjectMap.key(x, z), value, false);
+	}
+
+	/**
+	 * Sets the value of a key if it is not present.
+	 * @param key The key.
+	 * @param value The value.
+	 * @return The current value, or <code>null</code> if the value was stored.
+	 * @throws IllegalStateException if called by the factory creating the
+	 * value of the key.
+	 */
+	public V putIfAbsent(long key, V value) {
+		return put(key, value, true);
+	}
+
+	/**
+	 * Removes a key. A value being created for the key by
+	 * <code>computeIfAbsent</code> will not be stored.
+	 * @param key The key.
+	 * @return The removed value, or <code>null</code> if the key was not present.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int hash = hash(key);
+		Object value = segmentFor(hash).remove(key, hash, null);
+		return value instanceof Pending ? null : (V) value;
+	}
+
+	/**
+	 * Removes a pair of coordinates.
+	 * @param x The x coordinate.
+	 * @param z The z coordinate.
+	 * @return The removed value, or <code>null</code> if the coordinates were not present.
+	 */
+	public V remove(int x, int z) {
+		return remove(LongObjectMap.key(x, z));
+	}
+
+	/**
+	 * Gets the value of a key, creating it with the given factory if it is
+	 * not present. The factory is called at most once at a time for a key.
+	 * @param key The key.
+	 * @param factory The factory creating the value.
+	 * @return The value, or <code>null</code> if the factory returned <code>null</code>.
+	 * @throws IllegalStateException if called by the factory creating the
+	 * value of the same key.
+	 */
+	@SuppressWarnings("unchecked")
+	public V computeIfAbsent(long key, Factory<V> factory) {
+		int hash = hash(key);
+		Segment segment = segmentFor(hash);
+		while(true) {
+			Object value = find(key);
+			if(value != null && !(value instanceof Pending)) {
+				return (V) value;
+			}
+
+			Pending pending;
+			if(value == null) {
+				pending = new Pending();
+				Object current = segment.put(key, hash, pending, true);
+				if(current == null) {
+					return create(segment, key, hash, pending, factory);
+				}
+
+				if(!(current instanceof Pending)) {
+					return (V) current;
+				}
+
+				pending = (Pending) current;
+			} else {
+				pending = (Pending) value;
+			}
+
+			pending.await();
+		}
+	}
+
+	/**
+	 * Gets the value at a pair of coordinates, creating it with the given
+	 * factory if it is not present.
+	 * @param x The x coordinate.
+	 * @param z The z coordinate.
+	 * @param factory The factory creating the value.
+	 * @return The value, or <code>null</code> if the factory returned <code>null</code>.
+	 * @see #computeIfAbsent(long, Factory)
+	 */
+	public V computeIfAbsent(int x, int z, Factory<V> factory) {
+		return computeIfAbsent(LongObjectMap.key(x, z), factory);
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		for(Segment segment : this.segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Gets the keys of the map.
+	 * @return A new array holding the keys.
+	 */
+	public long[] keys() {
+		long[] result = new long[16];
+		int count = 0;
+		for(Segment segment : this.segments) {
+			AtomicReferenceArray<Node> table = segment.table;
+			for(int i = 0; i < table.length(); i++) {
+				for(Node node = table.get(i); node != null; node = node.next) {
+					if(!(node.value instanceof Pending)) {
+						if(count == result.length) {
+							long[] grown = new long[count * 2];
+							System.arraycopy(result, 0, grown, 0, count);
+							result = grown;
+						}
+
+						result[count++] = node.key;
+					}
+				}
+			}
+		}
+
+		long[] keys = new long[count];
+		System.arraycopy(result, 0, keys, 0, count);
+		return keys;
+	}
+
+	/**
+	 * Gets the values of the map.
+	 * @return A new list holding the values.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> result = new ArrayList<V>();
+		for(Segment segment : this.segments) {
+			AtomicReferenceArray<Node> table = segment.table;
+			for(int i = 0; i < table.length(); i++) {
+				for(Node node = table.get(i); node != null; node = node.next) {
+					Object value = node.value;
+					if(value != null && !(value instanceof Pending)) {
+						result.add((V) value);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Sets the value of a key.
+	 * @param key The key.
+	 * @param value The value.
+	 * @param onlyIfAbsent Whether to keep a value which is already present.
+	 * @return The previous value, or <code>null</code> if the key was not present.
+	 */
+	@SuppressWarnings("unchecked")
+	private V put(long key, V value, boolean onlyIfAbsent) {
+		if(value == null) {
+			throw new IllegalArgumentException("Null values are not supported.");
+		}
+
+		while(true) {
+			int hash = hash(key);
+			Object old = segmentFor(hash).put(key, hash, value, onlyIfAbsent);
+			if(!(old instanceof Pending)) {
+				return (V) old;
+			}
+
+			if(!onlyIfAbsent) {
+				return null;
+			}
+
+			// Wait for the value being created, then look again.
+			((Pending) old).await();
+		}
+	}
+
+	/**
+	 * Runs a factory for a key this thread has claimed and stores its value.
+	 * @param segment The segment of the key.
+	 * @param key The key.
+	 * @param hash The hash of the key.
+	 * @param pending The marker claiming the key.
+	 * @param factory The factory.
+	 * @return The created value.
+	 */
+	private V create(Segment segment, long key, int hash, Pending pending, Factory<V> factory) {
+		V value = null;
+		try {
+			value = factory.create(key);
+		} finally {
+			if(value != null) {
+				segment.replace(key, hash, pending, value);
+			} else {
+				segment.remove(key, hash, pending);
+			}
+
+			pending.release();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Finds the raw value of a key without locking.
+	 * @param key The key.
+	 * @return The value, a pending marker, or <code>null</code>.
+	 */
+	private Object find(long key) {
+		int hash = hash(key);
+		AtomicReferenceArray<Node> table = segmentFor(hash).table;
+		for(Node node = table.get(hash & (table.length() - 1)); node != null; node = node.next) {
+			if(node.key == key) {
+				return node.value;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the segment of a hash.
+	 * @param hash The hash.
+	 * @return The segment.
+	 */
+	private Segment segmentFor(int hash) {
+		return this.segments[(hash >>> 16) & (this.segments.length - 1)];
+	}
+
+	/**
+	 * Scrambles a key so that nearby keys land in different buckets.
+	 * @param key The key.
+	 * @return The hash.
+	 */
+	private static int hash(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * An entry in a bucket.
+	 */
+	private static final class Node {
+
+		/**
+		 * The key.
+		 */
+		private final long key;
+
+		/**
+		 * The value, or a pending marker while it is created.
+		 */
+		private volatile Object value;
+
+		/**
+		 * The next entry in the bucket.
+		 */
+		private final Node next;
+
+		/**
+		 * Creates a new entry.
+		 * @param key The key.
+		 * @param value The value.
+		 * @param next The next entry in the bucket.
+		 */
+		private Node(long key, Object value, Node next) {
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+
+	}
+
+	/**
+	 * Marks a key whose value is being created by another thread.
+	 */
+	private static final class Pending {
+
+		/**
+		 * Released once the value has been stored or given up.
+		 */
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		/**
+		 * The thread creating the value.
+		 */
+		private final Thread owner = Thread.currentThread();
+
+		/**
+		 * Waits until the value has been stored or given up.
+		 * @throws IllegalStateException if called by the thread creating the
+		 * value, which would wait forever.
+		 */
+		private void await() {
+			if(this.owner == Thread.currentThread()) {
+				throw new IllegalStateException("Recursive update of a key while its value is being created.");
+			}
+
+			boolean interrupted = false;
+			while(true) {
+				try {
+					this.latch.await();
+					break;
+				} catch(InterruptedException e) {
+					interrupted = true;
+				}
+			}
+
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Wakes the threads waiting for the value.
+		 */
+		private void release() {
+			this.latch.countDown();
+		}
+
+	}
+
+	/**
+	 * A part of the map with its own lock. Buckets are replaced atomically
+	 * and entries are never changed in place apart from their values, so
+	 * readers always see a consistent chain.
+	 */
+	private static final class Segment {
+
+		/**
+		 * The buckets.
+		 */
+		private volatile AtomicReferenceArray<Node> table = new AtomicReferenceArray<Node>(INITIAL_BUCKETS);
+
+		/**
+		 * The number of entries, including pending ones. Written under the lock.
+		 */
+		private volatile int count;
+
+		/**
+		 * The number of entries with values. Written under the lock.
+		 */
+		private volatile int size;
+
+		/**
+		 * Sets the value of a key.
+		 * @param key The key.
+		 * @param hash The hash of the key.
+		 * @param value The value.
+		 * @param onlyIfAbsent Whether to keep a value which is already present.
+		 * @return The previous value, or <code>null</code> if the key was not present.
+		 */
+		private synchronized Object put(long key, int hash, Object value, boolean onlyIfAbsent) {
+			AtomicReferenceArray<Node> table = this.table;
+			int bucket = hash & (table.length() - 1);
+			Node first = table.get(bucket);
+			for(Node node = first; node != null; node = node.next) {
+				if(node.key == key) {
+					Object old = node.value;
+					if(!onlyIfAbsent) {
+						node.value = value;
+						if(old instanceof Pending && !(value instanceof Pending)) {
+							this.size++;
+						}
+					}
+
+					return old;
+				}
+			}
+
+			table.set(bucket, new Node(key, value, first));
+			if(!(value instanceof Pending)) {
+				this.size++;
+			}
+
+			if(++this.count > table.length() * 3 / 4) {
+				resize();
+			}
+
+			return null;
+		}
+
+		/**
+		 * Stores a created value, unless its marker was replaced or removed.
+		 * @param key The key.
+		 * @param hash The hash of the key.
+		 * @param pending The marker the value replaces.
+		 * @param value The value.
+		 */
+		private synchronized void replace(long key, int hash, Pending pending, Object value) {
+			AtomicReferenceArray<Node> table = this.table;
+			for(Node node = table.get(hash & (table.length() - 1)); node != null; node = node.next) {
+				if(node.key == key) {
+					if(node.value == pending) {
+						node.value = value;
+						this.size++;
+					}
+
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Removes a key, rebuilding the part of its bucket before it.
+		 * @param key The key.
+		 * @param hash The hash of the key.
+		 * @param expected The value to remove, or <code>null</code> for any value.
+		 * @return The removed value, or <code>null</code> if nothing was removed.
+		 */
+		private synchronized Object remove(long key, int hash, Object expected) {
+			AtomicReferenceArray<Node> table = this.table;
+			int bucket = hash & (table.length() - 1);
+			Node first = table.get(bucket);
+			Node node = first;
+			while(node != null && node.key != key) {
+				node = node.next;
+			}
+
+			if(node == null || (expected != null && node.value != expected)) {
+				return null;
+			}
+
+			Node rest = node.next;
+			for(Node copy = first; copy != node; copy = copy.next) {
+				rest = new Node(copy.key, copy.value, rest);
+			}
+
+			table.set(bucket, rest);
+			Object value = node.value;
+			if(!(value instanceof Pending)) {
+				this.size--;
+			}
+
+			this.count--;
+			return value;
+		}
+
+		/**
+		 * Removes every entry. Values being created are not stored.
+		 */
+		private synchronized void clear() {
+			this.table = new AtomicReferenceArray<Node>(INITIAL_BUCKETS);
+			this.count = 0;
+			this.size = 0;
+		}
+
+		/**
+		 * Doubles the number of buckets. The old table is left untouched for
+		 * readers still using it.
+		 */
+		private void resize() {
+			AtomicReferenceArray<Node> old = this.table;
+			AtomicReferenceArray<Node> table = new AtomicReferenceArray<Node>(old.length() * 2);
+			int mask = table.length() - 1;
+			for(int i = 0; i < old.length(); i++) {
+				for(Node node = old.get(i); node != null; node = node.next) {
+					int bucket = hash(node.key) & mask;
+					table.set(bucket, new Node(node.key, node.value, table.get(bucket)));
+				}
+			}
+
+			this.table = table;
+		}
+
+	}
+
+}
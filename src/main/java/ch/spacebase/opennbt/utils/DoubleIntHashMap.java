@@ -38,7 +38,11 @@ import java.util.HashMap;
 
 /**
  * A hashmap using two ints as keys.
+ * @deprecated Only the lowest four bits of each key are kept, so different
+ * keys can share an entry, and every lookup boxes an <code>Integer</code>.
+ * Use {@link LongObjectMap} instead.
  */
+@Deprecated
 public class DoubleIntHashMap<T> extends HashMap<Integer, T> {
 
 	private static final long serialVersionUID = 1L;
@@ -0,0 +1,310 @@
+package ch.spacebase.opennbt.utils;
+
+/*
+ * OpenNBT License
+ * 
+ * JNBT Copyright (c) 2010 Graham Edgecombe
+ * OpenNBT Copyright(c) 2012 Steveice10
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *       
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *       
+ *     * Neither the name of the JNBT team nor the names of its
+ *       contributors may be used to endorse or promote products derived from
+ *       this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE. 
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hash map from primitive <code>int</code> keys to objects, which stores
+ * its keys without boxing them. Entries are kept in flat arrays with open
+ * addressing and linear probing. Removing an entry shifts the later entries
+ * of its probe run back into the gap, so no deleted markers are left behind
+ * to slow down later lookups.
+ * <p>
+ * Values may not be <code>null</code>. This class is not thread safe.
+ * @param <V> The type of the values.
+ */
+public class IntObjectMap<V> {
+
+	/**
+	 * The default number of entries a new map can hold before growing.
+	 */
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * The key in each slot.
+	 */
+	private int[] keys;
+
+	/**
+	 * The value in each slot, or <code>null</code> if the slot is empty.
+	 */
+	private Object[] values;
+
+	/**
+	 * Mask applied to hashes to find a slot.
+	 */
+	private int mask;
+
+	/**
+	 * The number of entries.
+	 */
+	private int size;
+
+	/**
+	 * Creates a new, empty <code>IntObjectMap</code>.
+	 */
+	public IntObjectMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new, empty <code>IntObjectMap</code>.
+	 * @param capacity The number of entries the map can hold before growing.
+	 */
+	public IntObjectMap(int capacity) {
+		if(capacity < 0 || capacity > 1 << 29) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		int slots = 2;
+		while(slots < capacity * 2) {
+			slots <<= 1;
+		}
+
+		allocate(slots);
+	}
+
+	/**
+	 * Gets the number of entries.
+	 * @return The number of entries.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Checks whether the map is empty.
+	 * @return Whether the map is empty.
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Gets the value of a key.
+	 * @param key The key.
+	 * @return The value, or <code>null</code> if the key is not present.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int slot = hash(key) & this.mask;
+		Object value;
+		while((value = this.values[slot]) != null) {
+			if(this.keys[slot] == key) {
+				return (V) value;
+			}
+
+			slot = (slot + 1) & this.mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Checks whether a key is present.
+	 * @param key The key.
+	 * @return Whether the key is present.
+	 */
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Sets the value of a key.
+	 * @param key The key.
+	 * @param value The value.
+	 * @return The previous value, or <code>null</code> if the key was not present.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if(value == null) {
+			throw new IllegalArgumentException("Null values are not supported.");
+		}
+
+		int slot = hash(key) & this.mask;
+		Object old;
+		while((old = this.values[slot]) != null) {
+			if(this.keys[slot] == key) {
+				this.values[slot] = value;
+				return (V) old;
+			}
+
+			slot = (slot + 1) & this.mask;
+		}
+
+		this.keys[slot] = key;
+		this.values[slot] = value;
+		if(++this.size * 2 > this.values.length) {
+			resize(this.values.length * 2);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Removes a key.
+	 * @param key The key.
+	 * @return The removed value, or <code>null</code> if the key was not present.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int slot = hash(key) & this.mask;
+		Object value;
+		while((value = this.values[slot]) != null) {
+			if(this.keys[slot] == key) {
+				shift(slot);
+				this.size--;
+				return (V) value;
+			}
+
+			slot = (slot + 1) & this.mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Removes every entry.
+	 */
+	public void clear() {
+		for(int i = 0; i < this.values.length; i++) {
+			this.values[i] = null;
+		}
+
+		this.size = 0;
+	}
+
+	/**
+	 * Gets the keys of the map.
+	 * @return A new array holding the keys.
+	 */
+	public int[] keys() {
+		int[] result = new int[this.size];
+		int count = 0;
+		for(int i = 0; i < this.values.length; i++) {
+			if(this.values[i] != null) {
+				result[count++] = this.keys[i];
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Gets the values of the map.
+	 * @return A new list holding the values.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> result = new ArrayList<V>(this.size);
+		for(int i = 0; i < this.values.length; i++) {
+			if(this.values[i] != null) {
+				result.add((V) this.values[i]);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Empties a slot, moving later entries of its probe run back so that
+	 * every entry can still be reached from its home slot.
+	 * @param slot The slot to empty.
+	 */
+	private void shift(int slot) {
+		int gap = slot;
+		int next = slot;
+		while(true) {
+			next = (next + 1) & this.mask;
+			if(this.values[next] == null) {
+				break;
+			}
+
+			// Move the entry into the gap unless its home lies between the gap and itself.
+			int home = hash(this.keys[next]) & this.mask;
+			if(((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+				this.keys[gap] = this.keys[next];
+				this.values[gap] = this.values[next];
+				gap = next;
+			}
+		}
+
+		this.values[gap] = null;
+	}
+
+	/**
+	 * Moves every entry into new arrays of the given size.
+	 * @param slots The number of slots.
+	 */
+	private void resize(int slots) {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		allocate(slots);
+		for(int i = 0; i < oldValues.length; i++) {
+			if(oldValues[i] != null) {
+				int slot = hash(oldKeys[i]) & this.mask;
+				while(this.values[slot] != null) {
+					slot = (slot + 1) & this.mask;
+				}
+
+				this.keys[slot] = oldKeys[i];
+				this.values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Creates empty arrays of the given size.
+	 * @param slots The number of slots, a power of two.
+	 */
+	private void allocate(int slots) {
+		this.keys = new int[slots];
+		this.values = new Object[slots];
+		this.mask = slots - 1;
+	}
+
+	/**
+	 * Scrambles a key so that nearby keys land in different slots.
+	 * @param key The key.
+	 * @return The hash.
+	 */
+	private static int hash(int key) {
+		int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+}